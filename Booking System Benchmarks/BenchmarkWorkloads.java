@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code BenchmarkWorkloads} class builds the command scripts replayed by the benchmarks.
+ * Every script starts with the "INIT_VOYAGE" commands of a fleet whose bus types take turns
+ * (minibus, standard, premium), followed by the commands the workload is about. The scripts are
+ * deterministic, so every benchmark iteration replays exactly the same commands.
+ */
+public final class BenchmarkWorkloads {
+
+    /**
+     * Number of seat rows of every bus in the generated fleets.
+     */
+    public static final int ROWS = 20;
+
+    /**
+     * Number of seats sold or refunded by a single command.
+     */
+    public static final int SEATS_PER_COMMAND = 4;
+
+    private static final String[] BUS_TYPES = {"Minibus", "Standard", "Premium"};
+    private static final int[] SEATS_PER_ROW = {2, 4, 3};
+
+    private BenchmarkWorkloads() {
+    }
+
+    /**
+     * Returns the "INIT_VOYAGE" commands of a fleet.
+     *
+     * @param fleetSize the number of voyages, with IDs from 1 to fleetSize.
+     * @return the commands initializing the fleet.
+     */
+    public static List<String> initFleet(int fleetSize) {
+        List<String> commands = new ArrayList<>(fleetSize);
+        for (int id = 1; id <= fleetSize; id++) {
+            commands.add(initCommand(id));
+        }
+        return commands;
+    }
+
+    /**
+     * Returns a script that initializes a fleet and sells every seat of it.
+     *
+     * @param fleetSize the number of voyages.
+     * @return the commands of the sell-heavy workload.
+     */
+    public static List<String> sellHeavy(int fleetSize) {
+        List<String> commands = initFleet(fleetSize);
+        for (int id = 1; id <= fleetSize; id++) {
+            addSeatCommands(commands, "SELL_TICKET", id);
+        }
+        return commands;
+    }
+
+    /**
+     * Returns a script that initializes a fleet and sells every seat of each voyage as a single group
+     * booking, using the range syntax of "SELL_TICKET", e.g. {@code 1-80}.
+     *
+     * @param fleetSize the number of voyages.
+     * @return the commands of the group booking workload.
+     */
+    public static List<String> groupSell(int fleetSize) {
+        List<String> commands = initFleet(fleetSize);
+        for (int id = 1; id <= fleetSize; id++) {
+            commands.add("SELL_TICKET\t" + id + "\t1-" + ROWS * SEATS_PER_ROW[busType(id)]);
+        }
+        return commands;
+    }
+
+    /**
+     * Returns a script that initializes a fleet, sells every seat of it and refunds every seat again.
+     * Minibus tickets are not refundable, so the refunds of minibus voyages exercise the error branch.
+     *
+     * @param fleetSize the number of voyages.
+     * @return the commands of the refund-heavy workload.
+     */
+    public static List<String> refundHeavy(int fleetSize) {
+        List<String> commands = sellHeavy(fleetSize);
+        for (int id = 1; id <= fleetSize; id++) {
+            addSeatCommands(commands, "REFUND_TICKET", id);
+        }
+        return commands;
+    }
+
+    /**
+     * Returns a script mixing every command, as replayed by the end-to-end benchmarks: a fleet is
+     * initialized, its seats are sold and partly refunded, some voyages are printed and cancelled,
+     * and a "Z_REPORT" is given after every thousand voyages.
+     *
+     * @param fleetSize the number of voyages.
+     * @return the commands of the mixed workload.
+     */
+    public static List<String> mixed(int fleetSize) {
+        List<String> commands = new ArrayList<>();
+        for (int id = 1; id <= fleetSize; id++) {
+            commands.add(initCommand(id));
+            addSeatCommands(commands, "SELL_TICKET", id);
+            if (busType(id) != 0) {
+                commands.add("REFUND_TICKET\t" + id + "\t1_2");
+            }
+            if (id % 10 == 0) {
+                commands.add("PRINT_VOYAGE\t" + id);
+            }
+            if (id % 25 == 0) {
+                commands.add("CANCEL_VOYAGE\t" + (id - 1));
+            }
+            if (id % 1000 == 0) {
+                commands.add("Z_REPORT");
+            }
+        }
+        commands.add("Z_REPORT");
+        return commands;
+    }
+
+    /**
+     * Returns the "INIT_VOYAGE" command of the voyage with the given ID.
+     *
+     * @param id the ID of the voyage.
+     * @return the command initializing the voyage.
+     */
+    private static String initCommand(int id) {
+        int type = busType(id);
+        String command = "INIT_VOYAGE\t" + BUS_TYPES[type] + "\t" + id + "\tCity" + (id % 7) + "\tCity" + (id % 11 + 7)
+                + "\t" + ROWS + "\t" + (100 + id % 50) + ".50";
+        if (type == 1) {
+            command += "\t10"; // Refund cut
+        } else if (type == 2) {
+            command += "\t10\t25"; // Refund cut and premium fee
+        }
+        return command;
+    }
+
+    /**
+     * Adds commands that sell or refund every seat of a voyage, a few seats at a time.
+     *
+     * @param commands the script the commands are added to.
+     * @param name     the name of the command, "SELL_TICKET" or "REFUND_TICKET".
+     * @param id       the ID of the voyage.
+     */
+    private static void addSeatCommands(List<String> commands, String name, int id) {
+        int seats = ROWS * SEATS_PER_ROW[busType(id)];
+        for (int first = 1; first <= seats; first += SEATS_PER_COMMAND) {
+            StringBuilder command = new StringBuilder(name).append('\t').append(id).append('\t');
+            for (int seat = first; seat < first + SEATS_PER_COMMAND && seat <= seats; seat++) {
+                if (seat > first) {
+                    command.append('_');
+                }
+                command.append(seat);
+            }
+            commands.add(command.toString());
+        }
+    }
+
+    /**
+     * Returns the index of the bus type of the voyage with the given ID in {@link #BUS_TYPES}.
+     *
+     * @param id the ID of the voyage.
+     * @return 0 for minibus, 1 for standard and 2 for premium voyages.
+     */
+    private static int busType(int id) {
+        return id % BUS_TYPES.length;
+    }
+}
@@ -0,0 +1,34 @@
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The {@code BookingBenchmarks} class runs the JMH benchmarks of the booking system and reports
+ * their throughput in operations per second together with the allocation rate measured by the GC profiler.
+ * <p>
+ * The benchmarks are compiled together with the sources of the booking system, with {@code jmh-core}
+ * and {@code jmh-generator-annprocess} on the class path, e.g.
+ * {@code javac -cp jmh.jar -d out "Booking System"/*.java "Booking System Benchmarks"/*.java}
+ * followed by {@code java -cp jmh.jar:out BookingBenchmarks}.
+ */
+public class BookingBenchmarks {
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args Optional regular expressions selecting the benchmarks to run, all benchmarks are run if none is given.
+     * @throws RunnerException If the benchmarks can not be run.
+     */
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class);
+        if (args.length == 0) {
+            options.include("VoyageBenchmark|ReportBenchmark|ReplayBenchmark|RouteQueryBenchmark|CommandInputBenchmark|HoldExpiryBenchmark|VoyageExportBenchmark");
+        }
+        for (String pattern : args) {
+            options.include(pattern);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code CommandInputBenchmark} class measures how fast a command file of {@code sizeMb} megabytes is read
+ * and parsed, without executing the commands. Every line is tokenized by a {@link CommandLine}, its command name
+ * is compared and its numeric fields are parsed, as {@link Voyage} does before a handler runs:
+ * <ul>
+ *     <li>{@code readFile} loads the whole file with {@link FileInput#readFile(String, boolean, boolean)} first,</li>
+ *     <li>{@code streaming} reads it line by line with a {@link StreamingFileInput},</li>
+ *     <li>{@code mapped} reads it through the memory-mapped windows of a {@link MappedFileInput}.</li>
+ * </ul>
+ * The command file is a valid workload of the {@link WorkloadGenerator}, repeated until it reaches the size.
+ * One operation is one pass over the whole file, so the single shot time is reported. {@code readFile} keeps
+ * every line of the file in memory, which takes a few times the size of the file on the heap, so the
+ * largest files need a machine with enough memory for the heap given below.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx24g")
+public class CommandInputBenchmark {
+
+    private static final int COMMANDS_PER_PART = 1_000_000;
+
+    @Param({"256", "1024", "4096"})
+    private int sizeMb;
+
+    private Path directory;
+    private Path input;
+
+    /**
+     * Writes the command file of the current size to a temporary directory.
+     *
+     * @throws IOException If the command file can not be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("booking-input");
+        Path part = directory.resolve("part.txt");
+        input = directory.resolve("commands.txt");
+
+        WorkloadGenerator generator = new WorkloadGenerator();
+        generator.setErrorRate(0);
+        try (BufferedFileOutput output = new BufferedFileOutput(part.toString())) {
+            generator.generate(COMMANDS_PER_PART, output);
+        }
+        long size = (long) sizeMb * 1024 * 1024;
+        try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(input, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            while (target.size() < size) {
+                long position = 0;
+                while (position < source.size()) {
+                    position += source.transferTo(position, source.size() - position, target);
+                }
+            }
+        }
+        Files.delete(part);
+    }
+
+    /**
+     * Deletes the temporary files of the trial.
+     *
+     * @throws IOException If the files can not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Loads the command file into memory and parses its lines.
+     *
+     * @return the checksum of the parsed fields.
+     */
+    @Benchmark
+    public long readFile() {
+        CommandLine command = new CommandLine();
+        long checksum = 0;
+        for (String line : FileInput.readFile(input.toString(), true, true)) {
+            checksum += parse(command.reset(line));
+        }
+        return checksum;
+    }
+
+    /**
+     * Streams the command file line by line and parses its lines.
+     *
+     * @return the checksum of the parsed fields.
+     * @throws IOException If the command file can not be read.
+     */
+    @Benchmark
+    public long streaming() throws IOException {
+        try (StreamingFileInput commands = new StreamingFileInput(input.toString(), true, true)) {
+            return parseAll(commands);
+        }
+    }
+
+    /**
+     * Reads the command file through memory-mapped windows and parses its lines.
+     *
+     * @return the checksum of the parsed fields.
+     * @throws IOException If the command file can not be read.
+     */
+    @Benchmark
+    public long mapped() throws IOException {
+        try (MappedFileInput commands = new MappedFileInput(input.toString(), true, true)) {
+            return parseAll(commands);
+        }
+    }
+
+    /**
+     * Parses every line of the given input.
+     *
+     * @param commands the input the lines are read from.
+     * @return the checksum of the parsed fields.
+     * @throws IOException If the input can not be read.
+     */
+    private static long parseAll(CommandInput commands) throws IOException {
+        CommandLine command = new CommandLine();
+        long checksum = 0;
+        CharSequence line;
+        while ((line = commands.nextLine()) != null) {
+            checksum += parse(command.reset(line));
+        }
+        return checksum;
+    }
+
+    /**
+     * Finds the command name and parses the numeric fields of a command like its handler does.
+     *
+     * @param command the tokenized command.
+     * @return the checksum of the parsed fields.
+     */
+    private static long parse(CommandLine command) {
+        if (command.fieldEquals(0, "INIT_VOYAGE")) {
+            return command.getInt(2) + command.getInt(5) + (long) command.getDouble(6);
+        }
+        if (command.fieldEquals(0, "Z_REPORT")) {
+            return 1;
+        }
+        return command.getInt(1) + command.size();
+    }
+}
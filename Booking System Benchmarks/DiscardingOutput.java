@@ -0,0 +1,41 @@
+/**
+ * The {@code DiscardingOutput} class is a {@link CommandOutput} that throws everything written to it away
+ * and only counts the characters, so the benchmarks measure the command processing and not the file system.
+ * The count is returned by the benchmarks so that the writes can not be optimized away.
+ */
+public class DiscardingOutput implements CommandOutput {
+
+    private long count;
+
+    /**
+     * Counts the characters of the given content.
+     *
+     * @param content Content that would be written.
+     * @param newLine True if a new line would be appended after content, false if vice versa.
+     */
+    @Override
+    public void write(String content, boolean newLine) {
+        count += content.length() + (newLine ? 1 : 0);
+    }
+
+    /**
+     * Counts a single character.
+     *
+     * @param c the character that would be appended.
+     * @return this output.
+     */
+    @Override
+    public DiscardingOutput append(char c) {
+        count++;
+        return this;
+    }
+
+    /**
+     * Returns the number of characters written since the output was created.
+     *
+     * @return the number of characters.
+     */
+    public long getCount() {
+        return count;
+    }
+}
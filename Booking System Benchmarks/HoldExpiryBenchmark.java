@@ -0,0 +1,72 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code HoldExpiryBenchmark} class measures how seat holds scale with the number of holds that are running
+ * at the same time. Every operation holds a seat for {@code holds} seconds with "HOLD_TICKET" and then moves the
+ * time one second forward with "ADVANCE_TIME", which expires the hold made {@code holds} operations earlier.
+ * After the warm-up fill, there are always {@code holds} holds running, spread over
+ * {@value #SEATS_PER_VOYAGE}-seat voyages, and one of them is reclaimed per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HoldExpiryBenchmark {
+
+    private static final int SEATS_PER_VOYAGE = 40;
+
+    @Param({"1000", "10000", "100000", "300000"})
+    private int holds;
+
+    private Voyage voyage;
+    private DiscardingOutput output;
+    private int slots;
+    private long operation;
+
+    /**
+     * Initializes twice as many seats as there are holds and fills them until {@code holds} holds are running,
+     * so the seat of every new hold has been released by the hold that used it before.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        voyage = new Voyage();
+        output = new DiscardingOutput();
+        slots = 2 * holds;
+        for (int id = 1; id <= slots / SEATS_PER_VOYAGE + 1; id++) {
+            voyage.input("INIT_VOYAGE\tStandard\t" + id + "\tAnkara\tIzmir\t" + SEATS_PER_VOYAGE / 4 + "\t100\t10", output);
+        }
+        operation = 0;
+        for (int i = 0; i < holds; i++) {
+            holdAndAdvance();
+        }
+    }
+
+    /**
+     * Holds a seat and reclaims the expired hold.
+     *
+     * @return the number of characters written so far.
+     */
+    @Benchmark
+    public long holdAndAdvance() {
+        int slot = (int) (operation++ % slots);
+        voyage.input("HOLD_TICKET\t" + (slot / SEATS_PER_VOYAGE + 1) + "\t" + (slot % SEATS_PER_VOYAGE + 1)
+                + "\t" + holds, output);
+        voyage.input("ADVANCE_TIME\t1", output);
+        return output.getCount();
+    }
+}
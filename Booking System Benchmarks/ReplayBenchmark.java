@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code ReplayBenchmark} class measures end-to-end replays through {@link BookingSystem#main(String[])},
+ * including reading the command file, writing the output file and removing its last new line.
+ * The command file is generated from the mixed workload of {@link BenchmarkWorkloads} once per trial,
+ * and one operation is one replay of the whole file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+
+    @Param({"1000", "10000"})
+    private int fleetSize;
+
+    private Path directory;
+    private Path input;
+    private Path output;
+
+    /**
+     * Writes the command file of the current fleet size to a temporary directory.
+     *
+     * @throws IOException If the command file can not be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("booking-replay");
+        input = directory.resolve("commands.txt");
+        output = directory.resolve("output.txt");
+        Files.write(input, BenchmarkWorkloads.mixed(fleetSize));
+    }
+
+    /**
+     * Deletes the output of the previous replay, since the output file is appended to.
+     *
+     * @throws IOException If the output file can not be deleted.
+     */
+    @Setup(Level.Invocation)
+    public void deleteOutput() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    /**
+     * Deletes the temporary files of the trial.
+     *
+     * @throws IOException If the files can not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Replays the command file through the main method of the booking system.
+     */
+    @Benchmark
+    public void replay() {
+        BookingSystem.main(new String[]{input.toString(), output.toString()});
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code ReportBenchmark} class measures the rendering of Z reports and seating layouts.
+ * The fleet is initialized and half of its seats are sold once per trial. Since the details of
+ * unchanged voyages are cached, {@code zReportCached} measures a report of an unchanged fleet and
+ * {@code zReportRendered} touches every voyage before the report, so every voyage is rendered again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int fleetSize;
+
+    @Param({"Minibus", "Standard", "Premium"})
+    private String busType;
+
+    private Voyage voyage;
+    private Bus bus;
+
+    /**
+     * Initializes the fleet, sells every other seat of it and picks a bus of the benchmarked type.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        voyage = new Voyage();
+        DiscardingOutput output = new DiscardingOutput();
+        for (String command : BenchmarkWorkloads.initFleet(fleetSize)) {
+            voyage.input(command, output);
+        }
+        for (Bus each : voyage.busMap.values()) {
+            int seats = each.getRows() * each.getSeatsPerRow();
+            for (int seat = 1; seat <= seats; seat += 2) {
+                each.sellSeat(seat);
+            }
+            if (each.getBusType().equals(busType)) {
+                bus = each;
+            }
+        }
+    }
+
+    /**
+     * Generates a Z report of a fleet whose details are all cached.
+     *
+     * @return the number of characters written.
+     */
+    @Benchmark
+    public long zReportCached() {
+        DiscardingOutput output = new DiscardingOutput();
+        voyage.printZReport(output);
+        return output.getCount();
+    }
+
+    /**
+     * Generates a Z report after every voyage of the fleet has changed.
+     *
+     * @return the number of characters written.
+     */
+    @Benchmark
+    public long zReportRendered() {
+        for (Bus each : voyage.busMap.values()) {
+            each.setRevenue(each.getRevenue()); // Drops the cached details
+        }
+        DiscardingOutput output = new DiscardingOutput();
+        voyage.printZReport(output);
+        return output.getCount();
+    }
+
+    /**
+     * Renders the seating layout of a single bus of the benchmarked type as a string.
+     *
+     * @return the seating layout.
+     */
+    @Benchmark
+    public String seatingLayout() {
+        return bus.getSeatingLayout();
+    }
+}
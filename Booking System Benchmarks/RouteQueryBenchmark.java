@@ -0,0 +1,87 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code RouteQueryBenchmark} class measures how "QUERY_VOYAGES" scales with the number of voyages.
+ * The voyages are spread over {@value #CITIES} x {@value #CITIES} routes and partly sold, and every operation
+ * asks for the voyages of a random route with at least {@value #FREE_SEATS} free seats. {@code indexed} answers
+ * the query through the {@link RouteIndex} of the voyage management system, while {@code scan} answers it by
+ * visiting every bus, as it had to be done before the index existed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteQueryBenchmark {
+
+    private static final int CITIES = 20;
+    private static final int FREE_SEATS = 40;
+
+    @Param({"1000", "10000", "100000"})
+    private int voyages;
+
+    private Voyage voyage;
+    private Random random;
+
+    /**
+     * Initializes the voyages and sells a random share of the seats of each.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        voyage = new Voyage();
+        random = new Random(42);
+        DiscardingOutput output = new DiscardingOutput();
+        for (int id = 1; id <= voyages; id++) {
+            voyage.input("INIT_VOYAGE\tStandard\t" + id + "\tCity" + random.nextInt(CITIES) + "\tCity"
+                    + random.nextInt(CITIES) + "\t20\t100\t10", output);
+            voyage.input("SELL_TICKET\t" + id + "\t1-" + (1 + random.nextInt(80)), output);
+        }
+    }
+
+    /**
+     * Answers a query through the route index.
+     *
+     * @return the number of characters written.
+     */
+    @Benchmark
+    public long indexed() {
+        DiscardingOutput output = new DiscardingOutput();
+        voyage.input("QUERY_VOYAGES\tCity" + random.nextInt(CITIES) + "\tCity" + random.nextInt(CITIES)
+                + "\t" + FREE_SEATS, output);
+        return output.getCount();
+    }
+
+    /**
+     * Answers a query by visiting every bus.
+     *
+     * @return the number of matching voyages.
+     */
+    @Benchmark
+    public long scan() {
+        String fromCity = "City" + random.nextInt(CITIES);
+        String toCity = "City" + random.nextInt(CITIES);
+        long matches = 0;
+        for (Bus bus : voyage.sortedBusMap.values()) {
+            int freeSeats = bus.getSeats().getCapacity() - bus.getSeats().getSoldCount();
+            if (freeSeats >= FREE_SEATS && bus.getFromCity().equals(fromCity) && bus.getToCity().equals(toCity)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code VoyageBenchmark} class measures the command pipeline of {@link Voyage#input(CharSequence, CommandOutput)}.
+ * Every invocation replays a whole workload from {@link BenchmarkWorkloads} on a new voyage management system,
+ * so one operation is one replay of a fleet of {@code fleetSize} voyages:
+ * <ul>
+ *     <li>{@code initHeavy} only initializes the fleet,</li>
+ *     <li>{@code sellHeavy} initializes the fleet and sells every seat of it, a few seats per command,</li>
+ *     <li>{@code refundHeavy} also refunds every seat again, a few seats per command,</li>
+ *     <li>{@code groupSell} initializes the fleet and sells all the seats of each voyage with a single range command.</li>
+ * </ul>
+ * The outputs of the commands are counted and discarded by a {@link DiscardingOutput}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoyageBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int fleetSize;
+
+    private String[] initHeavy;
+    private String[] sellHeavy;
+    private String[] groupSell;
+    private String[] refundHeavy;
+
+    /**
+     * Builds the workloads of the current fleet size.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        initHeavy = toArray(BenchmarkWorkloads.initFleet(fleetSize));
+        sellHeavy = toArray(BenchmarkWorkloads.sellHeavy(fleetSize));
+        groupSell = toArray(BenchmarkWorkloads.groupSell(fleetSize));
+        refundHeavy = toArray(BenchmarkWorkloads.refundHeavy(fleetSize));
+    }
+
+    /**
+     * Replays the INIT_VOYAGE-heavy workload.
+     *
+     * @return the number of characters written.
+     */
+    @Benchmark
+    public long initHeavy() {
+        return replay(initHeavy);
+    }
+
+    /**
+     * Replays the SELL_TICKET-heavy workload.
+     *
+     * @return the number of characters written.
+     */
+    @Benchmark
+    public long sellHeavy() {
+        return replay(sellHeavy);
+    }
+
+    /**
+     * Replays the group booking workload.
+     *
+     * @return the number of characters written.
+     */
+    @Benchmark
+    public long groupSell() {
+        return replay(groupSell);
+    }
+
+    /**
+     * Replays the REFUND_TICKET-heavy workload.
+     *
+     * @return the number of characters written.
+     */
+    @Benchmark
+    public long refundHeavy() {
+        return replay(refundHeavy);
+    }
+
+    /**
+     * Executes the given commands on a new voyage management system.
+     *
+     * @param commands the commands to be executed.
+     * @return the number of characters written.
+     */
+    private static long replay(String[] commands) {
+        Voyage voyage = new Voyage();
+        DiscardingOutput output = new DiscardingOutput();
+        for (String command : commands) {
+            voyage.input(command, output);
+        }
+        return output.getCount();
+    }
+
+    /**
+     * Copies a workload to an array, so the replay loop does not go through the list.
+     *
+     * @param commands the commands of the workload.
+     * @return the commands as an array.
+     */
+    static String[] toArray(List<String> commands) {
+        return commands.toArray(new String[0]);
+    }
+}
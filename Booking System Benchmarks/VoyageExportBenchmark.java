@@ -0,0 +1,128 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code VoyageExportBenchmark} class measures how fast the total revenue and the number of sold seats of a
+ * fleet of {@code fleetSize} voyages are computed from a file written at the end of a run:
+ * <ul>
+ *     <li>{@code readColumns} reads the columnar export written by {@link VoyageColumns} and scans its columns,</li>
+ *     <li>{@code parseZReport} reads a Z report of the same fleet through a {@link MappedFileInput}, counting
+ *     the sold seats of the seating layouts and parsing the revenue lines.</li>
+ * </ul>
+ * Every other seat of the fleet is sold once per trial, and both files are written once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoyageExportBenchmark {
+
+    @Param({"100000", "300000"})
+    private int fleetSize;
+
+    private Path directory;
+    private Path export;
+    private Path report;
+
+    /**
+     * Initializes the fleet, sells every other seat of it and writes its export and its Z report.
+     *
+     * @throws IOException If the files can not be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Voyage voyage = new Voyage();
+        DiscardingOutput output = new DiscardingOutput();
+        for (String command : BenchmarkWorkloads.initFleet(fleetSize)) {
+            voyage.input(command, output);
+        }
+        for (Bus bus : voyage.busMap.values()) {
+            int seats = bus.getRows() * bus.getSeatsPerRow();
+            for (int seat = 1; seat <= seats; seat += 2) {
+                bus.sellSeat(seat);
+                bus.setRevenue(bus.getRevenue() + bus.getSeatPrice(seat));
+            }
+        }
+
+        directory = Files.createTempDirectory("booking-export");
+        export = directory.resolve("voyages.bin");
+        report = directory.resolve("report.txt");
+        VoyageColumns.of(voyage.sortedBusMap.values()).write(export.toString());
+        try (BufferedFileOutput reportOutput = new BufferedFileOutput(report.toString())) {
+            voyage.printZReport(reportOutput);
+        }
+    }
+
+    /**
+     * Deletes the temporary files of the trial.
+     *
+     * @throws IOException If the files can not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(export);
+        Files.deleteIfExists(report);
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Reads the columnar export and sums its revenue column and the bits of its seat bitmaps.
+     *
+     * @return the checksum of the total revenue and the number of sold seats.
+     * @throws IOException If the export can not be read.
+     */
+    @Benchmark
+    public long readColumns() throws IOException {
+        VoyageColumns columns = VoyageColumns.read(export.toString());
+        long soldSeats = 0;
+        for (long word : columns.getSeatWords()) {
+            soldSeats += Long.bitCount(word);
+        }
+        return columns.getTotalRevenue() + soldSeats;
+    }
+
+    /**
+     * Reads the Z report, counts the sold seats of its seating layouts and sums its revenue lines.
+     *
+     * @return the checksum of the total revenue and the number of sold seats.
+     * @throws IOException If the report can not be read.
+     */
+    @Benchmark
+    public long parseZReport() throws IOException {
+        long revenue = 0;
+        long soldSeats = 0;
+        try (MappedFileInput lines = new MappedFileInput(report.toString(), true, true)) {
+            CharSequence line;
+            while ((line = lines.nextLine()) != null) {
+                if (line.length() > 9 && line.charAt(0) == 'R' && line.toString().startsWith("Revenue: ")) {
+                    revenue += Money.of(Double.parseDouble(line.subSequence(9, line.length()).toString()));
+                } else if (line.charAt(0) == 'X' || line.charAt(0) == '*') {
+                    for (int i = 0; i < line.length(); i++) {
+                        if (line.charAt(i) == 'X') {
+                            soldSeats++;
+                        }
+                    }
+                }
+            }
+        }
+        return revenue + soldSeats;
+    }
+}
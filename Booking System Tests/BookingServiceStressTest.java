@@ -0,0 +1,370 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code BookingServiceStressTest} class checks that {@link BookingService} stays consistent when many
+ * threads sell, refund and cancel on the same voyages at the same time.
+ * <p>
+ * A few small voyages of every bus type are shared by all threads, so almost every request races with
+ * others for the same seats. Every thread sells random groups of seats and refunds about as many of the seats
+ * it has bought, so the voyages do not fill up and most requests succeed. Minibus voyages, whose seats
+ * can not be refunded, are only picked now and then, and the cancellable voyages are only cancelled during the
+ * last two percent of all operations. The first seat of every voyage is put on hold before the threads start, so every sale
+ * of it must be rejected. The amounts of all successful operations are written to a ledger of the voyage.
+ * While the threads run, every sold seat is claimed in a counter of the seat, so a seat sold to two buyers
+ * at the same time is caught. When all threads have finished, the test checks that:
+ * <ul>
+ *     <li>every seat was sold at most once at a time and the sold seats of every voyage are exactly the seats
+ *     held by the threads, the held seats were never sold,</li>
+ *     <li>every sale and refund returned the sum of the prices and refund amounts of its seats,</li>
+ *     <li>the revenue of every voyage equals its sales minus its refunds, and the revenue left by a cancel
+ *     equals the refund cuts kept from its refunds,</li>
+ *     <li>every voyage was cancelled at most once and no operation failed with an unexpected exception,</li>
+ *     <li>more operations succeeded than were rejected, so the test exercised concurrent sales and refunds.</li>
+ * </ul>
+ * The test is compiled together with the sources of the booking system, e.g.
+ * {@code javac -d out "Booking System"/*.java "Booking System Tests"/*.java}, run with
+ * {@code java -cp out BookingServiceStressTest [threads] [operations per thread] [seed]}, and exits with an
+ * {@link AssertionError} on the first broken check.
+ */
+public class BookingServiceStressTest {
+
+    private static final int VOYAGES = 12;
+    private static final int MIN_ROWS = 8;
+    private static final int MAX_SEATS_PER_SALE = 3;
+    private static final int HELD_SEAT = 1;
+
+    private final BookingService service = new BookingService();
+    private final Bus[] buses = new Bus[VOYAGES];
+    private final AtomicIntegerArray[] claims = new AtomicIntegerArray[VOYAGES];
+    private final LongAdder[] sold = new LongAdder[VOYAGES];
+    private final LongAdder[] refunded = new LongAdder[VOYAGES];
+    private final LongAdder[] refundedPrices = new LongAdder[VOYAGES];
+    private final AtomicLong[] cancelRevenues = new AtomicLong[VOYAGES];
+    private final LongAdder[] cancels = new LongAdder[VOYAGES];
+    private final LongAdder sales = new LongAdder();
+    private final LongAdder refunds = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+    private int rows;
+    private long cancelFrom;
+
+    /**
+     * Runs the stress test.
+     *
+     * @param args Optional number of threads, operations per thread and random seed.
+     * @throws InterruptedException If the main thread is interrupted while waiting for the workers.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4 * Runtime.getRuntime().availableProcessors();
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        new BookingServiceStressTest().run(threads, operations, seed);
+    }
+
+    /**
+     * Adds the voyages, races the worker threads on them and checks the final state.
+     *
+     * @param threads    the number of worker threads.
+     * @param operations the number of operations of every thread.
+     * @param seed       the seed of the random requests.
+     * @throws InterruptedException If the main thread is interrupted while waiting for the workers.
+     */
+    private void run(int threads, int operations, long seed) throws InterruptedException {
+        rows = Math.max(MIN_ROWS, threads / 2); // Keeps the voyages from filling up with the seats of many threads
+        cancelFrom = (long) threads * operations - (long) threads * operations / 50;
+        for (int v = 0; v < VOYAGES; v++) {
+            buses[v] = newBus(v, rows);
+            service.addVoyage(buses[v]);
+            buses[v].holdSeats(new int[]{HELD_SEAT}, Long.MAX_VALUE);
+            claims[v] = new AtomicIntegerArray(seatCount(v) + 1);
+            sold[v] = new LongAdder();
+            refunded[v] = new LongAdder();
+            refundedPrices[v] = new LongAdder();
+            cancelRevenues[v] = new AtomicLong();
+            cancels[v] = new LongAdder();
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(seed + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    work(random, operations);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "booking-worker-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError(failures.size() + " operations failed unexpectedly");
+            failures.forEach(error::addSuppressed);
+            throw error;
+        }
+        int cancelled = check();
+        check(successes.sum() > conflicts.sum(), successes.sum() + " operations succeeded, but "
+                + conflicts.sum() + " were rejected");
+        System.out.printf("%d threads, %d operations in %d ms: %d succeeded (%d sales, %d refunds), %d were rejected, %d of %d voyages cancelled. OK%n",
+                threads, (long) threads * operations, elapsed / 1_000_000, successes.sum(), sales.sum(), refunds.sum(),
+                conflicts.sum(), cancelled, VOYAGES);
+    }
+
+    /**
+     * Runs the random requests of one worker thread.
+     *
+     * @param random     the random source of the thread.
+     * @param operations the number of operations to run.
+     */
+    private void work(Random random, int operations) {
+        List<List<Integer>> owned = new ArrayList<>();
+        for (int v = 0; v < VOYAGES; v++) {
+            owned.add(new ArrayList<>());
+        }
+        for (int i = 0; i < operations; i++) {
+            int choice = random.nextInt(1000);
+            int refundable = choice < 450 ? -1 : pickRefundableVoyage(random, owned);
+            int v = refundable < 0 ? pickVoyage(random) : refundable;
+            try {
+                if (choice == 0 && isCancellable(v) && successes.sum() + conflicts.sum() >= cancelFrom) {
+                    long revenue = service.cancel(id(v));
+                    cancelRevenues[v].set(revenue);
+                    cancels[v].increment();
+                    owned.get(v).clear();
+                } else if (refundable < 0) {
+                    sell(random, v, owned.get(v));
+                } else {
+                    refund(random, v, owned.get(v));
+                }
+                successes.increment();
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                conflicts.increment();
+                if (cancels[v].sum() > 0) {
+                    owned.get(v).clear(); // The voyage has been cancelled by another thread
+                }
+            }
+        }
+    }
+
+    /**
+     * Sells a random group of seats of a voyage and claims them for the thread.
+     *
+     * @param random the random source of the thread.
+     * @param v      the index of the voyage.
+     * @param owned  the seats of the voyage held by the thread.
+     * @throws IllegalStateException    If one of the seats has already been sold.
+     * @throws IllegalArgumentException If the voyage has been cancelled.
+     */
+    private void sell(Random random, int v, List<Integer> owned) {
+        int[] seats = random.ints(1 + random.nextInt(MAX_SEATS_PER_SALE), 1, seatCount(v) + 1).distinct().toArray();
+        long price = service.sell(id(v), seats);
+        long expected = 0;
+        for (int seat : seats) {
+            check(seat != HELD_SEAT, "Held seat " + seat + " of voyage " + id(v) + " was sold");
+            if (claims[v].incrementAndGet(seat) != 1) {
+                throw new AssertionError("Seat " + seat + " of voyage " + id(v) + " was sold twice!");
+            }
+            expected += buses[v].getSeatPrice(seat);
+            owned.add(seat);
+        }
+        check(price == expected, "Sale on voyage " + id(v) + " returned " + price + " instead of " + expected);
+        sold[v].add(price);
+        sales.increment();
+    }
+
+    /**
+     * Refunds some of the seats of a voyage held by the thread. Their claims are given up before the refund,
+     * since another thread may buy the seats as soon as it is done, and taken back if the refund is rejected.
+     *
+     * @param random the random source of the thread.
+     * @param v      the index of the voyage.
+     * @param owned  the seats of the voyage held by the thread.
+     * @throws IllegalStateException    If the voyage is a minibus voyage.
+     * @throws IllegalArgumentException If the voyage has been cancelled.
+     */
+    private void refund(Random random, int v, List<Integer> owned) {
+        int count = Math.min(owned.size(), 1 + random.nextInt(2));
+        int[] seats = new int[count];
+        for (int i = 0; i < count; i++) {
+            seats[i] = owned.get(owned.size() - 1 - i);
+        }
+        for (int seat : seats) {
+            if (claims[v].decrementAndGet(seat) != 0) {
+                throw new AssertionError("Seat " + seat + " of voyage " + id(v) + " was held twice!");
+            }
+        }
+        long amount;
+        try {
+            amount = service.refund(id(v), seats);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            for (int seat : seats) {
+                claims[v].incrementAndGet(seat);
+            }
+            throw e;
+        }
+        check(!(buses[v] instanceof MiniBus), "Minibus voyage " + id(v) + " was refunded");
+        long expected = 0;
+        long prices = 0;
+        for (int seat : seats) {
+            expected += buses[v].getRefundAmount(seat);
+            prices += buses[v].getSeatPrice(seat);
+            owned.remove(owned.size() - 1);
+        }
+        check(amount == expected, "Refund on voyage " + id(v) + " returned " + amount + " instead of " + expected);
+        refunded[v].add(amount);
+        refundedPrices[v].add(prices);
+        refunds.increment();
+    }
+
+    /**
+     * Checks the final state of every voyage against the ledgers of the threads.
+     *
+     * @return the number of cancelled voyages.
+     */
+    private int check() {
+        int cancelled = 0;
+        for (int v = 0; v < VOYAGES; v++) {
+            long cancelCount = cancels[v].sum();
+            check(cancelCount <= 1, "Voyage " + id(v) + " was cancelled " + cancelCount + " times");
+            if (cancelCount == 1) {
+                cancelled++;
+                long expected = refundedPrices[v].sum() - refunded[v].sum();
+                check(cancelRevenues[v].get() == expected, "Cancelled voyage " + id(v) + " kept "
+                        + cancelRevenues[v].get() + " instead of its refund cuts " + expected);
+                check(isMissing(id(v)), "Cancelled voyage " + id(v) + " is still served");
+                continue;
+            }
+            long expected = sold[v].sum() - refunded[v].sum();
+            long revenue = service.getRevenue(id(v));
+            check(revenue == expected, "Revenue of voyage " + id(v) + " is " + revenue + " instead of " + expected);
+            check(buses[v].getSeats().isHeld(HELD_SEAT), "Held seat " + HELD_SEAT + " of voyage " + id(v) + " is not held");
+            for (int seat = 1; seat <= seatCount(v); seat++) {
+                int claim = claims[v].get(seat);
+                check(claim == 0 || claim == 1, "Seat " + seat + " of voyage " + id(v) + " has " + claim + " claims");
+                check(buses[v].isSeatSold(seat) == (claim == 1), "Seat " + seat + " of voyage " + id(v)
+                        + " is " + (claim == 1 ? "held but empty" : "sold but not held"));
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Returns whether the service no longer knows the voyage with the given ID.
+     *
+     * @param voyageId the ID of the voyage.
+     * @return true if asking for the voyage is rejected as an invalid request.
+     */
+    private boolean isMissing(int voyageId) {
+        try {
+            service.getRevenue(voyageId);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Creates the bus of a voyage. The voyages cycle through the standard, premium and minibus types.
+     *
+     * @param v    the index of the voyage.
+     * @param rows the number of seat rows of the bus.
+     * @return the bus with its ID, route, rows and prices set.
+     */
+    private static Bus newBus(int v, int rows) {
+        Bus bus;
+        switch (v % 3) {
+            case 0: {
+                StandartBus standartBus = new StandartBus();
+                standartBus.setRefundCut(10 * (v % 7));
+                bus = standartBus;
+                break;
+            }
+            case 1: {
+                PremiumBus premiumBus = new PremiumBus();
+                premiumBus.setRefundCut(15);
+                premiumBus.setPremiumFee(25 + v);
+                bus = premiumBus;
+                break;
+            }
+            default:
+                bus = new MiniBus();
+                break;
+        }
+        bus.setId(id(v));
+        bus.setFromCity("Ankara");
+        bus.setToCity("Istanbul");
+        bus.setRows(rows);
+        bus.setPrice(Money.of(100 + v + 0.33 * v));
+        return bus;
+    }
+
+    /**
+     * Picks the voyage of the next operation. Minibus voyages are picked an eighth as often as the others,
+     * since their seats can not be refunded and most sales are rejected once they are full.
+     *
+     * @param random the random source of the thread.
+     * @return the index of the voyage.
+     */
+    private int pickVoyage(Random random) {
+        int v = random.nextInt(VOYAGES);
+        while (buses[v] instanceof MiniBus && random.nextInt(8) != 0) {
+            v = random.nextInt(VOYAGES);
+        }
+        return v;
+    }
+
+    /**
+     * Picks a voyage the thread holds refundable seats of, so that refunds give back about as many seats as
+     * sales take and the voyages do not fill up.
+     *
+     * @param random the random source of the thread.
+     * @param owned  the seats held by the thread, by voyage.
+     * @return the index of the voyage, or -1 if the thread holds no refundable seat.
+     */
+    private int pickRefundableVoyage(Random random, List<List<Integer>> owned) {
+        int first = random.nextInt(VOYAGES);
+        for (int i = 0; i < VOYAGES; i++) {
+            int v = (first + i) % VOYAGES;
+            if (!owned.get(v).isEmpty() && !(buses[v] instanceof MiniBus)) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    private static int id(int v) {
+        return 100 + v;
+    }
+
+    private int seatCount(int v) {
+        return rows * buses[v].getSeatsPerRow();
+    }
+
+    private static boolean isCancellable(int v) {
+        return v % 2 == 0;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message + "!");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code VoyageCommandTest} class checks the output of single commands of a {@link Voyage} management system.
+ * <p>
+ * Every case initializes a few voyages, runs a command through {@link Voyage#input(CharSequence, CommandOutput)}
+ * into a {@link StringOutput}, and compares what the command wrote with the expected lines. The test is compiled
+ * and run like {@link BookingServiceStressTest}, with {@code java -cp out VoyageCommandTest}, and exits with an
+ * {@link AssertionError} listing every case that failed.
+ */
+public class VoyageCommandTest {
+
+    private static final String STANDARD_VOYAGE = "INIT_VOYAGE\tStandard\t1\tAnkara\tIstanbul\t3\t100.01\t10";
+
+    private final List<String> failures = new ArrayList<>();
+    private int cases;
+
+    /**
+     * Runs every case.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        VoyageCommandTest test = new VoyageCommandTest();
+        test.sellsARepeatedSeatOnce();
+        test.echoesRangesSeatBySeat();
+        test.rejectsAMalformedHoldId();
+        test.expiresOnlyRunningHolds();
+        test.report();
+    }
+
+    /**
+     * A seat listed twice in a "SELL_TICKET" command is sold, charged and echoed once.
+     */
+    private void sellsARepeatedSeatOnce() {
+        Voyage voyage = newVoyage(STANDARD_VOYAGE);
+        expect("repeated seat", voyage, "SELL_TICKET\t1\t3_3",
+                "Seat 3 of the Voyage 1 from Ankara to Istanbul was successfully sold for 100.01 TL.");
+        expect("repeated seat refund", voyage, "REFUND_TICKET\t1\t3_3",
+                "Seat 3 of the Voyage 1 from Ankara to Istanbul was successfully refunded for 90.01 TL.");
+    }
+
+    /**
+     * Seats sold, held and refunded by ranges are echoed one by one, in the order the ranges list them.
+     */
+    private void echoesRangesSeatBySeat() {
+        Voyage voyage = newVoyage(STANDARD_VOYAGE);
+        expect("range sale", voyage, "SELL_TICKET\t1\t1-4_10-8",
+                "Seat 1-2-3-4-10-9-8 of the Voyage 1 from Ankara to Istanbul was successfully sold for 700.07 TL.");
+        expect("range hold", voyage, "HOLD_TICKET\t1\t6-5_12\t60",
+                "Seat 6-5-12 of the Voyage 1 from Ankara to Istanbul was successfully held as hold 1 until 60.");
+        expect("range refund", voyage, "REFUND_TICKET\t1\t2-3",
+                "Seat 2-3 of the Voyage 1 from Ankara to Istanbul was successfully refunded for 180.02 TL.");
+    }
+
+    /**
+     * A fourth field of "SELL_TICKET" that is not a hold ID is an erroneous usage, a well-formed but unknown one is
+     * reported as such, and neither stops the commands that follow.
+     */
+    private void rejectsAMalformedHoldId() {
+        Voyage voyage = newVoyage(STANDARD_VOYAGE);
+        expect("non-numeric hold ID", voyage, "SELL_TICKET\t1\t3\tx",
+                "ERROR: Erroneous usage of \"SELL_TICKET\" command!");
+        expect("non-positive hold ID", voyage, "SELL_TICKET\t1\t3\t0",
+                "ERROR: Erroneous usage of \"SELL_TICKET\" command!");
+        expect("unknown hold ID", voyage, "SELL_TICKET\t1\t3\t5",
+                "ERROR: There is no active hold with ID of 5 on the Voyage 1!");
+        expect("sale after malformed hold ID", voyage, "SELL_TICKET\t1\t3",
+                "Seat 3 of the Voyage 1 from Ankara to Istanbul was successfully sold for 100.01 TL.");
+    }
+
+    /**
+     * Holds whose seats have all been sold, or whose voyage has been cancelled, do not expire any more, while a
+     * hold with seats left still does.
+     */
+    private void expiresOnlyRunningHolds() {
+        Voyage voyage = newVoyage(STANDARD_VOYAGE, "INIT_VOYAGE\tMinibus\t2\tAnkara\tIzmir\t2\t50",
+                "HOLD_TICKET\t1\t1-2\t10", "HOLD_TICKET\t1\t3-4\t20", "HOLD_TICKET\t2\t1\t10",
+                "SELL_TICKET\t1\t1-2\t1", "SELL_TICKET\t1\t3\t2", "CANCEL_VOYAGE\t2");
+        expect("sold and cancelled holds", voyage, "ADVANCE_TIME\t15",
+                "Time was advanced to 15, 0 holds expired.");
+        expect("partly sold hold", voyage, "ADVANCE_TIME\t5",
+                "Time was advanced to 20, 1 hold expired.");
+        expect("seat of an expired hold", voyage, "SELL_TICKET\t1\t4",
+                "Seat 4 of the Voyage 1 from Ankara to Istanbul was successfully sold for 100.01 TL.");
+    }
+
+    /**
+     * Creates a voyage management system and runs the given commands on it, discarding their output.
+     *
+     * @param commands the commands that set up the voyages.
+     * @return the voyage management system.
+     */
+    private static Voyage newVoyage(String... commands) {
+        Voyage voyage = new Voyage();
+        for (String command : commands) {
+            voyage.input(command, new StringOutput());
+        }
+        return voyage;
+    }
+
+    /**
+     * Runs a command and compares its output, without the echoed command line, with the expected lines.
+     *
+     * @param name     the name of the case.
+     * @param voyage   the voyage management system the command is run on.
+     * @param command  the command line.
+     * @param expected the lines the command is expected to write.
+     */
+    private void expect(String name, Voyage voyage, String command, String... expected) {
+        cases++;
+        StringOutput output = new StringOutput();
+        voyage.input(command, output);
+        String actual = output.toString();
+        String wanted = "COMMAND: " + command + "\n" + String.join("\n", expected) + "\n";
+        if (!actual.equals(wanted)) {
+            failures.add(name + ": expected\n" + wanted + "but was\n" + actual);
+        }
+    }
+
+    /**
+     * Prints the number of cases, or throws an error listing the cases that failed.
+     */
+    private void report() {
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.size() + " of " + cases + " cases failed:\n" + String.join("\n", failures));
+        }
+        System.out.println(cases + " cases passed. OK");
+    }
+}
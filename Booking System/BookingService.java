@@ -0,0 +1,227 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code BookingService} class is a thread-safe booking API over the bus voyages.
+ * Unlike {@link Voyage}, which processes the commands of a file one by one, it can be called
+ * by many request threads at the same time.
+ * <p>
+ * Voyages are kept in a {@link ConcurrentHashMap}. Every operation on a voyage runs while holding
+ * the lock of that voyage's stripe, so the seat checks and the seat claims of an operation are
+ * atomic and two buyers can never get the same seat. Voyages in different stripes never block each other.
+ * Seats are validated by a {@link SeatSelection} of the calling thread and sold, refunded and priced by the
+ * {@link Bus}, just like the commands of {@link Voyage} do, and seats that are on hold are not sold.
+ * Operations report problems by throwing {@link IllegalArgumentException} for invalid requests and
+ * {@link IllegalStateException} for requests that conflict with the current state of the voyage.
+ */
+public class BookingService {
+
+    /**
+     * Default number of lock stripes.
+     */
+    public static final int DEFAULT_STRIPES = 256;
+
+    private final Map<Integer, Bus> voyages = new ConcurrentHashMap<>();
+    private final Object[] locks;
+    private final ThreadLocal<SeatSelection> selections = ThreadLocal.withInitial(SeatSelection::new);
+
+    /**
+     * Constructs a booking service with the default number of lock stripes.
+     */
+    public BookingService() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructs a booking service with the given number of lock stripes.
+     *
+     * @param stripes the number of locks the voyages are spread over.
+     */
+    public BookingService(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException(stripes + " is not a positive integer, number of stripes must be a positive integer!");
+        }
+        locks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Adds a new voyage to the service.
+     *
+     * @param bus the bus of the voyage, with its ID, route, rows and prices already set.
+     * @throws IllegalStateException If there is already a voyage with the same ID.
+     */
+    public void addVoyage(Bus bus) {
+        synchronized (lockFor(bus.getId())) {
+            if (voyages.putIfAbsent(bus.getId(), bus) != null) {
+                throw new IllegalStateException("There is already a voyage with ID of " + bus.getId() + "!");
+            }
+        }
+    }
+
+    /**
+     * Sells the given seats of a voyage. Either all the seats are sold or none of them is.
+     * The seats are validated and priced exactly like those of a "SELL_TICKET" command of {@link Voyage}.
+     *
+     * @param voyageId    the ID of the voyage.
+     * @param seatNumbers the seats to be sold, repetitions are sold once.
+     * @return the total price of the sold seats in {@link Money} units.
+     * @throws IllegalArgumentException If there is no such voyage or one of the seats does not exist.
+     * @throws IllegalStateException    If one of the seats has already been sold or is on hold, or the revenue
+     *                                  of the voyage would be out of range.
+     */
+    public long sell(int voyageId, int... seatNumbers) {
+        SeatSelection selection = selections.get();
+        synchronized (lockFor(voyageId)) {
+            Bus bus = getVoyage(voyageId);
+            select(selection, bus, seatNumbers);
+            if (bus.getSeats().isAnySold(selection.getMask())) {
+                throw new IllegalStateException("One or more seats already sold!");
+            }
+            if (bus.getSeats().isAnyHeld(selection.getMask())) {
+                throw new IllegalStateException("One or more seats are on hold!");
+            }
+            try {
+                return bus.sellSeats(selection);
+            } catch (ArithmeticException e) {
+                throw revenueOutOfRange(voyageId, e);
+            }
+        }
+    }
+
+    /**
+     * Refunds the given seats of a voyage. Either all the seats are refunded or none of them is.
+     * The seats are validated and priced exactly like those of a "REFUND_TICKET" command of {@link Voyage}.
+     *
+     * @param voyageId    the ID of the voyage.
+     * @param seatNumbers the seats to be refunded, repetitions are refunded once.
+     * @return the total amount paid back in {@link Money} units.
+     * @throws IllegalArgumentException If there is no such voyage or one of the seats does not exist.
+     * @throws IllegalStateException    If the voyage is a minibus voyage, one of the seats is empty, or the revenue
+     *                                  of the voyage would be out of range.
+     */
+    public long refund(int voyageId, int... seatNumbers) {
+        SeatSelection selection = selections.get();
+        synchronized (lockFor(voyageId)) {
+            Bus bus = getVoyage(voyageId);
+            if (bus instanceof MiniBus) {
+                throw new IllegalStateException("Minibus tickets are not refundable!");
+            }
+            select(selection, bus, seatNumbers);
+            if (!bus.getSeats().isEverySold(selection.getMask())) {
+                throw new IllegalStateException("One or more seats are already empty!");
+            }
+            try {
+                return bus.refundSeats(selection);
+            } catch (ArithmeticException e) {
+                throw revenueOutOfRange(voyageId, e);
+            }
+        }
+    }
+
+    /**
+     * Cancels a voyage, refunds all its sold seats without any cut, releases its held seats and removes it
+     * from the service.
+     *
+     * @param voyageId the ID of the voyage.
+     * @return the revenue of the voyage left after the refunds in {@link Money} units.
+     * @throws IllegalArgumentException If there is no such voyage.
+     * @throws IllegalStateException    If the revenue of the voyage would be out of range.
+     */
+    public long cancel(int voyageId) {
+        synchronized (lockFor(voyageId)) {
+            Bus bus = getVoyage(voyageId);
+            long revenue;
+            try {
+                revenue = bus.refundAllSeats();
+            } catch (ArithmeticException e) {
+                throw revenueOutOfRange(voyageId, e);
+            }
+            bus.releaseHolds();
+            voyages.remove(voyageId);
+            return revenue;
+        }
+    }
+
+    /**
+     * Returns a consistent snapshot of the seating layout of a voyage.
+     *
+     * @param voyageId the ID of the voyage.
+     * @return the seating layout of the voyage at the time of the call.
+     * @throws IllegalArgumentException If there is no such voyage.
+     */
+    public String getSeatingLayout(int voyageId) {
+        synchronized (lockFor(voyageId)) {
+            return getVoyage(voyageId).getSeatingLayout();
+        }
+    }
+
+    /**
+     * Returns the current revenue of a voyage.
+     *
+     * @param voyageId the ID of the voyage.
+     * @return the revenue of the voyage at the time of the call in {@link Money} units.
+     * @throws IllegalArgumentException If there is no such voyage.
+     */
+    public long getRevenue(int voyageId) {
+        synchronized (lockFor(voyageId)) {
+            return getVoyage(voyageId).getRevenue();
+        }
+    }
+
+    /**
+     * Returns the voyage with the given ID. Must be called while holding the lock of the voyage.
+     *
+     * @param voyageId the ID of the voyage.
+     * @return the bus of the voyage.
+     * @throws IllegalArgumentException If there is no such voyage.
+     */
+    private Bus getVoyage(int voyageId) {
+        Bus bus = voyages.get(voyageId);
+        if (bus == null) {
+            throw new IllegalArgumentException("There is no voyage with ID of " + voyageId + "!");
+        }
+        return bus;
+    }
+
+    /**
+     * Selects the given seats of a bus, checking that they all exist.
+     *
+     * @param selection   the selection of the calling thread.
+     * @param bus         the bus of the voyage.
+     * @param seatNumbers the seats to be selected.
+     * @throws IllegalArgumentException If one of the seats does not exist.
+     */
+    private static void select(SeatSelection selection, Bus bus, int[] seatNumbers) {
+        int status = selection.select(seatNumbers, bus.getSeats().getCapacity());
+        if (status == SeatSelection.NO_SUCH_SEAT) {
+            throw new IllegalArgumentException("There is no such a seat!");
+        }
+        if (status == SeatSelection.NOT_POSITIVE) {
+            throw new IllegalArgumentException(selection.getInvalidSeat() + " is not a positive integer, seat number must be a positive integer!");
+        }
+    }
+
+    /**
+     * Creates the exception of an operation whose revenue would not fit into {@link Money} units.
+     *
+     * @param voyageId the ID of the voyage.
+     * @param cause    the overflow.
+     * @return the exception to be thrown.
+     */
+    private static IllegalStateException revenueOutOfRange(int voyageId, ArithmeticException cause) {
+        return new IllegalStateException("Revenue of the Voyage " + voyageId + " would be out of range!", cause);
+    }
+
+    /**
+     * Returns the lock guarding the voyage with the given ID.
+     *
+     * @param voyageId the ID of the voyage.
+     * @return the lock of the voyage's stripe.
+     */
+    private Object lockFor(int voyageId) {
+        return locks[Math.floorMod(voyageId, locks.length)];
+    }
+}
@@ -1,8 +1,17 @@
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * The {@code Main} class serves as the entry point for the bus voyage management application.
@@ -16,56 +25,298 @@ public class BookingSystem {
      * The main method reads and processes commands from a specified file.
      * It initializes the {@link Voyage} management system and executes commands
      * until the end of the file. If the last command isn't a "Z_REPORT", it triggers
-     * the generation of a summary report.
+     * the generation of a summary report. When the {@code booking.shards} system property
+     * is greater than one, the commands are executed on a {@link ShardedVoyageEngine} with that many shards.
+     * When the {@code booking.journal} system property is set, the state is restored from and journaled to
+     * the {@link VoyageJournal} at that base path, and the commands are executed on a single thread.
+     * When the {@code booking.metrics} system property is set, the {@link VoyageMetrics} of the run are
+     * written to that path as JSON at the end, and when {@code booking.metrics.interval} is set, they are
+     * also printed to the standard error stream every that many seconds.
+     * The input file is read through a {@link MappedFileInput}, unless the {@code booking.input} system property
+     * is {@code stream}, in which case it is read through a {@link StreamingFileInput}, e.g. for inputs that
+     * are not regular files and can not be mapped.
+     *
+     * <p>
+     * More than one pair of paths replays every input file into its own output file within this JVM, on a thread
+     * pool of {@code booking.threads} threads (the number of processors by default). Every file is processed by its
+     * own {@link Voyage}, so each output file is the same as the output of a separate run with only that pair.
+     * The metrics of all the files are collected together, and the journal can not be used in this mode.
      *
      * @param args Array of command-line arguments where args[0] is the path to the input file
      *             containing commands, and args[1] is the path to the output file where results
-     *             and logs are written.
+     *             and logs are written; more input and output paths may follow in pairs.
      */
     public static void main(String[] args) {
+        VoyageMetrics metrics = createMetrics();
+        try {
+            if (args.length > 2) {
+                replayAll(args, metrics);
+            } else {
+                replay(args[0], args[1], metrics, fileOutput -> {
+                    if (metrics != null) {
+                        metrics.setOutputBytes(fileOutput::getBytesWritten);
+                    }
+                });
+            }
+        } catch (Exception ex) {
+            // Print stack trace to standard error stream in case of exceptions
+            ex.printStackTrace();
+        } finally {
+            if (metrics != null) {
+                dumpMetrics(metrics);
+            }
+        }
+    }
+
+    /**
+     * Replays a single input file into its output file.
+     *
+     * @param inputPath  The path to the input file containing commands.
+     * @param outputPath The path to the output file where results and logs are written.
+     * @param metrics    The metrics the commands are recorded to, or null if no metrics are collected.
+     * @param onOpen     Called with the output once it is created, e.g. to count its bytes.
+     * @throws IOException If an I/O error occurs while reading the commands or writing the output.
+     */
+    private static void replay(String inputPath, String outputPath, VoyageMetrics metrics,
+                               Consumer<BufferedFileOutput> onOpen) throws IOException {
+        // Commands are streamed one line at a time; the output file is opened once
+        // and flushed when the block ends, even if a command fails
+        try (CommandInput commands = openInput(inputPath);
+             BufferedFileOutput fileOutput = new BufferedFileOutput(outputPath,
+                     BufferedFileOutput.DEFAULT_BUFFER_SIZE, syncPolicy())) {
+            onOpen.accept(fileOutput);
+
+            int shards = Integer.getInteger("booking.shards", 1);
+            String journalPath = System.getProperty("booking.journal");
+            if (shards > 1 && journalPath == null) {
+                processSharded(commands, fileOutput, shards, metrics);
+            } else {
+                process(commands, fileOutput, journalPath, metrics);
+            }
+
+            // The output file must not end with a newline, it is taken back before it reaches the file
+            fileOutput.removeLastNewline();
+        }
+    }
+
+    /**
+     * Replays every pair of input and output paths on a thread pool of {@code booking.threads} threads.
+     * A file that fails is reported like a single run would report it, and does not stop the other files.
+     *
+     * @param args    The input and output paths, in pairs.
+     * @param metrics The metrics the commands of all the files are recorded to, or null if no metrics are collected.
+     * @throws InterruptedException If the thread is interrupted while waiting for the files.
+     */
+    private static void replayAll(String[] args, VoyageMetrics metrics) throws InterruptedException {
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Input and output paths must be given in pairs!");
+        }
+        if (System.getProperty("booking.journal") != null) {
+            throw new IllegalArgumentException("The journal can only be used with a single input file!");
+        }
+        int files = args.length / 2;
+        int threads = Math.min(files, Integer.getInteger("booking.threads", Runtime.getRuntime().availableProcessors()));
+        if (threads < 1) {
+            throw new IllegalArgumentException(threads + " is not a positive integer, number of threads must be a positive integer!");
+        }
+
+        Queue<BufferedFileOutput> outputs = new ConcurrentLinkedQueue<>();
+        if (metrics != null) {
+            metrics.setOutputBytes(() -> outputs.stream().mapToLong(BufferedFileOutput::getBytesWritten).sum());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
-            String output_path = args[1]; // Path to the output file for logging
+            for (int i = 0; i < files; i++) {
+                String inputPath = args[2 * i];
+                String outputPath = args[2 * i + 1];
+                executor.execute(() -> {
+                    try {
+                        replay(inputPath, outputPath, metrics, outputs::add);
+                    } catch (Exception ex) {
+                        // Print stack trace to standard error stream in case of exceptions
+                        ex.printStackTrace();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting until every file has been replayed
+            }
+        }
+    }
+
+    /**
+     * Executes the commands on a single {@link Voyage} management system.
+     * If the last command isn't a "Z_REPORT", it triggers the generation of a summary report.
+     * If a journal path is given, the state left by the previous runs is restored from the
+     * {@link VoyageJournal} first, and every change of the state is journaled.
+     *
+     * @param commands    The input the commands are read from.
+     * @param fileOutput  The output where results and logs are written.
+     * @param journalPath The base path of the journal files, or null if the state is not journaled.
+     * @param metrics     The metrics the commands are recorded to, or null if no metrics are collected.
+     * @throws IOException If an I/O error occurs while reading the commands or the journal.
+     */
+    private static void process(CommandInput commands, BufferedFileOutput fileOutput, String journalPath,
+                                VoyageMetrics metrics) throws IOException {
+        // Initialize voyage management system
+        Voyage voyage = new Voyage();
+        voyage.setMetrics(metrics);
+        VoyageJournal journal = null;
+        if (journalPath != null) {
+            journal = new VoyageJournal(voyage, journalPath,
+                    Integer.getInteger("booking.snapshot.interval", VoyageJournal.DEFAULT_SNAPSHOT_INTERVAL), syncPolicy());
+            journal.open();
+            fileOutput.setWriteAheadLog(journal); // The output is never written ahead of the journal
+        }
+        try {
+            boolean lastZReport = false; // Track whether the last processed command is "Z_REPORT"
+
+            // Process each line as a command, the line may be a view that is reused for the next line
+            CharSequence line;
+            while ((line = commands.nextLine()) != null) {
+                voyage.input(line, fileOutput);
+                lastZReport = "Z_REPORT".contentEquals(line); // Update last processed command
+            }
 
-            // Reads all lines from the input file; expecting proper handling for file reading
-            String[] content = FileInput.readFile(args[0], true, true);
+            // If the last command is not "Z_REPORT", manually generate a report
+            if (!lastZReport) {
+                voyage.printZReport(fileOutput);
+            }
+        } finally {
+            if (journal != null) {
+                fileOutput.setWriteAheadLog(null);
+                journal.close();
+            }
+        }
+    }
 
-            // Initialize voyage management system
-            Voyage voyage = new Voyage();
+    /**
+     * Executes the commands on a {@link ShardedVoyageEngine} with the given number of shards.
+     * The output is the same as the output of {@link #process(CommandInput, BufferedFileOutput, String, VoyageMetrics)}.
+     *
+     * @param commands   The input the commands are read from.
+     * @param fileOutput The output where results and logs are written.
+     * @param shards     The number of shards, i.e. worker threads.
+     * @param metrics    The metrics the commands are recorded to, or null if no metrics are collected.
+     * @throws IOException If an I/O error occurs while reading the commands.
+     */
+    private static void processSharded(CommandInput commands, CommandOutput fileOutput, int shards,
+                                       VoyageMetrics metrics) throws IOException {
+        try (ShardedVoyageEngine engine = new ShardedVoyageEngine(shards, fileOutput)) {
+            engine.setMetrics(metrics);
             String lastLine = ""; // Track the last processed command
 
-            // Process each line as a command
-            for (String line : content) {
-                voyage.input(line, output_path);
+            // The lines are queued for the worker threads, so they are copied into strings
+            CharSequence next;
+            while ((next = commands.nextLine()) != null) {
+                String line = next.toString();
+                engine.input(line);
                 lastLine = line; // Update last processed command
             }
 
             // If the last command is not "Z_REPORT", manually generate a report
             if (!lastLine.equals("Z_REPORT")) {
-                voyage.printZReport(voyage.busMap, output_path);
+                engine.printZReport();
+            } else {
+                engine.flush();
             }
+        }
+    }
 
-            removeLastNewline(output_path);
+    /**
+     * Opens the input file the way the {@code booking.input} system property asks for.
+     * Accepted values are {@code mapped} and {@code stream}; the default is {@code mapped}.
+     * Empty lines are discarded and every line is trimmed.
+     *
+     * @param path Path to the input file.
+     * @return the opened input.
+     * @throws IOException If the file can not be opened.
+     */
+    private static CommandInput openInput(String path) throws IOException {
+        String mode = System.getProperty("booking.input", "mapped").trim().toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "mapped":
+                return new MappedFileInput(path, true, true);
+            case "stream":
+                return new StreamingFileInput(path, true, true);
+            default:
+                throw new IllegalArgumentException("Unknown input mode: " + mode);
+        }
+    }
 
-        } catch (Exception ex) {
-            // Print stack trace to standard error stream in case of exceptions
-            ex.printStackTrace();
+    /**
+     * Creates the metrics of the run if they are requested by the {@code booking.metrics} or
+     * {@code booking.metrics.interval} system properties, and starts the periodic reporter if needed.
+     *
+     * @return the metrics, or null if no metrics are requested.
+     */
+    private static VoyageMetrics createMetrics() {
+        String path = System.getProperty("booking.metrics");
+        Integer interval = Integer.getInteger("booking.metrics.interval");
+        if (path == null && interval == null) {
+            return null;
         }
+        VoyageMetrics metrics = new VoyageMetrics();
+        if (interval != null && interval > 0) {
+            metrics.startReporter(interval * 1000L, System.err);
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops the periodic reporter and writes the final metrics to the path given by the {@code booking.metrics}
+     * system property, or to the standard error stream if only the reporter was requested.
+     *
+     * @param metrics The metrics of the run.
+     */
+    private static void dumpMetrics(VoyageMetrics metrics) {
+        metrics.close();
+        String path = System.getProperty("booking.metrics");
+        if (path == null) {
+            System.err.println(metrics.toJson());
+            return;
+        }
+        try {
+            Files.write(Paths.get(path), (metrics.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the sync policy of the output file, read from the {@code booking.fsync} system property.
+     * Accepted values are {@code none}, {@code on_close} and {@code on_flush}; the default is {@code none}.
+     *
+     * @return the sync policy to be used for the output file.
+     */
+    private static BufferedFileOutput.SyncPolicy syncPolicy() {
+        String policy = System.getProperty("booking.fsync", "none");
+        return BufferedFileOutput.SyncPolicy.valueOf(policy.trim().toUpperCase(Locale.ROOT));
     }
 
     /**
      * Removes the last newline character from the specified file if it exists.
+     * Only the last byte of the file is read, and the file is truncated in place, so it takes constant time
+     * no matter how large the file is. The output of {@link #main(String[])} does not need it, since
+     * {@link BufferedFileOutput#removeLastNewline()} removes that newline before it is written.
      *
      * @param filePath The path to the file from which the newline should be removed.
      * @throws IOException If an I/O error occurs reading or writing to the file.
      */
     public static void removeLastNewline(String filePath) throws IOException {
-        Path path = Paths.get(filePath);
-        String content = new String(Files.readAllBytes(path));
-        if (content.endsWith("\n")) {
-            // Remove the last newline character
-            content = content.substring(0, content.length() - 1);
-            // Write back to the file without the newline
-            Files.write(path, content.getBytes(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            if (last.get(0) == '\n') {
+                // Remove the last newline character
+                channel.truncate(size - 1);
+            }
         }
     }
 
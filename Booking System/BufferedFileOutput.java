@@ -0,0 +1,306 @@
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code BufferedFileOutput} class is a long-lived counterpart of {@link FileOutput}.
+ * Instead of opening and closing the file for every line, it opens a single channel to the
+ * file on the first write, buffers everything written to it in a character array and only touches
+ * the disk when the buffer fills up, when {@link #flush()} is called or when the output is closed.
+ * The bytes produced are the same as repeated {@code FileOutput.writeToFile(path, content, true, newLine)} calls.
+ * <p>
+ * A write-ahead log such as a {@link VoyageJournal} can be attached to the output; it is flushed every time
+ * before buffered content is written to the file, so the output never gets ahead of the log.
+ */
+public class BufferedFileOutput implements CommandOutput, Closeable {
+
+    /**
+     * Default size of the character buffer in front of the file channel.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Describes when the written content is forced to the storage device.
+     */
+    public enum SyncPolicy {
+        /** Never forces the channel, the operating system decides when the data reaches the disk. */
+        NONE,
+        /** Forces the channel once, right before it is closed. */
+        ON_CLOSE,
+        /** Forces the channel on every explicit flush and before it is closed. */
+        ON_FLUSH
+    }
+
+    private final String path;
+    private final char[] buffer;
+    private final SyncPolicy syncPolicy;
+    private int count;
+    private FileChannel channel;
+    private Writer writer;
+    private boolean closed;
+    private volatile long bytesWritten;
+    private Flushable writeAheadLog;
+
+    /**
+     * Constructs an output for the given path with the default buffer size and no forced syncs.
+     *
+     * @param path Path for the file content is going to be appended to.
+     */
+    public BufferedFileOutput(String path) {
+        this(path, DEFAULT_BUFFER_SIZE, SyncPolicy.NONE);
+    }
+
+    /**
+     * Constructs an output for the given path. The file itself is opened lazily on the first write,
+     * so a run that writes nothing leaves the file system untouched just like {@link FileOutput} does.
+     *
+     * @param path       Path for the file content is going to be appended to.
+     * @param bufferSize Size of the character buffer in front of the file.
+     * @param syncPolicy When the written content is forced to the storage device.
+     */
+    public BufferedFileOutput(String path, int bufferSize, SyncPolicy syncPolicy) {
+        this.path = path;
+        this.buffer = new char[bufferSize];
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * Sets the log that is flushed before any buffered content of this output is written to the file.
+     *
+     * @param writeAheadLog the log, or null to stop flushing it.
+     */
+    public void setWriteAheadLog(Flushable writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * Appends the given content to the buffer.
+     *
+     * @param content Content that is going to be written to file.
+     * @param newLine True if wanted to append a new line after content, false if vice versa.
+     */
+    @Override
+    public void write(String content, boolean newLine) {
+        int offset = 0;
+        int length = content.length();
+        while (offset < length) {
+            if (count == buffer.length && !drain()) {
+                return;
+            }
+            int chunk = Math.min(length - offset, buffer.length - count);
+            content.getChars(offset, offset + chunk, buffer, count);
+            count += chunk;
+            offset += chunk;
+        }
+        if (newLine) {
+            append('\n');
+        }
+    }
+
+    /**
+     * Appends a single character to the buffer.
+     *
+     * @param c the character to be appended.
+     * @return this output.
+     */
+    @Override
+    public BufferedFileOutput append(char c) {
+        if (count == buffer.length && !drain()) {
+            return this;
+        }
+        buffer[count++] = c;
+        return this;
+    }
+
+    /**
+     * Appends the given character sequence to the buffer without turning it into a string first.
+     *
+     * @param csq the character sequence to be appended, "null" is appended if it is null.
+     * @return this output.
+     */
+    @Override
+    public BufferedFileOutput append(CharSequence csq) {
+        CharSequence chars = csq == null ? "null" : csq;
+        return append(chars, 0, chars.length());
+    }
+
+    /**
+     * Appends a part of the given character sequence to the buffer, copying it in chunks that fit into the buffer.
+     *
+     * @param csq   the character sequence to be appended, "null" is used if it is null.
+     * @param start the index of the first character, inclusive.
+     * @param end   the index of the last character, exclusive.
+     * @return this output.
+     */
+    @Override
+    public BufferedFileOutput append(CharSequence csq, int start, int end) {
+        CharSequence chars = csq == null ? "null" : csq;
+        int offset = start;
+        while (offset < end) {
+            if (count == buffer.length && !drain()) {
+                return this;
+            }
+            int chunk = Math.min(end - offset, buffer.length - count);
+            for (int i = 0; i < chunk; i++) {
+                buffer[count + i] = chars.charAt(offset + i);
+            }
+            count += chunk;
+            offset += chunk;
+        }
+        return this;
+    }
+
+    /**
+     * Removes the last character written to this output if it is a new line. Usually the new line is still
+     * in the buffer and is simply taken back; otherwise the last byte of the file is checked and the file is
+     * truncated through its channel. Either way it takes constant time, no matter how large the output is.
+     *
+     * @throws IOException If an I/O error occurs while reading or truncating the file.
+     */
+    public void removeLastNewline() throws IOException {
+        if (count > 0) {
+            if (buffer[count - 1] == '\n') {
+                count--;
+            }
+            return;
+        }
+        open().flush();
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        try (FileChannel reader = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            reader.read(last, size - 1); // A channel opened for appending can not be read
+        }
+        if (last.get(0) == '\n') {
+            channel.truncate(size - 1);
+            bytesWritten--;
+        }
+    }
+
+    /**
+     * Returns the number of bytes that have reached the file so far. Characters still in the buffers
+     * are not counted until they are flushed. May be called from any thread.
+     *
+     * @return the number of bytes written to the file.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the buffered content to the file, and forces it to the disk if the sync policy is {@link SyncPolicy#ON_FLUSH}.
+     *
+     * @throws IOException If an I/O error occurs while writing to the file.
+     */
+    public void flush() throws IOException {
+        drainOrThrow();
+        if (writer == null) {
+            return;
+        }
+        writer.flush();
+        if (syncPolicy == SyncPolicy.ON_FLUSH) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Flushes the remaining content and closes the underlying channel. Closing an already closed output has no effect.
+     *
+     * @throws IOException If an I/O error occurs while writing to or closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            drainOrThrow();
+            if (writer != null) {
+                writer.flush();
+                if (syncPolicy != SyncPolicy.NONE) {
+                    channel.force(false);
+                }
+            }
+        } finally {
+            closed = true;
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered characters to the file, reporting errors like {@link FileOutput} does.
+     *
+     * @return true if the buffer has been emptied, false if an error occurred.
+     */
+    private boolean drain() {
+        try {
+            drainOrThrow();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the buffered characters to the file, after the write-ahead log if there is one.
+     *
+     * @throws IOException If an I/O error occurs while writing to the file or the log.
+     */
+    private void drainOrThrow() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.flush();
+        }
+        open().write(buffer, 0, count);
+        count = 0;
+    }
+
+    /**
+     * Opens the channel to the file on the first call and returns the writer that encodes characters into it.
+     * The default charset is used so that the output matches the one produced by {@link FileOutput}.
+     *
+     * @return the writer of this output.
+     * @throws IOException If the file can not be opened or this output has already been closed.
+     */
+    private Writer open() throws IOException {
+        if (writer == null) {
+            if (closed) {
+                throw new IOException("Output to " + path + " has already been closed");
+            }
+            channel = FileChannel.open(Paths.get(path),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            OutputStream counted = new FilterOutputStream(Channels.newOutputStream(channel)) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    bytesWritten++;
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                    bytesWritten += length;
+                }
+            };
+            writer = new OutputStreamWriter(counted, Charset.defaultCharset());
+        }
+        return writer;
+    }
+}
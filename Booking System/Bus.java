@@ -1,10 +1,7 @@
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * The {@code Bus} class represents a bus involved in a voyage from one city to another.
  * It stores the bus's identification details, route information, seating capacity, price per seat,
- * list of sold seats, total revenue generated, and a premium fee applicable for certain seats.
+ * inventory of sold seats, total revenue generated, and a premium fee applicable for certain seats.
  */
 public class Bus {
 
@@ -12,10 +9,11 @@ public class Bus {
     private String fromCity;
     private String toCity;
     private Integer rows;
-    private Double price;
-    private List<Integer> soldSeatNumbers;
-    private Double revenue;
+    private long price;
+    private SeatInventory seats;
+    private long revenue;
     private Integer premiumFee;
+    private String details;
 
 
     /**
@@ -29,11 +27,11 @@ public class Bus {
 
     /**
      * Constructs a new {@code Bus} instance with default values.
-     * Initializes the list of sold seat numbers and sets initial revenue to zero.
+     * Initializes an empty seat inventory and sets initial revenue to zero.
      */
     public Bus() {
-        soldSeatNumbers = new ArrayList<>();
-        revenue = 0.0;
+        seats = new SeatInventory(0);
+        revenue = 0;
     }
 
     /**
@@ -52,6 +50,7 @@ public class Bus {
      */
     public void setId(Integer id) {
         this.id = id;
+        this.details = null;
     }
 
     /**
@@ -70,6 +69,7 @@ public class Bus {
      */
     public void setFromCity(String fromCity) {
         this.fromCity = fromCity;
+        this.details = null;
     }
     /**
      * Returns the destination city of the bus voyage.
@@ -87,6 +87,7 @@ public class Bus {
      */
     public void setToCity(String toCity) {
         this.toCity = toCity;
+        this.details = null;
     }
 
     /**
@@ -99,64 +100,276 @@ public class Bus {
     }
 
     /**
-     * Sets the number of rows of seats in the bus.
+     * Sets the number of rows of seats in the bus and creates an empty seat inventory sized for them.
      *
      * @param rows the new number of seat rows in the bus.
      */
     public void setRows(Integer rows) {
         this.rows = rows;
+        this.seats = new SeatInventory(rows * getSeatsPerRow());
+        this.details = null;
     }
     /**
      * Returns the price of a regular seat on the bus.
      *
-     * @return the price of a seat as a Double.
+     * @return the price of a seat in {@link Money} units.
      */
-    public Double getPrice() {
+    public long getPrice() {
         return price;
     }
 
     /**
      * Sets the price of a regular seat on the bus.
      *
-     * @param price the new price of a seat.
+     * @param price the new price of a seat in {@link Money} units.
      */
-    public void setPrice(Double price) {
+    public void setPrice(long price) {
         this.price = price;
+        this.details = null;
+        updatePrices();
+    }
+
+    /**
+     * Returns the inventory of the sold seats of the bus.
+     *
+     * @return the seat inventory of the bus.
+     */
+    public SeatInventory getSeats() {
+        return seats;
+    }
+
+    /**
+     * Marks the given seat as sold.
+     *
+     * @param seatNumber the seat number, must be in range of [1, rows * seats per row].
+     * @return true if the seat has been sold, false if it was already sold.
+     */
+    public boolean sellSeat(int seatNumber) {
+        details = null;
+        return seats.sell(seatNumber);
     }
 
     /**
-     * Returns the list of seat numbers that have been sold.
+     * Marks the given seat as empty.
      *
-     * @return a list of sold seat numbers as List<Integer>.
+     * @param seatNumber the seat number, must be in range of [1, rows * seats per row].
+     * @return true if the seat has been refunded, false if it was already empty.
      */
-    public List<Integer> getSoldSeatNumbers() {
-        return soldSeatNumbers;
+    public boolean refundSeat(int seatNumber) {
+        details = null;
+        return seats.refund(seatNumber);
     }
 
     /**
-     * Sets the list of seat numbers that have been sold.
+     * Returns the total price of the seats of the selection, without selling them.
      *
-     * @param soldSeatNumbers the new list of sold seat numbers.
+     * @param selection the seats to be sold.
+     * @return the total price of the seats in {@link Money} units.
+     * @throws ArithmeticException If the revenue after the sale would not fit into a long.
      */
-    public void setSoldSeatNumbers(List<Integer> soldSeatNumbers) {
-        this.soldSeatNumbers = soldSeatNumbers;
+    public long getSaleTotal(SeatSelection selection) {
+        long totalPrice = 0;
+        for (int i = 0; i < selection.size(); i++) {
+            totalPrice = Math.addExact(totalPrice, getSeatPrice(selection.get(i)));
+        }
+        Math.addExact(revenue, totalPrice);
+        return totalPrice;
     }
+
+    /**
+     * Sells every seat of the selection and adds their prices to the revenue. The seats are priced before any
+     * of them is sold, so a sale whose revenue would not fit into {@link Money} units changes nothing.
+     * The seats must not have been sold; held seats are released from their holds.
+     *
+     * @param selection the seats to be sold.
+     * @return the total price of the seats in {@link Money} units.
+     * @throws ArithmeticException If the revenue would not fit into a long.
+     */
+    public long sellSeats(SeatSelection selection) {
+        long totalPrice = getSaleTotal(selection);
+        sellSeats(selection, totalPrice);
+        return totalPrice;
+    }
+
+    /**
+     * Sells every seat of the selection for a total price returned by {@link #getSaleTotal(SeatSelection)}.
+     * The seats must not have been sold; held seats are released from their holds.
+     *
+     * @param selection  the seats to be sold.
+     * @param totalPrice the total price of the seats in {@link Money} units.
+     */
+    public void sellSeats(SeatSelection selection, long totalPrice) {
+        for (int i = 0; i < selection.size(); i++) {
+            sellSeat(selection.get(i));
+        }
+        setRevenue(revenue + totalPrice);
+    }
+
+    /**
+     * Returns the total amount paid back for the seats of the selection, without refunding them.
+     *
+     * @param selection the seats to be refunded.
+     * @return the total amount paid back in {@link Money} units.
+     * @throws ArithmeticException If the revenue after the refund would not fit into a long.
+     */
+    public long getRefundTotal(SeatSelection selection) {
+        long totalRefundAmount = 0;
+        for (int i = 0; i < selection.size(); i++) {
+            totalRefundAmount = Math.addExact(totalRefundAmount, getRefundAmount(selection.get(i)));
+        }
+        Math.subtractExact(revenue, totalRefundAmount);
+        return totalRefundAmount;
+    }
+
+    /**
+     * Refunds every seat of the selection and subtracts their refund amounts from the revenue. The refunds are
+     * priced before any seat is refunded, so a refund whose revenue would not fit into {@link Money} units
+     * changes nothing. The seats must have been sold.
+     *
+     * @param selection the seats to be refunded.
+     * @return the total amount paid back in {@link Money} units.
+     * @throws ArithmeticException If the revenue would not fit into a long.
+     */
+    public long refundSeats(SeatSelection selection) {
+        long totalRefundAmount = getRefundTotal(selection);
+        refundSeats(selection, totalRefundAmount);
+        return totalRefundAmount;
+    }
+
+    /**
+     * Refunds every seat of the selection for a total amount returned by {@link #getRefundTotal(SeatSelection)}.
+     * The seats must have been sold.
+     *
+     * @param selection         the seats to be refunded.
+     * @param totalRefundAmount the total amount paid back in {@link Money} units.
+     */
+    public void refundSeats(SeatSelection selection, long totalRefundAmount) {
+        for (int i = 0; i < selection.size(); i++) {
+            refundSeat(selection.get(i));
+        }
+        setRevenue(revenue - totalRefundAmount);
+    }
+
+    /**
+     * Returns the revenue that is left when every sold seat is refunded at its full price, as when the voyage
+     * is cancelled, i.e. the refund cuts kept from earlier refunds.
+     *
+     * @return the revenue left after the refunds in {@link Money} units.
+     * @throws ArithmeticException If the revenue would not fit into a long.
+     */
+    public long getRevenueAfterCancel() {
+        long newRevenue = revenue;
+        for (int seat : seats.toArray()) {
+            newRevenue = Math.subtractExact(newRevenue, getSeatPrice(seat));
+        }
+        return newRevenue;
+    }
+
+    /**
+     * Refunds every sold seat at its full price, as when the voyage is cancelled, and subtracts the prices from
+     * the revenue. Nothing is changed if the revenue would not fit into {@link Money} units.
+     *
+     * @return the revenue left after the refunds in {@link Money} units.
+     * @throws ArithmeticException If the revenue would not fit into a long.
+     */
+    public long refundAllSeats() {
+        long newRevenue = getRevenueAfterCancel();
+        for (int seat : seats.toArray()) { // Copy to avoid concurrent modification
+            refundSeat(seat);
+        }
+        setRevenue(newRevenue);
+        return newRevenue;
+    }
+
+    /**
+     * Holds the given seats until the given time. The seats must be neither sold nor held.
+     *
+     * @param seatNumbers the seat numbers, each in range of [1, rows * seats per row].
+     * @param expiresAt   the time the hold expires at.
+     * @return the new hold.
+     */
+    public SeatHold holdSeats(int[] seatNumbers, long expiresAt) {
+        details = null;
+        SeatHold hold = new SeatHold(this, seats.nextHoldId(), expiresAt, seatNumbers);
+        seats.hold(hold);
+        return hold;
+    }
+
+    /**
+     * Releases the seats that are still held by the given hold.
+     *
+     * @param hold the hold to be released.
+     */
+    public void releaseHold(SeatHold hold) {
+        details = null;
+        seats.release(hold);
+    }
+
+    /**
+     * Releases all the held seats of the bus.
+     */
+    public void releaseHolds() {
+        details = null;
+        seats.releaseAll();
+    }
+
+    /**
+     * Checks whether the given seat has been sold.
+     *
+     * @param seatNumber the seat number to be checked.
+     * @return true if the seat is sold, false otherwise.
+     */
+    public boolean isSeatSold(int seatNumber) {
+        return seats.isSold(seatNumber);
+    }
+
     /**
      * Returns the total revenue generated from ticket sales.
      *
-     * @return the total revenue as a Double.
+     * @return the total revenue in {@link Money} units.
      */
-    public Double getRevenue() {
+    public long getRevenue() {
         return revenue;
     }
 
     /**
      * Sets the total revenue generated from ticket sales.
      *
-     * @param revenue the new total revenue amount.
+     * @param revenue the new total revenue amount in {@link Money} units.
      */
-    public void setRevenue(Double revenue) {
+    public void setRevenue(long revenue) {
         this.revenue = revenue;
+        this.details = null;
+    }
+
+    /**
+     * Returns the price of the given seat. Every seat costs the regular price unless a subclass says otherwise.
+     *
+     * @param seatNumber the seat number.
+     * @return the price of the seat in {@link Money} units.
+     */
+    public long getSeatPrice(int seatNumber) {
+        return getPrice();
+    }
+
+    /**
+     * Returns the amount paid back when the given seat is refunded.
+     * The default implementation pays nothing back, refundable bus types should override it.
+     *
+     * @param seatNumber the seat number.
+     * @return the refund amount of the seat in {@link Money} units.
+     */
+    public long getRefundAmount(int seatNumber) {
+        return 0;
+    }
+
+    /**
+     * Recalculates the seat prices and refund amounts that depend on the regular price.
+     * Called whenever the price or a fee changes, so that selling and refunding seats only
+     * looks up precomputed amounts. Bus types with such amounts should override it.
+     */
+    protected void updatePrices() {
+        // Default implementation, every seat costs the regular price and nothing is refunded
     }
 
     /**
@@ -165,25 +378,79 @@ public class Bus {
      * @return a formatted string of sold seat numbers.
      */
     public String getSeatNumbersAsString() {
-        String seatNumbersToPrint = "";
-        for (int i = 0; i < soldSeatNumbers.size(); i++) {
-            if (i == soldSeatNumbers.size() - 1) {
-                seatNumbersToPrint += soldSeatNumbers.get(i);
-            } else {
-                seatNumbersToPrint += soldSeatNumbers.get(i) + "-";
+        StringBuilder seatNumbersToPrint = new StringBuilder();
+        seats.forEachSold(seat -> {
+            if (seatNumbersToPrint.length() > 0) {
+                seatNumbersToPrint.append("-");
+            }
+            seatNumbersToPrint.append(seat);
+        });
+        return seatNumbersToPrint.toString();
+    }
+
+    /**
+     * Returns the template of a single row of the seating layout. Every '*' in the template stands for
+     * a seat, numbered from left to right, and is replaced by 'X' when the seat is sold or by 'H' when it is held; every other
+     * character is copied as it is. The template ends with a new line.
+     *
+     * @return the row template of the seating layout.
+     */
+    public String getRowTemplate() {
+        return ""; // Default implementation, should be overridden in subclasses
+    }
+
+    /**
+     * Renders the seating layout of the bus straight into the given output, one character at a time,
+     * by repeating the row template for every row. No intermediate strings are created.
+     *
+     * @param output the output the seating layout is appended to.
+     */
+    public void appendSeatingLayout(CommandOutput output) {
+        String template = getRowTemplate();
+        int length = template.length();
+        int seatNumber = 1;
+        for (int row = 0; row < getRows(); row++) {
+            for (int i = 0; i < length; i++) {
+                char c = template.charAt(i);
+                if (c == '*') {
+                    output.append(seats.isSold(seatNumber) ? 'X' : seats.isHeld(seatNumber) ? 'H' : '*');
+                    seatNumber++;
+                } else {
+                    output.append(c);
+                }
             }
         }
-        return seatNumbersToPrint;
     }
 
     /**
-     * Returns a string representation of the seating layout of the bus.
-     * The specific layout implementation is not detailed in this class.
+     * Returns a string representation of the seating layout of the bus, where 'X' denotes
+     * a sold seat, 'H' a held seat and '*' an available seat, row by row.
      *
      * @return a string detailing the seating layout.
      */
     public String getSeatingLayout() {
-        return ""; // Default implementation, should be overridden in subclasses
+        StringOutput output = new StringOutput();
+        appendSeatingLayout(output);
+        return output.toString();
+    }
+
+    /**
+     * Returns the details of the voyage as they are printed by the "PRINT_VOYAGE" command and in Z reports:
+     * the voyage ID, the route, the seating layout and the revenue. The text is rendered once and kept
+     * until the bus is changed, so voyages that have not changed since the last report are not rendered again.
+     *
+     * @return the details of the voyage, without a trailing new line.
+     */
+    public String getDetails() {
+        if (details == null) {
+            StringOutput output = new StringOutput();
+            output.append("Voyage ").append(String.valueOf(getId())).append('\n')
+                    .append(getFromCity()).append('-').append(getToCity()).append('\n');
+            appendSeatingLayout(output);
+            output.append("Revenue: ").append(Money.format(getRevenue()));
+            details = output.toString();
+        }
+        return details;
     }
 
     /**
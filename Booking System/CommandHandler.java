@@ -0,0 +1,15 @@
+/**
+ * The {@code CommandHandler} interface represents the action taken for a single type of command,
+ * such as "SELL_TICKET". Handlers are registered to a {@link Voyage} by the name of the command they handle.
+ */
+@FunctionalInterface
+public interface CommandHandler {
+
+    /**
+     * Executes the given command and logs its results and errors to the given output.
+     *
+     * @param command    The tokenized command line, the first field is the name of the command.
+     * @param fileOutput The output where outputs and errors are logged.
+     */
+    void execute(CommandLine command, CommandOutput fileOutput);
+}
@@ -0,0 +1,18 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The {@code CommandInput} interface represents the source the lines of a command file are read from,
+ * one line at a time, such as a {@link StreamingFileInput} or a {@link MappedFileInput}.
+ */
+public interface CommandInput extends Closeable {
+
+    /**
+     * Returns the next line of the input. The returned sequence may be a view that is reused for the next line,
+     * so it has to be copied with {@link CharSequence#toString()} if it is kept after the next call.
+     *
+     * @return the next line of the input, or null if the end of the input has been reached.
+     * @throws IOException If an I/O error occurs while reading the input.
+     */
+    CharSequence nextLine() throws IOException;
+}
@@ -0,0 +1,271 @@
+import java.util.Arrays;
+
+/**
+ * The {@code CommandLine} class is a tokenized view of a single command line.
+ * The line is scanned once for tab separators and only the start and end offsets of the
+ * fields are stored, so a single instance can be reused for every line of a command file.
+ * Fields are turned into strings or numbers only when a command handler asks for them, and numbers and
+ * command names are read from the characters of the line directly, so the line may be any character sequence,
+ * such as the reused line view of a {@link MappedFileInput}, and is never copied into a string for that.
+ * Field boundaries follow {@code line.split("\t")}, including the removal of trailing empty fields.
+ */
+public class CommandLine {
+
+    /**
+     * The most digits a number parsed in place by {@link #getDouble(int)} may have, so that they are exactly representable.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * The powers of ten up to {@code 10^}{@value #MAX_EXACT_DIGITS}, all of which are exact doubles.
+     */
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private CharSequence line = "";
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+
+    /**
+     * Tokenizes the given line, replacing the previously held one.
+     *
+     * The line is held, not copied, so it must not change while this command line is in use.
+     *
+     * @param line the command line to be tokenized.
+     * @return this command line, for convenience.
+     */
+    public CommandLine reset(CharSequence line) {
+        this.line = line;
+        this.size = 0;
+        int length = line.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(i) == '\t') {
+                add(start, i);
+                start = i + 1;
+            }
+        }
+        if (size == 0) {
+            add(0, length); // No separator, the whole line is the only field
+            return this;
+        }
+        add(start, length);
+        while (size > 0 && starts[size - 1] == ends[size - 1]) {
+            size--; // Trailing empty fields are discarded like String.split does
+        }
+        return this;
+    }
+
+    /**
+     * Returns the complete command line.
+     *
+     * @return the command line as it was given.
+     */
+    public CharSequence getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the number of fields in the command line.
+     *
+     * @return the number of tab separated fields.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the field at the given index as a string.
+     *
+     * @param index the index of the field.
+     * @return the field at the given index.
+     * @throws ArrayIndexOutOfBoundsException If there is no field at the given index.
+     */
+    public String get(int index) {
+        checkIndex(index);
+        return line.subSequence(starts[index], ends[index]).toString();
+    }
+
+    /**
+     * Returns the index of the first character of the field at the given index in {@link #getLine()}.
+     *
+     * @param index the index of the field.
+     * @return the index of the first character of the field.
+     * @throws ArrayIndexOutOfBoundsException If there is no field at the given index.
+     */
+    public int getStart(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * Returns the index after the last character of the field at the given index in {@link #getLine()}.
+     *
+     * @param index the index of the field.
+     * @return the index after the last character of the field.
+     * @throws ArrayIndexOutOfBoundsException If there is no field at the given index.
+     */
+    public int getEnd(int index) {
+        checkIndex(index);
+        return ends[index];
+    }
+
+    /**
+     * Checks whether the field at the given index is equal to the given text, without creating a string for the field.
+     *
+     * @param index the index of the field.
+     * @param text  the text to be compared with the field.
+     * @return true if the field is equal to the text, false otherwise.
+     * @throws ArrayIndexOutOfBoundsException If there is no field at the given index.
+     */
+    public boolean fieldEquals(int index, String text) {
+        checkIndex(index);
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the field at the given index as an integer. Plain decimal fields are parsed in place,
+     * anything else is handed over to {@link Integer#parseInt(String)} so that the same exceptions are thrown.
+     *
+     * @param index the index of the field.
+     * @return the integer value of the field.
+     * @throws ArrayIndexOutOfBoundsException If there is no field at the given index.
+     * @throws NumberFormatException          If the field is not a valid integer.
+     */
+    public int getInt(int index) {
+        checkIndex(index);
+        int start = starts[index];
+        int end = ends[index];
+        boolean negative = start < end && line.charAt(start) == '-';
+        int i = negative || (start < end && line.charAt(start) == '+') ? start + 1 : start;
+        // Up to nine digits always fit into an int
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(get(index));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return Integer.parseInt(get(index));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Checks whether the field at the given index is a valid integer, i.e. whether {@link #getInt(int)} parses it
+     * without throwing an exception. Plain decimal fields are checked in place, anything else is tried with
+     * {@link Integer#parseInt(String)}.
+     *
+     * @param index the index of the field.
+     * @return true if the field is a valid integer.
+     * @throws ArrayIndexOutOfBoundsException If there is no field at the given index.
+     */
+    public boolean isInt(int index) {
+        checkIndex(index);
+        int start = starts[index];
+        int end = ends[index];
+        int i = start < end && (line.charAt(start) == '-' || line.charAt(start) == '+') ? start + 1 : start;
+        boolean plain = i < end && end - i <= 9;
+        for (; plain && i < end; i++) {
+            char c = line.charAt(i);
+            plain = c >= '0' && c <= '9';
+        }
+        if (plain) {
+            return true;
+        }
+        try {
+            Integer.parseInt(get(index));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses the field at the given index as a double. Plain decimal fields such as "150" or "-12.75" with at most
+     * {@value #MAX_EXACT_DIGITS} digits are parsed in place: their digits form an exact integer, which is divided by
+     * an exact power of ten, so the single rounding of that division gives the same double as
+     * {@link Double#parseDouble(String)}. Anything else is handed over to {@link Double#parseDouble(String)}.
+     *
+     * @param index the index of the field.
+     * @return the double value of the field.
+     * @throws ArrayIndexOutOfBoundsException If there is no field at the given index.
+     * @throws NumberFormatException          If the field is not a valid number.
+     */
+    public double getDouble(int index) {
+        checkIndex(index);
+        int start = starts[index];
+        int end = ends[index];
+        boolean negative = start < end && line.charAt(start) == '-';
+        int i = negative || (start < end && line.charAt(start) == '+') ? start + 1 : start;
+        long digits = 0;
+        int digitCount = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || digitCount == MAX_EXACT_DIGITS) {
+                return Double.parseDouble(get(index));
+            }
+            digits = digits * 10 + (c - '0');
+            digitCount++;
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+        if (digitCount == 0) {
+            return Double.parseDouble(get(index)); // Reports "", "-" and "." as malformed
+        }
+        double value = fractionDigits > 0 ? digits / POWERS_OF_TEN[fractionDigits] : digits;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Appends a field to the offset arrays, growing them if necessary.
+     *
+     * @param start the index of the first character of the field.
+     * @param end   the index after the last character of the field.
+     */
+    private void add(int start, int end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * Throws an exception if there is no field at the given index.
+     *
+     * @param index the index of the field.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * The {@code CommandOutput} interface represents the destination of the outputs and errors
+ * produced while commands are processed, such as a file or an in-memory buffer.
+ * It is also an {@link Appendable} whose methods do not throw checked exceptions, so that
+ * large outputs such as seating layouts can be rendered into it piece by piece without building strings.
+ */
+public interface CommandOutput extends Appendable {
+
+    /**
+     * Writes the given content to the output.
+     *
+     * @param content Content that is going to be written.
+     * @param newLine True if wanted to append a new line after content, false if vice versa.
+     */
+    void write(String content, boolean newLine);
+
+    /**
+     * Appends a single character to the output.
+     *
+     * @param c the character to be appended.
+     * @return this output.
+     */
+    @Override
+    CommandOutput append(char c);
+
+    /**
+     * Appends the given character sequence to the output.
+     *
+     * @param csq the character sequence to be appended, "null" is appended if it is null.
+     * @return this output.
+     */
+    @Override
+    default CommandOutput append(CharSequence csq) {
+        write(String.valueOf(csq), false);
+        return this;
+    }
+
+    /**
+     * Appends a part of the given character sequence to the output.
+     *
+     * @param csq   the character sequence to be appended, "null" is used if it is null.
+     * @param start the index of the first character, inclusive.
+     * @param end   the index of the last character, exclusive.
+     * @return this output.
+     */
+    @Override
+    default CommandOutput append(CharSequence csq, int start, int end) {
+        CharSequence chars = csq == null ? "null" : csq;
+        for (int i = start; i < end; i++) {
+            append(chars.charAt(i));
+        }
+        return this;
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/**
+ * The {@code HoldExpiryQueue} class orders the running {@link SeatHold}s of a voyage management system by their
+ * expiry time. It is a binary min-heap over an array in which every hold knows its own index, so that a hold
+ * which is sold or cancelled before it expires can be removed in logarithmic time, instead of staying in the
+ * queue, and keeping its bus alive, until its time comes.
+ */
+public class HoldExpiryQueue {
+
+    private SeatHold[] heap = new SeatHold[16];
+    private int size;
+
+    /**
+     * Returns the number of holds in the queue.
+     *
+     * @return the number of queued holds.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a hold that is not in the queue yet.
+     *
+     * @param hold the new hold.
+     */
+    public void add(SeatHold hold) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        siftUp(size++, hold);
+    }
+
+    /**
+     * Returns the hold that expires first, without removing it.
+     *
+     * @return the hold with the earliest expiry time, or null if the queue is empty.
+     */
+    public SeatHold peek() {
+        return size == 0 ? null : heap[0];
+    }
+
+    /**
+     * Removes the given hold if it is in the queue.
+     *
+     * @param hold the hold to be removed.
+     * @return true if the hold was in the queue, false otherwise.
+     */
+    public boolean remove(SeatHold hold) {
+        int index = hold.getQueueIndex();
+        if (index < 0 || index >= size || heap[index] != hold) {
+            return false;
+        }
+        hold.setQueueIndex(-1);
+        SeatHold last = heap[--size];
+        heap[size] = null;
+        if (index < size) {
+            // The last hold takes the place of the removed one and moves towards whichever end it belongs to
+            siftDown(index, last);
+            if (heap[index] == last) {
+                siftUp(index, last);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves a hold from the given index towards the root until its parent does not expire later.
+     *
+     * @param index the index the hold starts from.
+     * @param hold  the hold.
+     */
+    private void siftUp(int index, SeatHold hold) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].getExpiresAt() <= hold.getExpiresAt()) {
+                break;
+            }
+            place(index, heap[parent]);
+            index = parent;
+        }
+        place(index, hold);
+    }
+
+    /**
+     * Moves a hold from the given index towards the leaves until none of its children expires earlier.
+     *
+     * @param index the index the hold starts from.
+     * @param hold  the hold.
+     */
+    private void siftDown(int index, SeatHold hold) {
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1].getExpiresAt() < heap[child].getExpiresAt()) {
+                child++;
+            }
+            if (hold.getExpiresAt() <= heap[child].getExpiresAt()) {
+                break;
+            }
+            place(index, heap[child]);
+            index = child;
+        }
+        place(index, hold);
+    }
+
+    /**
+     * Stores a hold at the given index of the heap and records the index in the hold.
+     *
+     * @param index the index in the heap.
+     * @param hold  the hold.
+     */
+    private void place(int index, SeatHold hold) {
+        heap[index] = hold;
+        hold.setQueueIndex(index);
+    }
+}
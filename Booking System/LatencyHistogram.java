@@ -0,0 +1,123 @@
+/**
+ * The {@code LatencyHistogram} class records latencies in the layout of an HDR histogram.
+ * Values below 128 get a bucket of their own; above that, every power of two is split into 64 buckets
+ * of equal width, so any recorded value is known within 1.6% while the whole range of {@code long}
+ * fits into a few thousand counters. Recording a value is a few shifts and an array increment.
+ * The class is not thread-safe, callers recording from several threads must synchronize.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long totalValue;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Records a value.
+     *
+     * @param value the value to be recorded, negative values are recorded as zero.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[indexOf(value)]++;
+        totalCount++;
+        totalValue += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the count of values.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the smallest recorded value.
+     *
+     * @return the minimum, or zero if nothing has been recorded.
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the maximum, or zero if nothing has been recorded.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean, or zero if nothing has been recorded.
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) totalValue / totalCount;
+    }
+
+    /**
+     * Returns the value at the given percentile, i.e. the largest value of the bucket holding that percentile,
+     * limited by the largest recorded value.
+     *
+     * @param percentile the percentile, in range of [0, 100].
+     * @return the value at the percentile, or zero if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the index of the bucket of the given value.
+     *
+     * @param value a non-negative value.
+     * @return the index of the bucket.
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value that falls into the given bucket.
+     *
+     * @param index the index of the bucket.
+     * @return the largest value of the bucket.
+     */
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        long subBucket = index - (long) shift * SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1; // Wraps to Long.MAX_VALUE for the last bucket
+    }
+}
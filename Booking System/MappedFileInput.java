@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@code MappedFileInput} class reads a command file through memory-mapped windows of a {@link FileChannel}
+ * instead of a reader. The bytes of a line are scanned for the line terminator and copied into a single
+ * character array in the same pass, and the line is returned as a view of that array, so no string,
+ * byte array or decoder buffer is created per line. Together with {@link CommandLine}, which parses fields
+ * of the view in place, a command is tokenized and its numbers are parsed without allocating anything.
+ * <p>
+ * The file is mapped {@link #DEFAULT_WINDOW_SIZE} bytes at a time, so files larger than 2 GB can be read
+ * and only the window being read has to be resident. A line that crosses the end of a window is read again
+ * from the next window, which starts at the beginning of that line.
+ * <p>
+ * Lines end at {@code \n}, {@code \r} or {@code \r\n}, and empty line and trim handling is the same as
+ * {@link StreamingFileInput}. Lines of plain ASCII are copied byte by byte; a line with any other byte is decoded
+ * as UTF-8 like {@link StreamingFileInput} does, and malformed input is reported the same way.
+ */
+public class MappedFileInput implements CommandInput {
+
+    /**
+     * Default number of bytes mapped at a time.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+    private final boolean discardEmptyLines;
+    private final boolean trim;
+    private final Line line = new Line();
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+    private char[] chars = new char[256];
+    private CharsetDecoder decoder;
+
+    /**
+     * Opens the file at the given path for reading with the default window size.
+     *
+     * @param path              Path to the file that is going to be read.
+     * @param discardEmptyLines If true, discards empty lines with respect to trim; else, it takes all the lines from the file.
+     * @param trim              Trim status; if true, trims each line; else, it leaves each line as-is.
+     * @throws IOException If there is no such a file or this program does not have sufficient permissions to read it.
+     */
+    public MappedFileInput(String path, boolean discardEmptyLines, boolean trim) throws IOException {
+        this(path, discardEmptyLines, trim, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens the file at the given path for reading.
+     *
+     * @param path              Path to the file that is going to be read.
+     * @param discardEmptyLines If true, discards empty lines with respect to trim; else, it takes all the lines from the file.
+     * @param trim              Trim status; if true, trims each line; else, it leaves each line as-is.
+     * @param windowSize        The number of bytes mapped at a time; a longer line makes its window larger.
+     * @throws IOException If there is no such a file or this program does not have sufficient permissions to read it.
+     */
+    public MappedFileInput(String path, boolean discardEmptyLines, boolean trim, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        this.discardEmptyLines = discardEmptyLines;
+        this.trim = trim;
+        this.windowSize = windowSize;
+        try {
+            this.fileSize = channel.size();
+            map(0, 0);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the next line of the file, skipping the empty lines if they are discarded.
+     * The returned line is a view that is overwritten by the next call.
+     *
+     * @return the next line of the file, or null if the end of the file has been reached.
+     * @throws IOException If an I/O error occurs while reading the file, or the file is not valid UTF-8.
+     */
+    @Override
+    public CharSequence nextLine() throws IOException {
+        int length;
+        while ((length = readLine()) >= 0) {
+            int start = 0;
+            int end = length;
+            // Same characters as String.trim removes
+            while (start < end && chars[start] <= ' ') {
+                start++;
+            }
+            while (end > start && chars[end - 1] <= ' ') {
+                end--;
+            }
+            if (discardEmptyLines && start == end) {
+                continue;
+            }
+            return trim ? line.set(start, end) : line.set(0, length);
+        }
+        return null;
+    }
+
+    /**
+     * Closes the underlying channel. The last window is unmapped once it is garbage collected.
+     *
+     * @throws IOException If an I/O error occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Copies the next line of the file into {@link #chars} and moves past its terminator.
+     *
+     * @return the number of characters of the line, or -1 if the end of the file has been reached.
+     * @throws IOException If an I/O error occurs while mapping the file, or the line is not valid UTF-8.
+     */
+    private int readLine() throws IOException {
+        while (true) {
+            MappedByteBuffer bytes = window;
+            int limit = bytes.limit();
+            boolean lastWindow = windowStart + limit == fileSize;
+            if (position == limit && lastWindow) {
+                return -1;
+            }
+            int end = position;
+            int length = 0;
+            boolean ascii = true;
+            byte b = 0;
+            for (; end < limit; end++) {
+                b = bytes.get(end);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                if (length == chars.length) {
+                    chars = Arrays.copyOf(chars, length * 2);
+                }
+                chars[length++] = (char) b;
+                ascii &= b >= 0;
+            }
+            // The line, or the \n of its \r\n, may continue in the next window
+            if (!lastWindow && (end == limit || (b == '\r' && end + 1 == limit))) {
+                map(windowStart + position, end - position);
+                continue;
+            }
+            if (!ascii) {
+                length = decode(bytes, position, end);
+            }
+            if (end < limit) {
+                end += b == '\r' && end + 1 < limit && bytes.get(end + 1) == '\n' ? 2 : 1;
+            }
+            position = end;
+            return length;
+        }
+    }
+
+    /**
+     * Decodes a line with bytes outside of ASCII into {@link #chars} as UTF-8.
+     *
+     * @param bytes the window holding the line.
+     * @param start the index of the first byte of the line.
+     * @param end   the index after the last byte of the line.
+     * @return the number of characters of the line.
+     * @throws IOException If the line is not valid UTF-8.
+     */
+    private int decode(MappedByteBuffer bytes, int start, int end) throws IOException {
+        if (decoder == null) {
+            decoder = StandardCharsets.UTF_8.newDecoder();
+        }
+        ByteBuffer in = bytes.duplicate().position(start).limit(end);
+        CharBuffer out = CharBuffer.wrap(chars); // UTF-8 never has more characters than bytes
+        decoder.reset();
+        CoderResult result = decoder.decode(in, out, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        decoder.flush(out);
+        return out.position();
+    }
+
+    /**
+     * Maps the window starting at the given offset of the file.
+     *
+     * @param start   the offset of the first byte of the window.
+     * @param pending the number of bytes from the start that have to be followed by at least one more byte.
+     * @throws IOException If an I/O error occurs while mapping the file or a single line does not fit into a window.
+     */
+    private void map(long start, int pending) throws IOException {
+        long size = Math.min(fileSize - start, Math.max(windowSize, 2L * pending + 2));
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Line at offset " + start + " is too long to be mapped");
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * The {@code Line} class is the view of the current line returned by {@link #nextLine()}.
+     */
+    private final class Line implements CharSequence {
+
+        private int start;
+        private int end;
+
+        /**
+         * Points the view to a part of the characters of the current line.
+         *
+         * @param start the index of the first character.
+         * @param end   the index after the last character.
+         * @return this view.
+         */
+        private Line set(int start, int end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new StringIndexOutOfBoundsException("Index " + index + " out of bounds for length " + (end - start));
+            }
+            return chars[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > end - start || from > to) {
+                throw new StringIndexOutOfBoundsException("begin " + from + ", end " + to + ", length " + (end - start));
+            }
+            return new String(chars, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
+        }
+    }
+}
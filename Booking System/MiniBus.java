@@ -16,33 +16,14 @@ public class MiniBus extends Bus {
     }
 
     /**
-     * Provides a seating layout representation for the minibus. Each row in the minibus is represented
-     * by two seats, where 'X' denotes a sold seat and '*' denotes an available seat. This layout
-     * is presented row by row.
+     * Returns the row template of the minibus. Each row in the minibus is represented
+     * by two seats, where 'X' denotes a sold seat and '*' denotes an available seat.
      *
-     * @return a string representation of the minibus's seating layout, row by row.
+     * @return the row template of the seating layout.
      */
     @Override
-    public String getSeatingLayout() {
-        StringBuilder builder = new StringBuilder();
-        int seatNumber = 1;
-        for (int row = 0; row < getRows(); row++) {
-            if (getSoldSeatNumbers().contains(seatNumber)) {
-                builder.append("X ");
-            } else {
-                builder.append("* ");
-            }
-            seatNumber++;
-            if (getSoldSeatNumbers().contains(seatNumber)) {
-                builder.append("X");
-            } else {
-                builder.append("*");
-            }
-            seatNumber++;
-
-            builder.append("\n");
-        }
-        return builder.toString();
+    public String getRowTemplate() {
+        return "* *\n";
     }
 
     /**
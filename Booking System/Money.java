@@ -0,0 +1,89 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The {@code Money} class holds the fixed-point arithmetic used for prices, refunds and revenues.
+ * Amounts are stored in primitive {@code long}s counting millionths of a Turkish lira (a ten-thousandth
+ * of a kurus). Prices with up to two decimals, their premium fees and their refund cuts are all exact in
+ * this unit, so totals never drift no matter how many tickets are sold and refunded.
+ * <p>
+ * The units are the only record of an amount, and the output is formatted from them: an amount is rounded
+ * half away from zero to whole kurus and shown with two decimals, e.g. "1250.50". This is what
+ * {@code String.format("%.2f", amount)} shows for the same amount, except where the output used to show
+ * {@code double} arithmetic errors: an amount that is exactly half a kurus is always rounded up, even if
+ * its {@code double} lies just below it, and an amount that is zero is shown as "0.00", never as "-0.00".
+ * <p>
+ * Amounts that do not fit into a {@code long} are not wrapped around, the operations throw an
+ * {@link ArithmeticException} instead, which the commands report as an error.
+ */
+public final class Money {
+
+    /**
+     * The number of units in one Turkish lira.
+     */
+    public static final long UNITS_PER_LIRA = 1_000_000L;
+
+    private static final long UNITS_PER_KURUS = UNITS_PER_LIRA / 100;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount given in liras to units. The shortest decimal representation of the
+     * double is used, so a price read as "10.005" is converted exactly.
+     *
+     * @param liras the amount in liras.
+     * @return the amount in units, rounded half up to the nearest unit.
+     * @throws ArithmeticException If the amount is not a finite number or does not fit into a long.
+     */
+    public static long of(double liras) {
+        if (!Double.isFinite(liras)) {
+            throw new ArithmeticException(liras + " is not a finite amount");
+        }
+        return BigDecimal.valueOf(liras).movePointRight(6).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Returns the given percentage of an amount, rounded half up to the nearest unit.
+     *
+     * @param amount  the amount in units.
+     * @param percent the percentage, may be more than 100.
+     * @return the percentage of the amount in units.
+     * @throws ArithmeticException If the result does not fit into a long.
+     */
+    public static long percent(long amount, long percent) {
+        // Split off the last two digits, so that only results that do not fit overflow, not the product
+        long whole = Math.multiplyExact(amount / 100, percent);
+        long rest = Math.multiplyExact(amount % 100, percent);
+        return Math.addExact(whole, divideHalfUp(rest, 100));
+    }
+
+    /**
+     * Formats an amount with two decimals, rounding half away from zero, e.g. "1250.50".
+     *
+     * @param amount the amount in units.
+     * @return the amount in liras with two decimals.
+     */
+    public static String format(long amount) {
+        long kurus = divideHalfUp(amount, UNITS_PER_KURUS);
+        long abs = Math.abs(kurus);
+        long fraction = abs % 100;
+        return (kurus < 0 ? "-" : "") + (abs / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Divides a value, rounding half away from zero.
+     *
+     * @param value   the value to be divided.
+     * @param divisor the positive divisor.
+     * @return the rounded quotient.
+     */
+    private static long divideHalfUp(long value, long divisor) {
+        long quotient = value / divisor;
+        long remainder = value % divisor;
+        if (Math.abs(remainder) >= divisor - Math.abs(remainder)) {
+            quotient += value >= 0 ? 1 : -1;
+        }
+        return quotient;
+    }
+}
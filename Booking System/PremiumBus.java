@@ -6,6 +6,9 @@
 public class PremiumBus extends Bus {
     private Integer refundCut;
     private Integer premiumFee;
+    private long premiumPrice;
+    private long refundAmount;
+    private long premiumRefundAmount;
 
     /**
      * Returns the percentage cut from the refund amount for tickets of this bus type.
@@ -24,6 +27,7 @@ public class PremiumBus extends Bus {
      */
     public void setRefundCut(Integer refundCut) {
         this.refundCut = refundCut;
+        updatePrices();
     }
 
     /**
@@ -43,6 +47,55 @@ public class PremiumBus extends Bus {
      */
     public void setPremiumFee(Integer premiumFee) {
         this.premiumFee = premiumFee;
+        updatePrices();
+    }
+
+    /**
+     * Returns the price of a premium seat, which is the regular price plus the premium fee.
+     *
+     * @return the price of a premium seat in {@link Money} units.
+     */
+    public long getPremiumPrice() {
+        return premiumPrice;
+    }
+
+    /**
+     * Returns the price of the given seat. The first seat of every row is a premium seat,
+     * which costs the regular price plus the premium fee.
+     *
+     * @param seatNumber the seat number.
+     * @return the price of the seat in {@link Money} units.
+     */
+    @Override
+    public long getSeatPrice(int seatNumber) {
+        return seatNumber % 3 == 1 ? premiumPrice : getPrice();
+    }
+
+    /**
+     * Returns the amount paid back when the given seat is refunded, which is the seat price minus the refund cut.
+     *
+     * @param seatNumber the seat number.
+     * @return the refund amount of the seat in {@link Money} units.
+     */
+    @Override
+    public long getRefundAmount(int seatNumber) {
+        return seatNumber % 3 == 1 ? premiumRefundAmount : refundAmount;
+    }
+
+    /**
+     * Recalculates the premium seat price and the refund amounts of both seat kinds
+     * from the price, the premium fee and the refund cut.
+     */
+    @Override
+    protected void updatePrices() {
+        premiumPrice = premiumFee == null ? getPrice() : getPrice() + Money.percent(getPrice(), premiumFee);
+        if (refundCut == null) {
+            refundAmount = 0;
+            premiumRefundAmount = 0;
+        } else {
+            refundAmount = Money.percent(getPrice(), 100 - refundCut);
+            premiumRefundAmount = Money.percent(premiumPrice, 100 - refundCut);
+        }
     }
 
     /**
@@ -57,43 +110,15 @@ public class PremiumBus extends Bus {
     }
 
     /**
-     * Provides a seating layout representation for the premium bus. Each row is represented with three seats:
+     * Returns the row template of the premium bus. Each row is represented with three seats:
      * one premium seat followed by two regular seats, where 'X' denotes a sold seat and '*' denotes an available seat.
      * Premium and regular seats are separated by a vertical bar ('|').
      *
-     * @return a string representation of the bus's seating layout, row by row.
+     * @return the row template of the seating layout.
      */
-    @Override    public String getSeatingLayout() {
-        StringBuilder builder = new StringBuilder();
-        int seatNumber = 1;
-        for (int row = 0; row < getRows(); row++) {
-            // Print premium seat first
-            if (getSoldSeatNumbers().contains(seatNumber)) {
-                builder.append("X ");
-            } else {
-                builder.append("* ");
-            }
-            seatNumber++;
-
-            builder.append("| "); // Separator for premium and standard seats
-
-            if (getSoldSeatNumbers().contains(seatNumber)) {
-                builder.append("X ");
-            } else {
-                builder.append("* ");
-            }
-            seatNumber++;
-
-            if (getSoldSeatNumbers().contains(seatNumber)) {
-                builder.append("X");
-            } else {
-                builder.append("*");
-            }
-            seatNumber++;
-
-            builder.append("\n");
-        }
-        return builder.toString();
+    @Override
+    public String getRowTemplate() {
+        return "* | * *\n";
     }
 
     /**
@@ -0,0 +1,154 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.LongConsumer;
+
+/**
+ * The {@code RouteIndex} class indexes voyages by their route and bus type, ordered by the number of their free seats.
+ * For every route and bus type, the voyages are kept in a sorted set of keys that combine the free seat count
+ * and the voyage ID, so the voyages with at least N free seats are a tail of that set. A lookup therefore takes
+ * logarithmic time plus the time to visit the matching voyages, no matter how many voyages there are.
+ * <p>
+ * The index has to be told about every change: {@link #add(Bus)} and {@link #remove(Bus)} when a voyage is
+ * initialized or cancelled, and {@link #update(Bus)} whenever seats of a voyage are sold, refunded, held or released.
+ * Held seats are not free.
+ */
+public class RouteIndex {
+
+    /**
+     * Voyages by departure city, destination city and bus type.
+     */
+    private final Map<String, Map<String, Map<String, NavigableSet<Long>>>> routes = new HashMap<>();
+
+    /**
+     * The key every indexed voyage is currently stored under, by voyage ID.
+     */
+    private final Map<Integer, Long> keys = new HashMap<>();
+
+    /**
+     * Adds a voyage to the index.
+     *
+     * @param bus the bus of the voyage.
+     */
+    public void add(Bus bus) {
+        long key = keyOf(freeSeats(bus), bus.getId());
+        keys.put(bus.getId(), key);
+        routes.computeIfAbsent(bus.getFromCity(), from -> new HashMap<>())
+                .computeIfAbsent(bus.getToCity(), to -> new HashMap<>())
+                .computeIfAbsent(bus.getBusType(), type -> new TreeSet<>())
+                .add(key);
+    }
+
+    /**
+     * Removes a voyage from the index. Empty routes are dropped, so cancelled routes take no memory.
+     *
+     * @param bus the bus of the voyage.
+     */
+    public void remove(Bus bus) {
+        Long key = keys.remove(bus.getId());
+        if (key == null) {
+            return;
+        }
+        Map<String, Map<String, NavigableSet<Long>>> destinations = routes.get(bus.getFromCity());
+        Map<String, NavigableSet<Long>> busTypes = destinations.get(bus.getToCity());
+        NavigableSet<Long> voyages = busTypes.get(bus.getBusType());
+        voyages.remove(key);
+        if (voyages.isEmpty()) {
+            busTypes.remove(bus.getBusType());
+            if (busTypes.isEmpty()) {
+                destinations.remove(bus.getToCity());
+                if (destinations.isEmpty()) {
+                    routes.remove(bus.getFromCity());
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a voyage to its new place after seats of it have been sold, refunded, held or released.
+     *
+     * @param bus the bus of the voyage.
+     */
+    public void update(Bus bus) {
+        Long oldKey = keys.get(bus.getId());
+        long newKey = keyOf(freeSeats(bus), bus.getId());
+        if (oldKey == null || oldKey == newKey) {
+            return;
+        }
+        NavigableSet<Long> voyages = routes.get(bus.getFromCity()).get(bus.getToCity()).get(bus.getBusType());
+        voyages.remove(oldKey);
+        voyages.add(newKey);
+        keys.put(bus.getId(), newKey);
+    }
+
+    /**
+     * Passes the voyages of a route that have at least the given number of free seats to the given action.
+     * Each voyage is passed as a key, whose {@link #idOf(long)} and {@link #freeSeatsOf(long)} are its ID and free seat count.
+     *
+     * @param fromCity  the departure city.
+     * @param toCity    the destination city.
+     * @param busType   the bus type of the voyages, or null for voyages of every bus type.
+     * @param freeSeats the minimum number of free seats.
+     * @param action    the action to be performed for each matching voyage.
+     */
+    public void query(String fromCity, String toCity, String busType, int freeSeats, LongConsumer action) {
+        Map<String, Map<String, NavigableSet<Long>>> destinations = routes.get(fromCity);
+        Map<String, NavigableSet<Long>> busTypes = destinations == null ? null : destinations.get(toCity);
+        if (busTypes == null) {
+            return;
+        }
+        long from = keyOf(freeSeats, 0);
+        if (busType != null) {
+            NavigableSet<Long> voyages = busTypes.get(busType);
+            if (voyages != null) {
+                voyages.tailSet(from, true).forEach(action::accept);
+            }
+            return;
+        }
+        for (NavigableSet<Long> voyages : busTypes.values()) {
+            voyages.tailSet(from, true).forEach(action::accept);
+        }
+    }
+
+    /**
+     * Returns the voyage ID of a key passed by {@link #query(String, String, String, int, LongConsumer)}.
+     *
+     * @param key the key of a voyage.
+     * @return the ID of the voyage.
+     */
+    public static int idOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Returns the free seat count of a key passed by {@link #query(String, String, String, int, LongConsumer)}.
+     *
+     * @param key the key of a voyage.
+     * @return the number of free seats of the voyage.
+     */
+    public static int freeSeatsOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    /**
+     * Returns the number of free seats of a bus.
+     *
+     * @param bus the bus.
+     * @return the number of seats that are neither sold nor held.
+     */
+    private static int freeSeats(Bus bus) {
+        return bus.getSeats().getFreeCount();
+    }
+
+    /**
+     * Combines a free seat count and a voyage ID into a key that sorts by the free seat count first.
+     *
+     * @param freeSeats the non-negative number of free seats.
+     * @param id        the non-negative voyage ID.
+     * @return the key.
+     */
+    private static long keyOf(int freeSeats, int id) {
+        return ((long) freeSeats << 32) | id;
+    }
+}
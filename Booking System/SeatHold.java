@@ -0,0 +1,113 @@
+/**
+ * The {@code SeatHold} class is a temporary claim on some seats of a voyage, made by a "HOLD_TICKET" command
+ * while the customer pays. Held seats can not be sold to anybody else until the hold expires, and selling them
+ * with the ID of the hold converts them into sold seats. Hold IDs are numbered from 1 for every voyage.
+ * <p>
+ * The seats of a hold are released one by one as they are sold, and all at once when the hold expires or
+ * the voyage is cancelled; a hold without any held seats left is no longer active.
+ */
+public class SeatHold {
+
+    private final Bus bus;
+    private final int id;
+    private final long expiresAt;
+    private final int[] seats;
+    private int heldCount;
+    private int queueIndex = -1; // index in the HoldExpiryQueue of the voyage management system, -1 if not queued
+
+    /**
+     * Constructs a hold on the given seats. The seats are held once the hold is added to the seat inventory of the bus.
+     *
+     * @param bus       the bus of the voyage.
+     * @param id        the ID of the hold, unique among the holds of the voyage.
+     * @param expiresAt the time the hold expires at.
+     * @param seats     the held seat numbers.
+     */
+    public SeatHold(Bus bus, int id, long expiresAt, int[] seats) {
+        this.bus = bus;
+        this.id = id;
+        this.expiresAt = expiresAt;
+        this.seats = seats;
+    }
+
+    /**
+     * Returns the bus of the voyage the seats are held on.
+     *
+     * @return the bus of the voyage.
+     */
+    public Bus getBus() {
+        return bus;
+    }
+
+    /**
+     * Returns the ID of the hold.
+     *
+     * @return the ID of the hold, unique among the holds of the voyage.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the time the hold expires at.
+     *
+     * @return the expiry time.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Returns the seats the hold was made for, including those that have been released since.
+     *
+     * @return the seat numbers.
+     */
+    public int[] getSeats() {
+        return seats;
+    }
+
+    /**
+     * Returns the number of seats that are still held.
+     *
+     * @return the number of held seats.
+     */
+    public int getHeldCount() {
+        return heldCount;
+    }
+
+    /**
+     * Sets the number of seats that are still held, maintained by the {@link SeatInventory} of the bus.
+     *
+     * @param heldCount the new number of held seats.
+     */
+    void setHeldCount(int heldCount) {
+        this.heldCount = heldCount;
+    }
+
+    /**
+     * Returns the index of the hold in the heap of a {@link HoldExpiryQueue}, maintained by the queue.
+     *
+     * @return the index in the queue, or -1 if the hold is not queued.
+     */
+    int getQueueIndex() {
+        return queueIndex;
+    }
+
+    /**
+     * Sets the index of the hold in the heap of a {@link HoldExpiryQueue}.
+     *
+     * @param queueIndex the new index in the queue, or -1 if the hold has been removed from it.
+     */
+    void setQueueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
+    /**
+     * Checks whether any seat is still held.
+     *
+     * @return true if at least one seat is held, false if the hold has been sold, expired or cancelled.
+     */
+    public boolean isActive() {
+        return heldCount > 0;
+    }
+}
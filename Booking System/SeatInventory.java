@@ -0,0 +1,320 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The {@code SeatInventory} class keeps track of the sold and held seats of a bus.
+ * Seats are numbered from 1 to the capacity of the bus. Occupancy is stored in a {@link BitSet},
+ * so selling, refunding and checking a seat take constant time. The sold seats are also
+ * chained in a doubly linked list over primitive arrays, which allows them to be visited
+ * in the order they were sold without any boxing.
+ * <p>
+ * A seat that is not sold may be held by a {@link SeatHold}. Held seats are kept in a second bitmap,
+ * and the ID of the hold of every held seat in an array that is only allocated when the first seat is held.
+ */
+public class SeatInventory {
+
+    private final int capacity;
+    private final BitSet sold;
+    // Index 0 is the sentinel of the circular list: next[0] is the first sold seat, prev[0] is the last one.
+    private final int[] next;
+    private final int[] prev;
+    private int soldCount;
+    private final BitSet held = new BitSet();
+    private int[] holder; // holder[seat] is the ID of the hold of the seat, 0 if it is not held
+    private Map<Integer, SeatHold> holds;
+    private int heldCount;
+    private int lastHoldId;
+
+    /**
+     * Constructs an empty inventory for the given number of seats.
+     *
+     * @param capacity the number of seats, seats are numbered from 1 to capacity.
+     */
+    public SeatInventory(int capacity) {
+        this.capacity = capacity;
+        this.sold = new BitSet(capacity + 1);
+        this.next = new int[capacity + 1];
+        this.prev = new int[capacity + 1];
+    }
+
+    /**
+     * Returns the number of seats in this inventory.
+     *
+     * @return the capacity of the inventory.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of sold seats.
+     *
+     * @return the number of sold seats.
+     */
+    public int getSoldCount() {
+        return soldCount;
+    }
+
+    /**
+     * Returns the number of held seats.
+     *
+     * @return the number of seats that are held and not sold.
+     */
+    public int getHeldCount() {
+        return heldCount;
+    }
+
+    /**
+     * Returns the number of free seats.
+     *
+     * @return the number of seats that are neither sold nor held.
+     */
+    public int getFreeCount() {
+        return capacity - soldCount - heldCount;
+    }
+
+    /**
+     * Checks whether the given seat has been sold.
+     *
+     * @param seat the seat number.
+     * @return true if the seat is sold, false if it is empty or does not exist.
+     */
+    public boolean isSold(int seat) {
+        return seat > 0 && sold.get(seat);
+    }
+
+    /**
+     * Checks whether any of the given seats has been sold, comparing the bitmaps a word at a time.
+     *
+     * @param seats the bitmap of the seats to be checked, indexed by seat number.
+     * @return true if at least one of the seats is sold, false if they are all empty.
+     */
+    public boolean isAnySold(BitSet seats) {
+        return sold.intersects(seats);
+    }
+
+    /**
+     * Checks whether all of the given seats have been sold.
+     *
+     * @param seats the bitmap of the seats to be checked, indexed by seat number.
+     * @return true if every seat is sold, false if at least one of them is empty.
+     */
+    public boolean isEverySold(BitSet seats) {
+        for (int seat = seats.nextSetBit(0); seat >= 0; seat = seats.nextSetBit(seat + 1)) {
+            if (!sold.get(seat)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the given seat is held.
+     *
+     * @param seat the seat number.
+     * @return true if the seat is held, false if it is sold, free or does not exist.
+     */
+    public boolean isHeld(int seat) {
+        return seat > 0 && held.get(seat);
+    }
+
+    /**
+     * Checks whether any of the given seats is held, comparing the bitmaps a word at a time.
+     *
+     * @param seats the bitmap of the seats to be checked, indexed by seat number.
+     * @return true if at least one of the seats is held, false otherwise.
+     */
+    public boolean isAnyHeld(BitSet seats) {
+        return held.intersects(seats);
+    }
+
+    /**
+     * Checks whether all of the given seats are held by the given hold.
+     *
+     * @param seats the bitmap of the seats to be checked, indexed by seat number.
+     * @param hold  the hold.
+     * @return true if every seat is held by the hold, false otherwise.
+     */
+    public boolean isEveryHeldBy(BitSet seats, SeatHold hold) {
+        for (int seat = seats.nextSetBit(0); seat >= 0; seat = seats.nextSetBit(seat + 1)) {
+            if (!held.get(seat) || holder[seat] != hold.getId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the ID the next hold of this inventory is to be created with.
+     *
+     * @return a hold ID that has not been used before.
+     */
+    public int nextHoldId() {
+        return ++lastHoldId;
+    }
+
+    /**
+     * Returns the active hold with the given ID.
+     *
+     * @param id the ID of the hold.
+     * @return the hold, or null if there is no hold with that ID or none of its seats is held anymore.
+     */
+    public SeatHold getHold(int id) {
+        return holds == null ? null : holds.get(id);
+    }
+
+    /**
+     * Returns the active holds of this inventory.
+     *
+     * @return a copy of the holds that still hold at least one seat, in no particular order.
+     */
+    public List<SeatHold> getHolds() {
+        return holds == null ? new ArrayList<>() : new ArrayList<>(holds.values());
+    }
+
+    /**
+     * Marks the seats of the given hold as held by it. The seats must be neither sold nor held.
+     *
+     * @param hold the new hold.
+     */
+    public void hold(SeatHold hold) {
+        if (holds == null) {
+            holds = new HashMap<>();
+            holder = new int[capacity + 1];
+        }
+        for (int seat : hold.getSeats()) {
+            held.set(seat);
+            holder[seat] = hold.getId();
+        }
+        heldCount += hold.getSeats().length;
+        hold.setHeldCount(hold.getSeats().length);
+        holds.put(hold.getId(), hold);
+    }
+
+    /**
+     * Releases the seats that are still held by the given hold, so that they are free again.
+     *
+     * @param hold the hold to be released.
+     */
+    public void release(SeatHold hold) {
+        if (holds == null || holds.get(hold.getId()) != hold) {
+            return;
+        }
+        for (int seat : hold.getSeats()) {
+            if (held.get(seat) && holder[seat] == hold.getId()) {
+                release(seat);
+            }
+        }
+    }
+
+    /**
+     * Releases every hold of this inventory.
+     */
+    public void releaseAll() {
+        if (holds != null) {
+            for (SeatHold hold : getHolds()) {
+                release(hold);
+            }
+        }
+    }
+
+    /**
+     * Releases a single held seat and drops its hold from the active holds once none of its seats is held.
+     *
+     * @param seat the held seat number.
+     */
+    private void release(int seat) {
+        SeatHold hold = holds.get(holder[seat]);
+        held.clear(seat);
+        holder[seat] = 0;
+        heldCount--;
+        hold.setHeldCount(hold.getHeldCount() - 1);
+        if (!hold.isActive()) {
+            holds.remove(hold.getId());
+        }
+    }
+
+    /**
+     * Marks the given seat as sold and appends it to the end of the sold order.
+     * If the seat is held, it is released from its hold, which converts the held seat into a sold one.
+     *
+     * @param seat the seat number, must be in range of [1, capacity].
+     * @return true if the seat has been sold, false if it was already sold.
+     */
+    public boolean sell(int seat) {
+        if (sold.get(seat)) {
+            return false;
+        }
+        if (held.get(seat)) {
+            release(seat);
+        }
+        sold.set(seat);
+        int last = prev[0];
+        next[last] = seat;
+        prev[seat] = last;
+        next[seat] = 0;
+        prev[0] = seat;
+        soldCount++;
+        return true;
+    }
+
+    /**
+     * Marks the given seat as empty and removes it from the sold order.
+     *
+     * @param seat the seat number, must be in range of [1, capacity].
+     * @return true if the seat has been refunded, false if it was already empty.
+     */
+    public boolean refund(int seat) {
+        if (!sold.get(seat)) {
+            return false;
+        }
+        sold.clear(seat);
+        next[prev[seat]] = next[seat];
+        prev[next[seat]] = prev[seat];
+        soldCount--;
+        return true;
+    }
+
+    /**
+     * Passes every sold seat to the given action in the order they were sold.
+     *
+     * @param action the action to be performed for each sold seat.
+     */
+    public void forEachSold(IntConsumer action) {
+        for (int seat = next[0]; seat != 0; seat = next[seat]) {
+            action.accept(seat);
+        }
+    }
+
+    /**
+     * Sets the bits of the sold seats in a bitmap of 64-bit words, where seat {@code s} is bit {@code s % 64}
+     * of word {@code offset + s / 64}. The words are expected to be cleared beforehand and
+     * {@code capacity / 64 + 1} of them are used.
+     *
+     * @param words  the words of the bitmap.
+     * @param offset the index of the word holding seats 0 to 63.
+     */
+    public void copySoldBits(long[] words, int offset) {
+        for (int seat = sold.nextSetBit(0); seat >= 0; seat = sold.nextSetBit(seat + 1)) {
+            words[offset + (seat >>> 6)] |= 1L << seat;
+        }
+    }
+
+    /**
+     * Returns the sold seats in the order they were sold.
+     *
+     * @return a new array of the sold seat numbers.
+     */
+    public int[] toArray() {
+        int[] seats = new int[soldCount];
+        int i = 0;
+        for (int seat = next[0]; seat != 0; seat = next[seat]) {
+            seats[i++] = seat;
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,281 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The {@code SeatSelection} class parses the seat list of a "SELL_TICKET" or "REFUND_TICKET" command, and
+ * validates the seats of the requests of a {@link BookingService} the same way.
+ * Seats are separated by underscores, and every element is either a single seat such as {@code 7}
+ * or an inclusive range such as {@code 1-120}, so {@code 1-4_9_12-10} selects seats 1, 2, 3, 4, 9, 12, 11 and 10.
+ * <p>
+ * The selection keeps the selected seats both in the order they were listed, without repetitions,
+ * and as a bitmap, so a whole group booking can be checked against a {@link SeatInventory} at once.
+ * A selection is meant to be reused for every command, its arrays only grow when a larger group is selected.
+ */
+public class SeatSelection {
+
+    /**
+     * Status of a selection whose seats all exist.
+     */
+    public static final int VALID = 0;
+
+    /**
+     * Status of a selection with a seat number greater than the number of seats.
+     */
+    public static final int NO_SUCH_SEAT = 1;
+
+    /**
+     * Status of a selection with a seat number that is not positive.
+     */
+    public static final int NOT_POSITIVE = 2;
+
+    private final BitSet mask = new BitSet();
+    private int[] seats = new int[16];
+    private int size;
+    private int[] rangeFirst = new int[16];
+    private int[] rangeLast = new int[16];
+    private int rangeCount;
+    private int invalidSeat;
+
+    /**
+     * Parses and validates the given seat list. The elements are validated in the order they are listed, and
+     * validation stops at the first seat that does not exist, just like the seats of a command were always checked.
+     * Trailing underscores are ignored.
+     *
+     * @param list     the seat list, e.g. "1_2_3" or "1-120".
+     * @param capacity the number of seats of the bus.
+     * @return {@link #VALID} if all the seats exist, otherwise {@link #NO_SUCH_SEAT} or {@link #NOT_POSITIVE},
+     * in which case the offending seat is returned by {@link #getInvalidSeat()}.
+     * @throws NumberFormatException If an element is not an integer or a range of integers.
+     */
+    public int select(String list, int capacity) {
+        return select(list, 0, list.length(), capacity);
+    }
+
+    /**
+     * Parses and validates the seat list in the given part of a character sequence, such as a field of a
+     * {@link CommandLine}, without copying it. See {@link #select(String, int)}.
+     *
+     * @param line     the characters holding the seat list.
+     * @param start    the index of the first character of the seat list.
+     * @param end      the index after the last character of the seat list.
+     * @param capacity the number of seats of the bus.
+     * @return {@link #VALID} if all the seats exist, otherwise {@link #NO_SUCH_SEAT} or {@link #NOT_POSITIVE},
+     * in which case the offending seat is returned by {@link #getInvalidSeat()}.
+     * @throws NumberFormatException If an element is not an integer or a range of integers.
+     */
+    public int select(CharSequence line, int start, int end, int capacity) {
+        mask.clear();
+        size = 0;
+        rangeCount = 0;
+
+        while (end > start && line.charAt(end - 1) == '_') {
+            end--;
+        }
+        if (end == start) {
+            return VALID; // Nothing but separators selects no seats
+        }
+        do {
+            int elementEnd = indexOf(line, '_', start, end);
+            int dash = indexOf(line, '-', start + 1, elementEnd);
+            int first;
+            int last;
+            if (dash == elementEnd) {
+                first = parseSeat(line, start, elementEnd);
+                last = first;
+            } else {
+                first = parseSeat(line, start, dash);
+                last = parseSeat(line, dash + 1, elementEnd);
+            }
+            int status = validate(first, capacity);
+            if (status == VALID && last != first) {
+                status = validate(last, capacity);
+            }
+            if (status != VALID) {
+                return status;
+            }
+            addRange(first, last);
+            start = elementEnd + 1;
+        } while (start <= end);
+
+        for (int r = 0; r < rangeCount; r++) {
+            int step = rangeFirst[r] <= rangeLast[r] ? 1 : -1;
+            for (int seat = rangeFirst[r]; ; seat += step) {
+                addSeat(seat);
+                if (seat == rangeLast[r]) {
+                    break;
+                }
+            }
+        }
+        return VALID;
+    }
+
+    /**
+     * Validates the given seat numbers, e.g. those of a {@link BookingService} request, and selects them in the
+     * given order. The seats are validated like the elements of a seat list, see {@link #select(String, int)}.
+     *
+     * @param seatNumbers the seat numbers, repetitions are selected once.
+     * @param capacity    the number of seats of the bus.
+     * @return {@link #VALID} if all the seats exist, otherwise {@link #NO_SUCH_SEAT} or {@link #NOT_POSITIVE},
+     * in which case the offending seat is returned by {@link #getInvalidSeat()}.
+     */
+    public int select(int[] seatNumbers, int capacity) {
+        mask.clear();
+        size = 0;
+        rangeCount = 0;
+
+        for (int seat : seatNumbers) {
+            int status = validate(seat, capacity);
+            if (status != VALID) {
+                return status;
+            }
+        }
+        for (int seat : seatNumbers) {
+            addSeat(seat);
+        }
+        return VALID;
+    }
+
+    /**
+     * Returns the seat that made the last selection invalid.
+     *
+     * @return the offending seat number.
+     */
+    public int getInvalidSeat() {
+        return invalidSeat;
+    }
+
+    /**
+     * Returns the number of selected seats.
+     *
+     * @return the number of distinct seats.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the selected seat at the given position.
+     *
+     * @param index the position of the seat in the listed order.
+     * @return the seat number.
+     */
+    public int get(int index) {
+        return seats[index];
+    }
+
+    /**
+     * Returns the selected seats in the order they were listed. The array is reused by the next selection.
+     *
+     * @return the array holding the seats in its first {@link #size()} elements.
+     */
+    public int[] getSeats() {
+        return seats;
+    }
+
+    /**
+     * Returns the selected seats as a bitmap indexed by seat number. The bitmap is reused by the next selection.
+     *
+     * @return the bitmap of the selected seats.
+     */
+    public BitSet getMask() {
+        return mask;
+    }
+
+    /**
+     * Checks a single seat number.
+     *
+     * @param seat     the seat number.
+     * @param capacity the number of seats of the bus.
+     * @return the status of the seat.
+     */
+    private int validate(int seat, int capacity) {
+        if (seat > capacity) {
+            invalidSeat = seat;
+            return NO_SUCH_SEAT;
+        }
+        if (seat <= 0) {
+            invalidSeat = seat;
+            return NOT_POSITIVE;
+        }
+        return VALID;
+    }
+
+    /**
+     * Parses a seat number without creating a substring, unless it has to be reported as malformed.
+     *
+     * @param list  the seat list.
+     * @param start the index of the first character of the number.
+     * @param end   the index after the last character of the number.
+     * @return the seat number.
+     * @throws NumberFormatException If the characters are not an integer.
+     */
+    private static int parseSeat(CharSequence list, int start, int end) {
+        int i = start;
+        boolean negative = i < end && list.charAt(i) == '-';
+        if (negative || (i < end && list.charAt(i) == '+')) {
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(list.subSequence(start, end).toString()); // Reports malformed numbers, parses long ones
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            char c = list.charAt(i);
+            if (c < '0' || c > '9') {
+                return Integer.parseInt(list.subSequence(start, end).toString());
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Finds the first occurrence of a character in a part of a character sequence.
+     *
+     * @param list  the characters to be searched.
+     * @param c     the character to be found.
+     * @param start the index the search starts at.
+     * @param end   the index the search ends before.
+     * @return the index of the character, or {@code end} if it does not occur.
+     */
+    private static int indexOf(CharSequence list, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (list.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Remembers a validated range until all the elements have been validated.
+     *
+     * @param first the first seat of the range.
+     * @param last  the last seat of the range.
+     */
+    private void addRange(int first, int last) {
+        if (rangeCount == rangeFirst.length) {
+            rangeFirst = Arrays.copyOf(rangeFirst, rangeCount * 2);
+            rangeLast = Arrays.copyOf(rangeLast, rangeCount * 2);
+        }
+        rangeFirst[rangeCount] = first;
+        rangeLast[rangeCount] = last;
+        rangeCount++;
+    }
+
+    /**
+     * Adds a seat to the selection unless it has already been selected.
+     *
+     * @param seat the seat number.
+     */
+    private void addSeat(int seat) {
+        if (mask.get(seat)) {
+            return;
+        }
+        mask.set(seat);
+        if (size == seats.length) {
+            seats = Arrays.copyOf(seats, size * 2);
+        }
+        seats[size++] = seat;
+    }
+}
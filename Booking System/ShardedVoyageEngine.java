@@ -0,0 +1,343 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code ShardedVoyageEngine} class processes booking commands on several threads.
+ * Voyages are partitioned into shards by their IDs, and every shard owns a separate {@link Voyage}
+ * that is only touched by the single worker thread of that shard. Since a command only reads and
+ * changes the voyage it names, commands of different shards can be executed at the same time.
+ * <p>
+ * Commands are collected into batches. Each shard executes its part of a batch in the original order,
+ * writing the output of every command to memory, and the outputs are then written to the real output
+ * in the original command order. A "Z_REPORT", "QUERY_VOYAGES", "ADVANCE_TIME" or "EXPORT_VOYAGES" command ends the
+ * current batch, so the report, the query or the export is answered, and the time of all the shards is moved,
+ * after every previous command and before any later one.
+ * The output is therefore identical to the output of a single {@link Voyage}.
+ */
+public class ShardedVoyageEngine implements Closeable {
+
+    /**
+     * Default number of commands collected before a batch is executed.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 8192;
+
+    /**
+     * Index of the voyage ID field of the commands that act on a single voyage, keyed by command name.
+     */
+    private static final Map<String, Integer> VOYAGE_ID_FIELDS = new HashMap<>();
+
+    static {
+        VOYAGE_ID_FIELDS.put("INIT_VOYAGE", 2);
+        VOYAGE_ID_FIELDS.put("SELL_TICKET", 1);
+        VOYAGE_ID_FIELDS.put("HOLD_TICKET", 1);
+        VOYAGE_ID_FIELDS.put("REFUND_TICKET", 1);
+        VOYAGE_ID_FIELDS.put("PRINT_VOYAGE", 1);
+        VOYAGE_ID_FIELDS.put("CANCEL_VOYAGE", 1);
+    }
+
+    /**
+     * A partition of the voyages, with its own voyage management system, worker thread and output buffer.
+     */
+    private static class Shard {
+        private final Voyage voyage = new Voyage();
+        private final StringOutput output = new StringOutput();
+        private final ExecutorService executor = Executors.newSingleThreadExecutor();
+        private int[] commands;
+        private int commandCount;
+        private RuntimeException failure;
+        private int failedAt = -1;
+
+        private Shard(int batchSize) {
+            commands = new int[batchSize];
+        }
+    }
+
+    private final Shard[] shards;
+    private final CommandOutput fileOutput;
+    private final CommandLine command = new CommandLine();
+    private final String[] batch;
+    private final int[] batchShard;
+    private final int[] segmentStart;
+    private final int[] segmentEnd;
+    private int batchSize;
+    private VoyageMetrics.Recorder recorder;
+
+    /**
+     * Constructs an engine with the given number of shards and the default batch size.
+     *
+     * @param shardCount The number of shards, i.e. worker threads.
+     * @param fileOutput The output where outputs and errors are logged.
+     */
+    public ShardedVoyageEngine(int shardCount, CommandOutput fileOutput) {
+        this(shardCount, DEFAULT_BATCH_SIZE, fileOutput);
+    }
+
+    /**
+     * Constructs an engine with the given number of shards and batch size.
+     *
+     * @param shardCount   The number of shards, i.e. worker threads.
+     * @param maxBatchSize The number of commands collected before a batch is executed.
+     * @param fileOutput   The output where outputs and errors are logged.
+     */
+    public ShardedVoyageEngine(int shardCount, int maxBatchSize, CommandOutput fileOutput) {
+        if (shardCount < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Shard count and batch size must be positive integers!");
+        }
+        this.fileOutput = fileOutput;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(maxBatchSize);
+        }
+        this.batch = new String[maxBatchSize];
+        this.batchShard = new int[maxBatchSize];
+        this.segmentStart = new int[maxBatchSize];
+        this.segmentEnd = new int[maxBatchSize];
+    }
+
+    /**
+     * Sets the metrics the commands executed by all the shards are recorded to.
+     *
+     * @param metrics The metrics, or null to stop collecting metrics.
+     */
+    public void setMetrics(VoyageMetrics metrics) {
+        for (Shard shard : shards) {
+            shard.voyage.setMetrics(metrics);
+        }
+        recorder = metrics == null ? null : metrics.newRecorder();
+    }
+
+    /**
+     * Queues the given command. The queued commands are executed when the batch is full
+     * or when a "Z_REPORT", "QUERY_VOYAGES", "ADVANCE_TIME" or "EXPORT_VOYAGES" command is given.
+     *
+     * @param line The command line extracted from the input file.
+     */
+    public void input(String line) {
+        command.reset(line);
+        boolean zReport = command.size() == 1 && command.fieldEquals(0, "Z_REPORT");
+        boolean advanceTime = command.size() > 0 && command.fieldEquals(0, "ADVANCE_TIME");
+        boolean export = command.size() > 0 && command.fieldEquals(0, "EXPORT_VOYAGES");
+        if (zReport || advanceTime || export || (command.size() > 0 && command.fieldEquals(0, "QUERY_VOYAGES"))) {
+            flush();
+            CommandOutput output = recorder == null ? fileOutput : recorder.begin(command.get(0), fileOutput);
+            try {
+                output.write("COMMAND: ", false);
+                output.write(line, true);
+                if (zReport) {
+                    printZReport(output);
+                } else if (advanceTime) {
+                    advanceTime(output);
+                } else if (export) {
+                    exportVoyages(output);
+                } else {
+                    queryVoyages(output);
+                }
+            } catch (RuntimeException e) {
+                if (recorder != null) {
+                    recorder.fail(e);
+                }
+                throw e;
+            } finally {
+                if (recorder != null) {
+                    recorder.end();
+                }
+            }
+            return;
+        }
+        batch[batchSize] = line;
+        batchShard[batchSize] = shardOf(command);
+        batchSize++;
+        if (batchSize == batch.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Executes the queued commands and generates a Z report of all the shards.
+     */
+    public void printZReport() {
+        flush();
+        printZReport(fileOutput);
+    }
+
+    /**
+     * Generates a Z report of all the shards. Must be called when there are no queued commands.
+     *
+     * @param output The output the report is written to.
+     */
+    private void printZReport(CommandOutput output) {
+        Map<Integer, Bus> busMap = new TreeMap<>();
+        for (Shard shard : shards) {
+            busMap.putAll(shard.voyage.sortedBusMap);
+        }
+        Voyage.printZReport(busMap, output);
+    }
+
+    /**
+     * Exports the voyages of all the shards as the "EXPORT_VOYAGES" command in {@link #command} says,
+     * sorted by voyage ID like a single {@link Voyage} exports them. Must be called when there are no queued commands.
+     *
+     * @param output The output the answer is written to.
+     */
+    private void exportVoyages(CommandOutput output) {
+        Map<Integer, Bus> busMap = new TreeMap<>();
+        for (Shard shard : shards) {
+            busMap.putAll(shard.voyage.sortedBusMap);
+        }
+        Voyage.exportVoyages(command, busMap.values(), output);
+    }
+
+    /**
+     * Answers the "QUERY_VOYAGES" command in {@link #command} from the route indexes of all the shards.
+     * Must be called when there are no queued commands.
+     *
+     * @param output The output the answer is written to.
+     */
+    private void queryVoyages(CommandOutput output) {
+        List<RouteIndex> indexes = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            indexes.add(shard.voyage.routeIndex);
+        }
+        Voyage.queryVoyages(command, indexes, output);
+    }
+
+    /**
+     * Moves the time of all the shards as the "ADVANCE_TIME" command in {@link #command} says.
+     * Must be called when there are no queued commands.
+     *
+     * @param output The output the answer is written to.
+     */
+    private void advanceTime(CommandOutput output) {
+        List<Voyage> voyages = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            voyages.add(shard.voyage);
+        }
+        Voyage.advanceTime(command, voyages, output);
+    }
+
+    /**
+     * Executes the queued commands on the shards and writes their outputs in the original order.
+     * If a command throws an exception, the outputs up to and including that command are written
+     * and the exception is rethrown, just like it would be thrown by {@link Voyage#input(CharSequence, CommandOutput)}.
+     */
+    public void flush() {
+        if (batchSize == 0) {
+            return;
+        }
+        for (int i = 0; i < batchSize; i++) {
+            Shard shard = shards[batchShard[i]];
+            shard.commands[shard.commandCount++] = i;
+        }
+        Future<?>[] futures = new Future<?>[shards.length];
+        for (int s = 0; s < shards.length; s++) {
+            Shard shard = shards[s];
+            if (shard.commandCount > 0) {
+                futures[s] = shard.executor.submit(() -> execute(shard));
+            }
+        }
+        for (Future<?> future : futures) {
+            await(future);
+        }
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                Shard shard = shards[batchShard[i]];
+                fileOutput.write(shard.output.substring(segmentStart[i], segmentEnd[i]), false);
+                if (shard.failedAt == i) {
+                    throw shard.failure;
+                }
+            }
+        } finally {
+            for (Shard shard : shards) {
+                shard.output.clear();
+                shard.commandCount = 0;
+                shard.failure = null;
+                shard.failedAt = -1;
+            }
+            Arrays.fill(batch, 0, batchSize, null);
+            batchSize = 0;
+        }
+    }
+
+    /**
+     * Shuts the worker threads down. Queued commands that have not been flushed are discarded.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+
+    /**
+     * Executes the commands of the current batch that belong to the given shard, in their original order.
+     * Execution stops at the first command that throws an exception.
+     *
+     * @param shard The shard whose commands are executed.
+     */
+    private void execute(Shard shard) {
+        for (int c = 0; c < shard.commandCount; c++) {
+            int i = shard.commands[c];
+            segmentStart[i] = shard.output.length();
+            try {
+                shard.voyage.input(batch[i], shard.output);
+            } catch (RuntimeException e) {
+                shard.failure = e;
+                shard.failedAt = i;
+                segmentEnd[i] = shard.output.length();
+                return;
+            }
+            segmentEnd[i] = shard.output.length();
+        }
+    }
+
+    /**
+     * Returns the shard of the given command, chosen by the voyage ID the command acts on.
+     * Commands without a valid voyage ID do not touch any voyage and go to the first shard,
+     * which reports them the same way any other shard would.
+     *
+     * @param command The tokenized command.
+     * @return the index of the shard that executes the command.
+     */
+    private int shardOf(CommandLine command) {
+        if (command.size() == 0) {
+            return 0;
+        }
+        Integer field = VOYAGE_ID_FIELDS.get(command.get(0));
+        if (field == null || field >= command.size()) {
+            return 0;
+        }
+        try {
+            return Math.floorMod(command.getInt(field), shards.length);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Waits for the given task to complete.
+     *
+     * @param future The task to be waited for, may be null.
+     */
+    private static void await(Future<?> future) {
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A shard failed unexpectedly", e.getCause());
+        }
+    }
+}
@@ -6,6 +6,7 @@
 public class StandartBus extends Bus {
 
     private Integer refundCut;
+    private long refundAmount;
 
     /**
      * Returns the percentage cut from the refund amount for tickets of this bus type.
@@ -24,6 +25,26 @@ public class StandartBus extends Bus {
      */
     public void setRefundCut(Integer refundCut) {
         this.refundCut = refundCut;
+        updatePrices();
+    }
+
+    /**
+     * Returns the amount paid back when the given seat is refunded, which is the seat price minus the refund cut.
+     *
+     * @param seatNumber the seat number.
+     * @return the refund amount of the seat in {@link Money} units.
+     */
+    @Override
+    public long getRefundAmount(int seatNumber) {
+        return refundAmount;
+    }
+
+    /**
+     * Recalculates the refund amount of a seat from the price and the refund cut.
+     */
+    @Override
+    protected void updatePrices() {
+        refundAmount = refundCut == null ? 0 : Money.percent(getPrice(), 100 - refundCut);
     }
 
     /**
@@ -38,36 +59,15 @@ public class StandartBus extends Bus {
     }
 
     /**
-     * Provides a seating layout representation for the standard bus. Each row is represented with four seats:
-     * three seats on one side of an aisle and one seat on the other side, where 'X' denotes a sold seat
-     * and '*' denotes an available seat. The seats are separated by a vertical bar ('|') in the middle to represent the aisle.
+     * Returns the row template of the standard bus. Each row is represented with four seats,
+     * two on each side of the aisle, where 'X' denotes a sold seat and '*' denotes an available seat.
+     * The seats are separated by a vertical bar ('|') in the middle to represent the aisle.
      *
-     * @return a string representation of the bus's seating layout, row by row.
+     * @return the row template of the seating layout.
      */
     @Override
-    public String getSeatingLayout() {
-        StringBuilder builder = new StringBuilder();
-        int seatNumber = 1;
-        for (int row = 0; row < getRows(); row++) {
-            for (int seat = 0; seat < 3; seat++) { // 4 seats per row for Standard
-                if (getSoldSeatNumbers().contains(seatNumber)) {
-                    builder.append("X ");
-                } else {
-                    builder.append("* ");
-                }
-                seatNumber++;
-                if (seat == 1) builder.append("| "); // Middle of the bus
-            }
-            if (getSoldSeatNumbers().contains(seatNumber)) {
-                builder.append("X");
-                seatNumber++;
-            } else {
-                builder.append("*");
-                seatNumber++;
-            }
-            builder.append("\n");
-        }
-        return builder.toString();
+    public String getRowTemplate() {
+        return "* * | * *\n";
     }
 
     /**
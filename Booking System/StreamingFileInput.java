@@ -0,0 +1,59 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * The {@code StreamingFileInput} class reads a file line by line instead of loading it into memory
+ * like {@link FileInput#readFile(String, boolean, boolean)} does. Only the current line is kept,
+ * so files of any size can be processed with constant memory. Empty line and trim handling
+ * is the same as {@link FileInput}.
+ */
+public class StreamingFileInput implements CommandInput {
+
+    private final BufferedReader reader;
+    private final boolean discardEmptyLines;
+    private final boolean trim;
+
+    /**
+     * Opens the file at the given path for reading.
+     *
+     * @param path              Path to the file that is going to be read.
+     * @param discardEmptyLines If true, discards empty lines with respect to trim; else, it takes all the lines from the file.
+     * @param trim              Trim status; if true, trims each line; else, it leaves each line as-is.
+     * @throws IOException If there is no such a file or this program does not have sufficient permissions to read it.
+     */
+    public StreamingFileInput(String path, boolean discardEmptyLines, boolean trim) throws IOException {
+        this.reader = Files.newBufferedReader(Paths.get(path));
+        this.discardEmptyLines = discardEmptyLines;
+        this.trim = trim;
+    }
+
+    /**
+     * Returns the next line of the file, skipping the empty lines if they are discarded.
+     *
+     * @return the next line of the file, or null if the end of the file has been reached.
+     * @throws IOException If an I/O error occurs while reading the file.
+     */
+    @Override
+    public String nextLine() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (discardEmptyLines && line.trim().isEmpty()) {
+                continue;
+            }
+            return trim ? line.trim() : line;
+        }
+        return null;
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException If an I/O error occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * The {@code StringOutput} class is a {@link CommandOutput} that keeps everything written to it
+ * in memory. It is used where the output of commands has to be collected before it is written to a file.
+ */
+public class StringOutput implements CommandOutput {
+
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Appends the given content to the buffer.
+     *
+     * @param content Content that is going to be written.
+     * @param newLine True if wanted to append a new line after content, false if vice versa.
+     */
+    @Override
+    public void write(String content, boolean newLine) {
+        builder.append(content);
+        if (newLine) {
+            builder.append('\n');
+        }
+    }
+
+    /**
+     * Appends a single character to the buffer.
+     *
+     * @param c the character to be appended.
+     * @return this output.
+     */
+    @Override
+    public StringOutput append(char c) {
+        builder.append(c);
+        return this;
+    }
+
+    /**
+     * Appends the given character sequence to the buffer.
+     *
+     * @param csq the character sequence to be appended, "null" is appended if it is null.
+     * @return this output.
+     */
+    @Override
+    public StringOutput append(CharSequence csq) {
+        builder.append(csq);
+        return this;
+    }
+
+    /**
+     * Appends a part of the given character sequence to the buffer.
+     *
+     * @param csq   the character sequence to be appended, "null" is used if it is null.
+     * @param start the index of the first character, inclusive.
+     * @param end   the index of the last character, exclusive.
+     * @return this output.
+     */
+    @Override
+    public StringOutput append(CharSequence csq, int start, int end) {
+        builder.append(csq, start, end);
+        return this;
+    }
+
+    /**
+     * Returns the number of characters written since the output was last cleared.
+     *
+     * @return the length of the buffered content.
+     */
+    public int length() {
+        return builder.length();
+    }
+
+    /**
+     * Returns a part of the buffered content.
+     *
+     * @param start the index of the first character, inclusive.
+     * @param end   the index of the last character, exclusive.
+     * @return the content between the given indexes.
+     */
+    public String substring(int start, int end) {
+        return builder.substring(start, end);
+    }
+
+    /**
+     * Discards the buffered content.
+     */
+    public void clear() {
+        builder.setLength(0);
+    }
+
+    /**
+     * Returns the buffered content.
+     *
+     * @return everything written since the output was last cleared.
+     */
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+}
@@ -1,4 +1,7 @@
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
 import java.util.*;
+import java.util.stream.LongStream;
 
 /**
  * The {@code Voyage} class manages the operations related to bus voyages,
@@ -14,66 +17,226 @@ public class Voyage {
      */
     Map<Integer, Bus> busMap = new HashMap<>();
 
+    /**
+     * The same bus voyages as {@link #busMap}, kept sorted by their IDs for the Z reports.
+     */
+    NavigableMap<Integer, Bus> sortedBusMap = new TreeMap<>();
+
+    /**
+     * The same bus voyages as {@link #busMap}, indexed by their routes and free seat counts for "QUERY_VOYAGES".
+     */
+    RouteIndex routeIndex = new RouteIndex();
+
+    /**
+     * The names of the commands of this voyage management system. The handler of {@code commandNames[i]} is
+     * {@code commandHandlers[i]}. There are only a handful of commands, so they are found by comparing the
+     * name field of the command line with each name in place, which needs no string for the name.
+     */
+    private String[] commandNames = new String[0];
+
+    /**
+     * The command handlers of this voyage management system, in the order of {@link #commandNames}.
+     */
+    private CommandHandler[] commandHandlers = new CommandHandler[0];
+
+    /**
+     * The current time of this voyage management system in seconds. It starts at 0 and is only moved forward
+     * by "ADVANCE_TIME" commands, so replaying a command file always expires the same holds.
+     */
+    private long time;
+
+    /**
+     * The running holds made by "HOLD_TICKET" commands, ordered by their expiry time. A hold leaves the queue
+     * when it expires, when its last seat is sold, or when its voyage is cancelled.
+     */
+    private final HoldExpiryQueue holdExpiries = new HoldExpiryQueue();
+
+    /**
+     * The tokenized view of the command that is being processed, reused for every command.
+     */
+    private final CommandLine command = new CommandLine();
+
+    /**
+     * The seats selected by the "SELL_TICKET" or "REFUND_TICKET" command that is being processed, reused for every command.
+     */
+    private final SeatSelection seatSelection = new SeatSelection();
+
+    /**
+     * The journal the changes of the state are recorded to before they are applied, or null if the state is not journaled.
+     */
+    private VoyageJournal journal;
+
+    /**
+     * The recorder the metrics of the commands are recorded through, or null if no metrics are collected.
+     */
+    private VoyageMetrics.Recorder recorder;
+
+    /**
+     * Constructs a voyage management system with the handlers of all the built-in commands registered.
+     */
+    public Voyage() {
+        registerCommand("INIT_VOYAGE", this::initVoyage);
+        registerCommand("SELL_TICKET", this::sellTicket);
+        registerCommand("REFUND_TICKET", this::refundTicket);
+        registerCommand("PRINT_VOYAGE", this::printVoyage);
+        registerCommand("CANCEL_VOYAGE", this::cancelVoyage);
+        registerCommand("Z_REPORT", this::zReport);
+        registerCommand("QUERY_VOYAGES", (command, fileOutput) ->
+                queryVoyages(command, Collections.singletonList(routeIndex), fileOutput));
+        registerCommand("HOLD_TICKET", this::holdTicket);
+        registerCommand("ADVANCE_TIME", (command, fileOutput) ->
+                advanceTime(command, Collections.singletonList(this), fileOutput));
+        registerCommand("EXPORT_VOYAGES", (command, fileOutput) ->
+                exportVoyages(command, sortedBusMap.values(), fileOutput));
+    }
+
+    /**
+     * Registers a handler for the given command name, replacing the handler registered before, if any.
+     *
+     * @param name    The name of the command, i.e. the first field of its command line.
+     * @param handler The handler to be executed for the command.
+     */
+    public void registerCommand(String name, CommandHandler handler) {
+        for (int i = 0; i < commandNames.length; i++) {
+            if (commandNames[i].equals(name)) {
+                commandHandlers[i] = handler;
+                return;
+            }
+        }
+        commandNames = Arrays.copyOf(commandNames, commandNames.length + 1);
+        commandHandlers = Arrays.copyOf(commandHandlers, commandHandlers.length + 1);
+        commandNames[commandNames.length - 1] = name;
+        commandHandlers[commandHandlers.length - 1] = handler;
+    }
+
+    /**
+     * Sets the journal the changes of the state are recorded to.
+     *
+     * @param journal The journal, or null to stop journaling.
+     */
+    void setJournal(VoyageJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the metrics the executed commands are recorded to.
+     *
+     * @param metrics The metrics, or null to stop collecting metrics.
+     */
+    public void setMetrics(VoyageMetrics metrics) {
+        this.recorder = metrics == null ? null : metrics.newRecorder();
+    }
+
     /**
      * Processes commands related to bus voyage management. This method interprets
      * the command type from the input line and executes the appropriate action,
      * such as initializing a voyage, selling tickets, handling refunds, or generating reports.
      * It logs all operations and errors to the specified output path.
      *
+     * The line is only read while the command is processed, so it may be a view that is reused for the next line.
+     *
      * @param line        The command line extracted from the input file, containing instructions
      *                    for voyage management.
-     * @param output_path The path to the file where outputs and errors are logged.
+     * @param fileOutput  The output where outputs and errors are logged.
      */
-    public void input(String line, String output_path) {
+    public void input(CharSequence line, CommandOutput fileOutput) {
 
-        String[] splited = line.split("\t");
-        String commandType = splited[0];
+        command.reset(line);
+        int commandIndex = findCommand();
+        CommandHandler handler = commandIndex < 0 ? null : commandHandlers[commandIndex];
 
-        // Log the command to the output file
-        FileOutput.writeToFile(output_path, "COMMAND: " + line, true, true);
-
-        /**
-         * Handles the initialization of a voyage by parsing command details and validating inputs.
-         * It creates bus objects based on the type specified and stores them in a map.
-         *
-         * @param commandType The type of command being processed, e.g., "INIT_VOYAGE".
-         * @param splited     An array containing parts of the command string split by spaces.
-         * @param busMap      A map where bus objects are stored with their IDs as keys.
-         * @param output_path The file path where output messages are written.
-         */
-
-        if (commandType.equals("INIT_VOYAGE")) {
-            String busType = splited[1];
-
-            int id = Integer.parseInt(splited[2]);
-            if (id < 0) {
-                String error = String.format("ERROR: %d is not a positive integer, ID of a voyage must be a positive integer!", id);
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;
-            }
+        if (recorder == null) {
+            execute(line, handler, fileOutput);
+            return;
+        }
+        CommandOutput meteredOutput = recorder.begin(handler == null ? VoyageMetrics.UNKNOWN_COMMAND : commandNames[commandIndex], fileOutput);
+        try {
+            execute(line, handler, meteredOutput);
+        } catch (RuntimeException e) {
+            recorder.fail(e);
+            throw e;
+        } finally {
+            recorder.end();
+        }
+    }
 
-            if (busMap.containsKey(id)) {
-                String error = "ERROR: There is already a voyage with ID of " + id + "!";
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;  // Stop processing this command
+    /**
+     * Finds the registered command named by the first field of {@link #command}.
+     *
+     * @return the index of the command in {@link #commandNames}, or -1 if there is no command with that name.
+     */
+    private int findCommand() {
+        for (int i = 0; i < commandNames.length; i++) {
+            if (command.fieldEquals(0, commandNames[i])) {
+                return i;
             }
+        }
+        return -1;
+    }
 
-            String fromCity = splited[3];
-            String toCity = splited[4];
-            int rows = Integer.parseInt(splited[5]);
-            if (rows < 0) {
-                String error = String.format("ERROR: %d is not a positive integer, number of seat rows of a voyage must be a positive integer!", rows);
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;
-            }
+    /**
+     * Logs the command that has been tokenized into {@link #command} and executes its handler.
+     *
+     * @param line       The command line.
+     * @param handler    The handler of the command, or null if there is no command with its name.
+     * @param fileOutput The output where outputs and errors are logged.
+     */
+    private void execute(CharSequence line, CommandHandler handler, CommandOutput fileOutput) {
+        // Log the command to the output file
+        fileOutput.write("COMMAND: ", false);
+        fileOutput.append(line, 0, line.length()).append('\n');
 
-            double price = Double.parseDouble(splited[6]);
-            if (price < 0) {
-                String error = String.format("ERROR: %d is not a positive number, price must be a positive number!", (int) price);
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;
-            }
+        if (handler == null) {
+            String error = "ERROR: There is no command namely " + command.get(0) + "!";
+            fileOutput.write(error, true);
+            return;
+        }
+        handler.execute(command, fileOutput);
+    }
 
+    /**
+     * Handles the initialization of a voyage by parsing command details and validating inputs.
+     * It creates bus objects based on the type specified and stores them in a map.
+     *
+     * @param command    The tokenized "INIT_VOYAGE" command.
+     * @param fileOutput The output where output messages are written.
+     */
+    private void initVoyage(CommandLine command, CommandOutput fileOutput) {
+        String busType = command.get(1);
+
+        int id = command.getInt(2);
+        if (id < 0) {
+            String error = String.format("ERROR: %d is not a positive integer, ID of a voyage must be a positive integer!", id);
+            fileOutput.write(error, true);
+            return;
+        }
+
+        if (busMap.containsKey(id)) {
+            String error = "ERROR: There is already a voyage with ID of " + id + "!";
+            fileOutput.write(error, true);
+            return;  // Stop processing this command
+        }
+
+        String fromCity = command.get(3);
+        String toCity = command.get(4);
+        int rows = command.getInt(5);
+        if (rows < 0) {
+            String error = String.format("ERROR: %d is not a positive integer, number of seat rows of a voyage must be a positive integer!", rows);
+            fileOutput.write(error, true);
+            return;
+        }
+
+        double price = command.getDouble(6);
+        if (price < 0) {
+            String error = String.format("ERROR: %d is not a positive number, price must be a positive number!", (int) price);
+            fileOutput.write(error, true);
+            return;
+        }
+
+        // Prices that do not fit into Money units, even with the premium fee or the refund cut, are rejected
+        // before the voyage is added
+        try {
+            long priceInUnits = Money.of(price);
 
             switch (busType) {
                 case "Minibus": {
@@ -83,24 +246,24 @@ public class Voyage {
                     miniBus.setFromCity(fromCity);
                     miniBus.setToCity(toCity);
                     miniBus.setRows(rows);
-                    miniBus.setPrice(price);
+                    miniBus.setPrice(priceInUnits);
 
-                    busMap.put(miniBus.getId(), miniBus);
+                    addVoyage(miniBus);
 
                     String output = ("Voyage " + miniBus.getId() + " was initialized as a minibus (2) " +
                             "voyage from " + miniBus.getFromCity() + " to " + miniBus.getToCity() + " " +
-                            "with " + String.format("%.2f", miniBus.getPrice()) + " TL priced " + (2 * miniBus.getRows()) +
+                            "with " + Money.format(miniBus.getPrice()) + " TL priced " + (2 * miniBus.getRows()) +
                             " regular seats. Note that minibus tickets are not refundable.");
-                    FileOutput.writeToFile(output_path, output, true, true);
+                    fileOutput.write(output, true);
                     break;
                 }
                 case "Standard": {
-                    int refundCut = Integer.parseInt(splited[7]);
+                    int refundCut = command.getInt(7);
 
                     if (refundCut < 0) {
                         String error = String.format("ERROR: %d is not an integer that is in range of [0, 100], " +
                                 "refund cut must be an integer that is in range of [0, 100]!", refundCut);
-                        FileOutput.writeToFile(output_path, error, true, true);
+                        fileOutput.write(error, true);
                         return;
                     }
 
@@ -110,35 +273,35 @@ public class Voyage {
                     standartBus.setFromCity(fromCity);
                     standartBus.setToCity(toCity);
                     standartBus.setRows(rows);
-                    standartBus.setPrice(price);
+                    standartBus.setPrice(priceInUnits);
                     standartBus.setRefundCut(refundCut);
 
-                    busMap.put(standartBus.getId(), standartBus);
+                    addVoyage(standartBus);
 
 
                     String output = ("Voyage " + standartBus.getId() + " was initialized as a standard (2+2)" +
                             " voyage from " + standartBus.getFromCity() + " to " + standartBus.getToCity()
-                            + " with " + String.format("%.2f", standartBus.getPrice()) + " TL priced " + (4 * standartBus.getRows())
+                            + " with " + Money.format(standartBus.getPrice()) + " TL priced " + (4 * standartBus.getRows())
                             + " regular seats. Note that refunds will be " + standartBus.getRefundCut()
                             + "% less than the paid amount.");
-                    FileOutput.writeToFile(output_path, output, true, true);
+                    fileOutput.write(output, true);
                     break;
                 }
                 case "Premium": {
-                    int refundCut = Integer.parseInt(splited[7]);
+                    int refundCut = command.getInt(7);
 
                     if (refundCut < 0) {
                         String error = String.format("ERROR: %d is not an integer that is in range of [0, 100], " +
                                 "refund cut must be an integer that is in range of [0, 100]!", refundCut);
-                        FileOutput.writeToFile(output_path, error, true, true);
+                        fileOutput.write(error, true);
                         return;
                     }
 
-                    int premiumFree = Integer.parseInt(splited[8]);
+                    int premiumFree = command.getInt(8);
 
                     if (premiumFree < 0) {
                         String error = String.format("ERROR: %d is not a non-negative integer, premium fee must be a non-negative integer!", premiumFree);
-                        FileOutput.writeToFile(output_path, error, true, true);
+                        fileOutput.write(error, true);
                         return;
                     }
 
@@ -148,402 +311,647 @@ public class Voyage {
                     premiumBus.setFromCity(fromCity);
                     premiumBus.setToCity(toCity);
                     premiumBus.setRows(rows);
-                    premiumBus.setPrice(price);
+                    premiumBus.setPrice(priceInUnits);
                     premiumBus.setRefundCut(refundCut);
                     premiumBus.setPremiumFee(premiumFree);
 
-                    busMap.put(premiumBus.getId(), premiumBus);
+                    addVoyage(premiumBus);
 
                     String output = ("Voyage " + premiumBus.getId() + " was initialized as a premium (1+2)" +
                             " voyage from " + premiumBus.getFromCity() + " to " + premiumBus.getToCity()
-                            + " with " + String.format("%.2f", premiumBus.getPrice()) + " TL priced "
+                            + " with " + Money.format(premiumBus.getPrice()) + " TL priced "
                             + (2 * premiumBus.getRows()) + " regular seats and "
-                            + String.format("%.2f", (premiumBus.getPrice()
-                            + (premiumBus.getPrice() * premiumBus.getPremiumFee() / 100))) + " TL priced "
+                            + Money.format(premiumBus.getPremiumPrice()) + " TL priced "
                             + premiumBus.getRows() + " premium seats. Note that refunds will be "
                             + premiumBus.getRefundCut() + "% less than the paid amount.");
-                    FileOutput.writeToFile(output_path, output, true, true);
+                    fileOutput.write(output, true);
                     break;
                 }
                 default:
                     String error = "ERROR: Erroneous usage of \"INIT_VOYAGE\" command!";
-                    FileOutput.writeToFile(output_path, error, true, true);
+                    fileOutput.write(error, true);
                     break;
             }
+        } catch (ArithmeticException e) {
+            String error = String.format("ERROR: %s is out of range, prices of a voyage must be finite and less than %s TL!",
+                    command.get(6), Money.format(Long.MAX_VALUE));
+            fileOutput.write(error, true);
         }
+    }
 
-        /**
-         * Handles ticket sales for a specific voyage. Validates the availability of seats and processes
-         * the sale if the seats are available, then updates the bus object in the bus map accordingly.
-         *
-         * @param commandType The type of command, e.g., "SELL_TICKET".
-         * @param splited     An array containing parts of the command string split by spaces.
-         * @param busMap      A map storing bus objects, with voyage IDs as keys.
-         * @param output_path The file path where output and error messages are written.
-         */
-        else if (commandType.equals("SELL_TICKET")) {
-            if (splited.length != 3) {
-                String error = "ERROR: Erroneous usage of \"SELL_TICKET\" command!";
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;
-            }
+    /**
+     * Handles ticket sales for a specific voyage. Validates the availability of seats and processes
+     * the sale if the seats are available, then updates the bus object in the bus map accordingly.
+     * Seats are listed as a {@link SeatSelection}, single seats and ranges separated by underscores,
+     * and either all of them are sold or none. Held seats can only be sold by giving the ID of their
+     * {@link SeatHold} as an optional fourth field, which converts the held seats into sold ones. A fourth
+     * field that is not a positive integer is an erroneous usage of the command, as it has always been.
+     *
+     * @param command    The tokenized "SELL_TICKET" command.
+     * @param fileOutput The output where output and error messages are written.
+     */
+    private void sellTicket(CommandLine command, CommandOutput fileOutput) {
+        // A fourth field that can not be the ID of a hold is reported like any other extra field
+        if ((command.size() != 3 && command.size() != 4) || (command.size() == 4 && !isHoldId(command, 3))) {
+            String error = "ERROR: Erroneous usage of \"SELL_TICKET\" command!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-            int id = Integer.parseInt(splited[1]);
-            if (!busMap.containsKey(id)) {
-                String error = "ERROR: There is no voyage with ID of " + id + "!";
-                FileOutput.writeToFile(output_path, error, true, true);
+        int id = command.getInt(1);
+        Bus bus = busMap.get(id);
+        if (bus == null) {
+            String error = "ERROR: There is no voyage with ID of " + id + "!";
+            fileOutput.write(error, true);
+            return;
+        }
+
+        SeatHold hold = null;
+        if (command.size() == 4) {
+            int holdId = command.getInt(3);
+            hold = bus.getSeats().getHold(holdId);
+            if (hold == null) {
+                String error = "ERROR: There is no active hold with ID of " + holdId + " on the Voyage " + id + "!";
+                fileOutput.write(error, true);
                 return;
             }
+        }
 
-            Bus bus = busMap.get(id);
-            String[] seatNumbers = splited[2].split("_");
-            boolean anySeatSold = false;
-            StringBuilder alreadySoldSeats = new StringBuilder();
-            double totalSalePrice = 0.0;
-
-            // First pass to check for already sold seats
-            for (String seatStr : seatNumbers) {
-
-                int seatNum = Integer.parseInt(seatStr);
-
-                if (seatNum > bus.getRows() * bus.getSeatsPerRow()) {
-                    String error = "ERROR: There is no such a seat!";
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
-                }
+        SeatSelection selection = seatSelection;
+        int status = selection.select(command.getLine(), command.getStart(2), command.getEnd(2), bus.getSeats().getCapacity());
+        if (status != SeatSelection.VALID) {
+            writeSeatError(status, selection, fileOutput);
+            return;
+        }
 
-                if (seatNum <= 0) {
-                    String error = "ERROR: " + seatNum + " is not a positive integer, seat number must be a positive integer!";
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
-                }
-                if (bus.getSoldSeatNumbers().contains(seatNum)) {
-                    alreadySoldSeats.append(seatNum).append(", ");
-                    anySeatSold = true;
-                }
-            }
+        if (bus.getSeats().isAnySold(selection.getMask())) {
+            String error = "ERROR: One or more seats already sold!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-            if (anySeatSold) {
-                if (alreadySoldSeats.length() > 2) {
-                    alreadySoldSeats.setLength(alreadySoldSeats.length() - 2); // Remove last comma and space
-                }
-                String error = "ERROR: One or more seats already sold!";
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;
-            }
+        if (hold == null && bus.getSeats().isAnyHeld(selection.getMask())) {
+            String error = "ERROR: One or more seats are on hold!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-            // Second pass to sell the seats if none were already sold
-            for (String seatStr : seatNumbers) {
-                int seatNum = Integer.parseInt(seatStr);
-                bus.getSoldSeatNumbers().add(seatNum);
-                double seatPrice = bus.getPrice();
-                if (bus instanceof PremiumBus && (seatNum % 3 == 1)) { // Assuming premium seats are every third seat
-                    seatPrice += seatPrice * bus.getPremiumFee() / 100;
-                }
-                totalSalePrice += seatPrice;
-            }
-            bus.setRevenue(bus.getRevenue() + totalSalePrice);
+        if (hold != null && !bus.getSeats().isEveryHeldBy(selection.getMask(), hold)) {
+            String error = "ERROR: One or more seats are not held by the hold " + hold.getId() + "!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-            String seatsFormatted = String.join("-", seatNumbers);
-            String output = "Seat " + seatsFormatted + " of the Voyage " + id + " from " +
-                    bus.getFromCity() + " to " + bus.getToCity() + " was successfully sold for "
-                    + String.format("%.2f", totalSalePrice) + " TL.";
-            FileOutput.writeToFile(output_path, output, true, true);
+        long totalSalePrice;
+        try {
+            totalSalePrice = bus.getSaleTotal(selection);
+        } catch (ArithmeticException e) {
+            writeRevenueError(id, fileOutput);
+            return;
+        }
+        if (journal != null) {
+            journal.recordSell(bus, bus.getRevenue() + totalSalePrice, selection.getSeats(), selection.size());
         }
 
+        // Sell the seats, none of them has been sold before and held ones are released from their hold
+        bus.sellSeats(selection, totalSalePrice);
+        if (hold != null && !hold.isActive()) {
+            holdExpiries.remove(hold);
+        }
+        routeIndex.update(bus);
 
-        /**
-         * Processes ticket refunds based on the command details. Validates seat availability for refund,
-         * calculates refund amounts according to bus type and conditions, and updates the bus object.
-         *
-         * @param commandType The type of command, e.g., "REFUND_TICKET".
-         * @param splited     An array containing parts of the command string split by spaces.
-         * @param busMap      A map storing bus objects, with voyage IDs as keys.
-         * @param output_path The file path where output and error messages are written.
-         */
-        else if (commandType.equals("REFUND_TICKET")) {
+        String seatsFormatted = formatSeats(selection);
+        String output = "Seat " + seatsFormatted + " of the Voyage " + id + " from " +
+                bus.getFromCity() + " to " + bus.getToCity() + " was successfully sold for "
+                + Money.format(totalSalePrice) + " TL.";
+        fileOutput.write(output, true);
+    }
 
-            if (splited.length != 3) {
+    /**
+     * Checks whether a field of a command can be the ID of a {@link SeatHold}, i.e. whether it is a positive integer.
+     *
+     * @param command The tokenized command.
+     * @param index   The index of the field.
+     * @return true if the field is a positive integer.
+     */
+    private static boolean isHoldId(CommandLine command, int index) {
+        return command.isInt(index) && command.getInt(index) > 0;
+    }
 
-                String error = "ERROR: Erroneous usage of \"REFUND_TICKET\" command!";
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;
+    /**
+     * Holds seats of a voyage for the given number of seconds, e.g. while the customer pays. The command is
+     * "HOLD_TICKET", the voyage ID, the seat list and the duration of the hold, separated by tabs. Held seats
+     * can not be sold or held by anybody else, they can only be sold by a "SELL_TICKET" command that gives the ID
+     * of the hold, until the hold expires and the seats become free again. Holds are not journaled, so a
+     * restored voyage management system starts without any holds.
+     *
+     * @param command    The tokenized "HOLD_TICKET" command.
+     * @param fileOutput The output where output and error messages are written.
+     */
+    private void holdTicket(CommandLine command, CommandOutput fileOutput) {
+        if (command.size() != 4) {
+            String error = "ERROR: Erroneous usage of \"HOLD_TICKET\" command!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-            }
+        int id = command.getInt(1);
+        Bus bus = busMap.get(id);
+        if (bus == null) {
+            String error = "ERROR: There is no voyage with ID of " + id + "!";
+            fileOutput.write(error, true);
+            return;
+        }
 
+        int duration = command.getInt(3);
+        if (duration <= 0) {
+            String error = String.format("ERROR: %d is not a positive integer, duration of a hold must be a positive integer!", duration);
+            fileOutput.write(error, true);
+            return;
+        }
 
-            String[] parts = line.split("\t");
-            int voyageId = Integer.parseInt(parts[1]);
+        SeatSelection selection = seatSelection;
+        int status = selection.select(command.getLine(), command.getStart(2), command.getEnd(2), bus.getSeats().getCapacity());
+        if (status != SeatSelection.VALID) {
+            writeSeatError(status, selection, fileOutput);
+            return;
+        }
+        if (selection.size() == 0) {
+            String error = "ERROR: Erroneous usage of \"HOLD_TICKET\" command!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-            if (!busMap.containsKey(voyageId)) {
-                String error = "ERROR: There is no voyage with ID of " + voyageId + "!";
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;
-            }
+        if (bus.getSeats().isAnySold(selection.getMask())) {
+            String error = "ERROR: One or more seats already sold!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-            String[] seatsToRefund = parts[2].split("_");
-            Bus bus = busMap.get(voyageId);
+        if (bus.getSeats().isAnyHeld(selection.getMask())) {
+            String error = "ERROR: One or more seats are already on hold!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-            if (bus.getBusType().equals("Minibus")) {
-                String error = "ERROR: Minibus tickets are not refundable!";
-                FileOutput.writeToFile(output_path, error, true, true);
+        SeatHold hold = bus.holdSeats(Arrays.copyOf(selection.getSeats(), selection.size()), time + duration);
+        holdExpiries.add(hold);
+        routeIndex.update(bus);
 
+        String output = "Seat " + formatSeats(selection) + " of the Voyage " + id + " from " +
+                bus.getFromCity() + " to " + bus.getToCity() + " was successfully held as hold " + hold.getId()
+                + " until " + hold.getExpiresAt() + ".";
+        fileOutput.write(output, true);
+    }
 
-            } else {
-                double totalRefundAmount = 0.0;
+    /**
+     * Processes ticket refunds based on the command details. Validates seat availability for refund,
+     * calculates refund amounts according to bus type and conditions, and updates the bus object.
+     *
+     * @param command    The tokenized "REFUND_TICKET" command.
+     * @param fileOutput The output where output and error messages are written.
+     */
+    private void refundTicket(CommandLine command, CommandOutput fileOutput) {
 
-                StringBuilder refundedSeats = new StringBuilder();
+        if (command.size() != 3) {
 
-                boolean anySeatEmpty = false;
-                StringBuilder alreadyEmptySeats = new StringBuilder();
+            String error = "ERROR: Erroneous usage of \"REFUND_TICKET\" command!";
+            fileOutput.write(error, true);
+            return;
 
-                for (String seat : seatsToRefund) {
-                    int seatNumber = Integer.parseInt(seat);
+        }
 
-                    if (seatNumber > bus.getRows() * bus.getSeatsPerRow()) {
-                        String error = "ERROR: There is no such a seat!";
-                        FileOutput.writeToFile(output_path, error, true, true);
-                        return;
-                    }
+        int voyageId = command.getInt(1);
+        Bus bus = busMap.get(voyageId);
 
-                    if (seatNumber <= 0) {
-                        String error = "ERROR: " + seatNumber + " is not a positive integer, seat number must be a positive integer!";
-                        FileOutput.writeToFile(output_path, error, true, true);
-                        return;
-                    }
+        if (bus == null) {
+            String error = "ERROR: There is no voyage with ID of " + voyageId + "!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-                    if (!bus.getSoldSeatNumbers().contains(seatNumber)) {
-                        alreadyEmptySeats.append(seatNumber).append(", ");
-                        anySeatEmpty = true;
+        if (bus.getBusType().equals("Minibus")) {
+            String error = "ERROR: Minibus tickets are not refundable!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-                    }
-                }
-                if (anySeatEmpty) {
-                    if (alreadyEmptySeats.length() > 2) {
-                        alreadyEmptySeats.setLength(alreadyEmptySeats.length() - 2); // Remove last comma and space
-                    }
-                    String error = "ERROR: One or more seats are already empty!";
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
-                }
+        SeatSelection selection = seatSelection;
+        int status = selection.select(command.getLine(), command.getStart(2), command.getEnd(2), bus.getSeats().getCapacity());
+        if (status != SeatSelection.VALID) {
+            writeSeatError(status, selection, fileOutput);
+            return;
+        }
 
+        if (!bus.getSeats().isEverySold(selection.getMask())) {
+            String error = "ERROR: One or more seats are already empty!";
+            fileOutput.write(error, true);
+            return;
+        }
 
+        long totalRefundAmount;
+        try {
+            totalRefundAmount = bus.getRefundTotal(selection);
+        } catch (ArithmeticException e) {
+            writeRevenueError(voyageId, fileOutput);
+            return;
+        }
+        if (journal != null && selection.size() > 0) {
+            journal.recordRefund(bus, bus.getRevenue() - totalRefundAmount, selection.getSeats(), selection.size());
+        }
 
-                for (String seat : seatsToRefund) {
-                    int seatNumber = Integer.parseInt(seat);
-                    if (bus.getSoldSeatNumbers().contains(seatNumber)) {
+        bus.refundSeats(selection, totalRefundAmount);
+        routeIndex.update(bus);
 
-                        double refundAmount = 0;
+        if (selection.size() > 0) {
+            String refundedSeats = formatSeats(selection);
+            String output = String.format("Seat %s of the Voyage %d from %s to %s was successfully refunded " +
+                            "for %s TL.\n",
+                    refundedSeats, voyageId, bus.getFromCity(), bus.getToCity(), Money.format(totalRefundAmount));
+            fileOutput.write(output, false);
+        }
+    }
 
-                        if (bus.getBusType().equals("Premium")) {
-                            Double price;
-                            if ((Integer.parseInt(seat) % 3 == 1)) {
-                                price = bus.getPrice() + (bus.getPrice() * bus.getPremiumFee() / 100);
-                            } else {
-                                price = bus.getPrice();
-                            }
-                            refundAmount = price * (1 - ((PremiumBus) bus).getRefundCut() / 100.0);
+    /**
+     * Writes the error of a sale, refund or cancellation whose revenue would not fit into {@link Money} units.
+     *
+     * @param id         The ID of the voyage.
+     * @param fileOutput The output where the error message is written.
+     */
+    private static void writeRevenueError(int id, CommandOutput fileOutput) {
+        String error = String.format("ERROR: Revenue of the Voyage %d would be out of range, it must be less than %s TL!",
+                id, Money.format(Long.MAX_VALUE));
+        fileOutput.write(error, true);
+    }
 
-                        } else if (bus.getBusType().equals("Standard")) {
-                            Double price = bus.getPrice();
-                            refundAmount = price * (1 - ((StandartBus) bus).getRefundCut() / 100.0);
-                        } else {
-                            System.out.println("MINIBUS NO REFUND");
-                        }
+    /**
+     * Writes the error of a seat list that names a seat the bus does not have.
+     *
+     * @param status     The status returned by {@link SeatSelection#select(String, int)}.
+     * @param selection  The selection holding the offending seat.
+     * @param fileOutput The output where the error message is written.
+     */
+    private static void writeSeatError(int status, SeatSelection selection, CommandOutput fileOutput) {
+        String error;
+        if (status == SeatSelection.NO_SUCH_SEAT) {
+            error = "ERROR: There is no such a seat!";
+        } else {
+            error = "ERROR: " + selection.getInvalidSeat() + " is not a positive integer, seat number must be a positive integer!";
+        }
+        fileOutput.write(error, true);
+    }
 
-                        totalRefundAmount += refundAmount;
+    /**
+     * Formats the selected seats as they are echoed in the output, in the order they were listed and
+     * separated by dashes, e.g. "1-2-5". Ranges are echoed seat by seat, so "1-4_10-8" is echoed as
+     * "1-2-3-4-10-9-8" and a dash never stands for a range in the output. A seat that was listed more than
+     * once is sold or refunded once, so it is also echoed once.
+     *
+     * @param selection The selected seats.
+     * @return the formatted seats.
+     */
+    private static String formatSeats(SeatSelection selection) {
+        StringBuilder seats = new StringBuilder();
+        for (int i = 0; i < selection.size(); i++) {
+            if (i > 0) {
+                seats.append('-');
+            }
+            seats.append(selection.get(i));
+        }
+        return seats.toString();
+    }
 
+    /**
+     * Generates a Z-report summarizing all voyages and their revenue details.
+     *
+     * @param command    The tokenized "Z_REPORT" command.
+     * @param fileOutput The output where the Z-report is written.
+     */
+    private void zReport(CommandLine command, CommandOutput fileOutput) {
 
-                        bus.getSoldSeatNumbers().remove(Integer.valueOf(seatNumber));
-                        bus.setRevenue(bus.getRevenue() - refundAmount);
-                        refundedSeats.append(seatNumber).append("-");
-                    }
-                }
+        if (command.size() != 1) {
 
+            String error = "ERROR: Erroneous usage of \"Z_REPORT\" command!";
+            fileOutput.write(error, true);
+            return;
 
-                if (refundedSeats.length() > 0) {
-                    refundedSeats.setLength(refundedSeats.length() - 1); // Remove last "-"
-                    String output = String.format("Seat %s of the Voyage %d from %s to %s was successfully refunded " +
-                                    "for %.2f TL.\n",
-                            refundedSeats, voyageId, bus.getFromCity(), bus.getToCity(), totalRefundAmount);
-                    FileOutput.writeToFile(output_path, output, true, false);
-                }
-            }
         }
 
-        /**
-         * Generates a Z-report summarizing all voyages and their revenue details.
-         * It prints the report to the specified output file path.
-         *
-         * @param commandType The type of command, e.g., "Z_REPORT".
-         * @param splited     An array containing parts of the command string split by spaces.
-         * @param busMap      A map containing all bus objects, used to generate the report.
-         * @param output_path The file path where the Z-report is written.
-         */
-        else if (commandType.equals("Z_REPORT")) {
+        printZReport(fileOutput);
+    }
 
-            if (splited.length != 1) {
-
-                String error = "ERROR: Erroneous usage of \"Z_REPORT\" command!";
-                FileOutput.writeToFile(output_path, error, true, true);
-                return;
+    /**
+     * Prints the detailed information of a specific voyage. This includes voyage ID, cities,
+     * seating layout, and revenue, which are all written to the specified output.
+     *
+     * @param command    The tokenized "PRINT_VOYAGE" command.
+     * @param fileOutput The output where output messages are written.
+     */
+    private void printVoyage(CommandLine command, CommandOutput fileOutput) {
 
-            }
+        if (command.size() != 2) {
 
+            String error = "ERROR: Erroneous usage of \"PRINT_VOYAGE\" command!";
+            fileOutput.write(error, true);
+            return;
 
-            printZReport(busMap, output_path);
         }
 
-        /**
-         * Prints the detailed information of a specific voyage. This includes voyage ID, cities,
-         * seating layout, and revenue, which are all written to the specified output file path.
-         *
-         * @param commandType The type of command, e.g., "PRINT_VOYAGE".
-         * @param splited     An array containing parts of the command string split by spaces.
-         * @param busMap      A map storing bus objects, with voyage IDs as keys.
-         * @param output_path The file path where output messages are written.
-         */
-        else if (commandType.equals("PRINT_VOYAGE")) {
 
-                if (splited.length != 2) {
+        int id = command.getInt(1);
 
-                    String error = "ERROR: Erroneous usage of \"PRINT_VOYAGE\" command!";
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
+        if (id < 0) {
+            String error = String.format("ERROR: %d is not a positive integer, ID of a voyage must be a positive integer!", id);
+            fileOutput.write(error, true);
+            return;
+        }
 
-                }
+        Bus bus = busMap.get(id);
+        if (bus == null) {
+            String error = "ERROR: There is no voyage with ID of " + id + "!";
+            fileOutput.write(error, true);
+            return;
+        }
 
+        fileOutput.write(bus.getDetails(), true);
 
-                int id = Integer.parseInt(splited[1]);
+    }
 
-                if (id < 0) {
-                    String error = String.format("ERROR: %d is not a positive integer, ID of a voyage must be a positive integer!", id);
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
-                }
+    /**
+     * Cancels a voyage by its ID, processes full refunds for any sold tickets, and removes the voyage
+     * from the bus map. Detailed information about the cancelled voyage and adjustments in revenue are
+     * written to the output.
+     *
+     * @param command    The tokenized "CANCEL_VOYAGE" command.
+     * @param fileOutput The output where output messages and changes are documented.
+     */
+    private void cancelVoyage(CommandLine command, CommandOutput fileOutput) {
 
-                if (!busMap.containsKey(id)) {
-                    String error = "ERROR: There is no voyage with ID of " + id + "!";
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
-                }
+        if (command.size() != 2) {
 
-                Bus bus = busMap.get(id);
+            String error = "ERROR: Erroneous usage of \"CANCEL_VOYAGE\" command!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-                String output = ("Voyage " + bus.getId() + "\n" + bus.getFromCity() + "-" + bus.getToCity() + "\n" +
-                        bus.getSeatingLayout() + "Revenue: " + String.format("%.2f", bus.getRevenue()));
 
-                FileOutput.writeToFile(output_path, output, true, true);
+        int voyageId = command.getInt(1);
 
-            }
+        if (voyageId < 0) {
+            String error = String.format("ERROR: %d is not a positive integer, ID of a voyage must be a positive integer!", voyageId);
+            fileOutput.write(error, true);
+            return;
+        }
 
-        /**
-         * Cancels a voyage by its ID, processes full refunds for any sold tickets, and removes the voyage
-         * from the bus map. Detailed information about the cancelled voyage and adjustments in revenue are
-         * written to the output file path.
-         *
-         * @param commandType The type of command, e.g., "CANCEL_VOYAGE".
-         * @param splited     An array containing parts of the command string split by spaces.
-         * @param busMap      A map storing bus objects, with voyage IDs as keys.
-         * @param output_path The file path where output messages and changes are documented.
-         */
-        else if (commandType.equals("CANCEL_VOYAGE")) {
-
-                if (splited.length != 2) {
-
-                    String error = "ERROR: Erroneous usage of \"CANCEL_VOYAGE\" command!";
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
-                }
+        Bus bus = busMap.get(voyageId);
+        if (bus == null) {
+            String error = "ERROR: There is no voyage with ID of " + voyageId + "!";
+            fileOutput.write(error, true);
+            return;
+        }
 
+        // The refunds must fit into Money units before anything is changed
+        try {
+            bus.getRevenueAfterCancel();
+        } catch (ArithmeticException e) {
+            writeRevenueError(voyageId, fileOutput);
+            return;
+        }
+        if (journal != null) {
+            journal.recordCancel(voyageId);
+        }
 
-                String[] parts = line.split("\t");
-                int voyageId = Integer.parseInt(parts[1]);
+        // Print current state before cancellation
+        String output = ("Voyage " + voyageId + " was successfully cancelled!\n" +
+                "Voyage details can be found below:\n" + "Voyage " + bus.getId() + "\n" +
+                bus.getFromCity() + "-" + bus.getToCity() + "\n");
+        fileOutput.write(output, false);
+        bus.appendSeatingLayout(fileOutput);
+
+        // Refund all sold tickets without any cut, and adjust revenue
+        bus.refundAllSeats();
+        String output2 = ("Revenue: " + Money.format(bus.getRevenue()));
+        fileOutput.write(output2, true);
+        for (SeatHold hold : bus.getSeats().getHolds()) {
+            holdExpiries.remove(hold);
+        }
+        bus.releaseHolds();
+        // Remove voyage from the map
+        removeVoyage(voyageId);
+    }
 
-                if (voyageId < 0) {
-                    String error = String.format("ERROR: %d is not a positive integer, ID of a voyage must be a positive integer!", voyageId);
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
-                }
+    /**
+     * Adds a new voyage to the maps of this voyage management system. The voyage is journaled before it is added.
+     *
+     * @param bus The bus of the voyage.
+     */
+    void addVoyage(Bus bus) {
+        if (journal != null) {
+            journal.recordInit(bus);
+        }
+        busMap.put(bus.getId(), bus);
+        sortedBusMap.put(bus.getId(), bus);
+        routeIndex.add(bus);
+    }
 
-                if (!busMap.containsKey(voyageId)) {
-                    String error = "ERROR: There is no voyage with ID of " + voyageId + "!";
-                    FileOutput.writeToFile(output_path, error, true, true);
-                    return;
-                }
+    /**
+     * Removes a voyage from the maps of this voyage management system. The cancellation must have been journaled
+     * by the caller, before any of the changes it brings.
+     *
+     * @param id The ID of the voyage.
+     */
+    void removeVoyage(int id) {
+        Bus bus = busMap.remove(id);
+        sortedBusMap.remove(id);
+        if (bus != null) {
+            routeIndex.remove(bus);
+        }
+    }
 
-                Bus bus = busMap.get(voyageId);
+    /**
+     * Lists the voyages of a route that have at least the given number of free seats, optionally only those
+     * of a bus type. The command is "QUERY_VOYAGES", the departure city, the destination city, the minimum
+     * number of free seats and optionally the bus type, separated by tabs. The matching voyages are listed
+     * in the order of their IDs, each followed by its number of free seats.
+     *
+     * @param command    The tokenized "QUERY_VOYAGES" command.
+     * @param indexes    The route indexes of all the voyages, e.g. one for every shard.
+     * @param fileOutput The output where output and error messages are written.
+     */
+    static void queryVoyages(CommandLine command, Collection<RouteIndex> indexes, CommandOutput fileOutput) {
+        if (command.size() != 4 && command.size() != 5) {
+            String error = "ERROR: Erroneous usage of \"QUERY_VOYAGES\" command!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-                if (bus != null) {
-                    // Print current state before cancellation
-                    String output = ("Voyage " + voyageId + " was successfully cancelled!\n" +
-                            "Voyage details can be found below:\n" + "Voyage " + bus.getId() + "\n" +
-                            bus.getFromCity() + "-" + bus.getToCity() + "\n" + bus.getSeatingLayout());
-                    FileOutput.writeToFile(output_path, output, true, false);
+        String fromCity = command.get(1);
+        String toCity = command.get(2);
+        int freeSeats = command.getInt(3);
+        if (freeSeats < 0) {
+            String error = String.format("ERROR: %d is not a non-negative integer, number of free seats must be a non-negative integer!", freeSeats);
+            fileOutput.write(error, true);
+            return;
+        }
 
-                    // Refund all sold tickets without any cut, and adjust revenue
-                    List<Integer> soldSeats = new ArrayList<>(bus.getSoldSeatNumbers()); // Copy to avoid concurrent modification
-                    for (Integer seat : soldSeats) {
-                        double price;
+        String busType = null;
+        if (command.size() == 5) {
+            busType = command.get(4);
+            if (!busType.equals("Minibus") && !busType.equals("Standard") && !busType.equals("Premium")) {
+                String error = "ERROR: Erroneous usage of \"QUERY_VOYAGES\" command!";
+                fileOutput.write(error, true);
+                return;
+            }
+        }
 
-                        if (bus.getBusType().equals("Premium") && (seat % 3 == 1)) {
-                            price = bus.getPrice() + (bus.getPrice() * bus.getPremiumFee() / 100);
-                        } else {
-                            price = bus.getPrice();
-                        }
+        // Keys are turned around so that sorting them sorts the voyages by their IDs
+        LongStream.Builder matches = LongStream.builder();
+        for (RouteIndex index : indexes) {
+            index.query(fromCity, toCity, busType, freeSeats,
+                    key -> matches.add(((long) RouteIndex.idOf(key) << 32) | RouteIndex.freeSeatsOf(key)));
+        }
+        long[] voyages = matches.build().sorted().toArray();
 
-                        bus.setRevenue(bus.getRevenue() - price); // Subtract full ticket price from revenue
-                        bus.getSoldSeatNumbers().remove(seat); // Clear the seat as refunded
-                    }
-                    String output2 = ("Revenue: " + String.format("%.2f", bus.getRevenue()));
-                    FileOutput.writeToFile(output_path, output2, true, true);
-                    // Remove voyage from the map
-                    busMap.remove(voyageId);
+        String description = (busType == null ? "" : busType + " ") + "voyage";
+        String route = " from " + fromCity + " to " + toCity + " with at least " + freeSeats + " free seats";
+        if (voyages.length == 0) {
+            fileOutput.write("There is no " + description + route + "!", true);
+            return;
+        }
+        StringBuilder output = new StringBuilder(Character.toUpperCase(description.charAt(0)) + description.substring(1))
+                .append('s').append(route).append(": ");
+        for (int i = 0; i < voyages.length; i++) {
+            if (i > 0) {
+                output.append(", ");
+            }
+            output.append(voyages[i] >>> 32).append(" (").append((int) voyages[i]).append(" free)");
+        }
+        fileOutput.write(output.toString(), true);
+    }
 
+    /**
+     * Moves the time forward by the given number of seconds and releases the seats of the holds that expire.
+     * The command is "ADVANCE_TIME" and the number of seconds, separated by a tab. Only the holds whose expiry
+     * time has come are taken from the expiry queues, so the cost does not depend on the number of voyages
+     * or on the number of holds that are still running.
+     *
+     * @param command    The tokenized "ADVANCE_TIME" command.
+     * @param voyages    The voyage management systems whose time is moved, e.g. one for every shard.
+     * @param fileOutput The output where output and error messages are written.
+     */
+    static void advanceTime(CommandLine command, Collection<Voyage> voyages, CommandOutput fileOutput) {
+        if (command.size() != 2) {
+            String error = "ERROR: Erroneous usage of \"ADVANCE_TIME\" command!";
+            fileOutput.write(error, true);
+            return;
+        }
 
-                }
+        int seconds = command.getInt(1);
+        if (seconds < 0) {
+            String error = String.format("ERROR: %d is not a non-negative integer, time must be advanced by a non-negative integer!", seconds);
+            fileOutput.write(error, true);
+            return;
+        }
 
-            }
+        long now = 0;
+        int expired = 0;
+        for (Voyage voyage : voyages) {
+            now = voyage.time + seconds;
+            expired += voyage.expireHolds(now);
+        }
+        String output = "Time was advanced to " + now + ", " + expired + (expired == 1 ? " hold" : " holds") + " expired.";
+        fileOutput.write(output, true);
+    }
 
-        /**
-         * Handles unrecognized commands by logging an error message to the specified output file path.
-         * It informs the user about the incorrect or unsupported usage of a command.
-         *
-         * @param commandType The type of command received, used for error reporting.
-         * @param output_path The file path where the error message is written.
-         */
-        else {
-                String error = "ERROR: There is no command namely " + commandType + "!";
-                FileOutput.writeToFile(output_path, error, true, true);
-            }
+    /**
+     * Writes the state of the given voyages to a columnar binary file, see {@link VoyageColumns}.
+     * The command is "EXPORT_VOYAGES" and the path of the file, separated by a tab.
+     * An existing file at the path is replaced.
+     *
+     * @param command    The tokenized "EXPORT_VOYAGES" command.
+     * @param buses      The buses of the voyages in the order they are exported, e.g. sorted by voyage ID.
+     * @param fileOutput The output where output and error messages are written.
+     */
+    static void exportVoyages(CommandLine command, Collection<Bus> buses, CommandOutput fileOutput) {
+        if (command.size() != 2) {
+            String error = "ERROR: Erroneous usage of \"EXPORT_VOYAGES\" command!";
+            fileOutput.write(error, true);
+            return;
+        }
 
+        String path = command.get(1);
+        try {
+            VoyageColumns.of(buses).write(path);
+        } catch (IOException | InvalidPathException e) {
+            String error = String.format("ERROR: Voyages could not be exported to %s!", path);
+            fileOutput.write(error, true);
+            return;
         }
+        int count = buses.size();
+        String output = count + (count == 1 ? " voyage was" : " voyages were") + " exported to " + path + ".";
+        fileOutput.write(output, true);
+    }
+
+    /**
+     * Sets the current time and releases the seats of every hold that has expired by then.
+     *
+     * @param now The new current time, not earlier than the current one.
+     * @return the number of holds that expired with seats still held.
+     */
+    int expireHolds(long now) {
+        time = now;
+        int expired = 0;
+        SeatHold hold;
+        while ((hold = holdExpiries.peek()) != null && hold.getExpiresAt() <= now) {
+            holdExpiries.remove(hold);
+            Bus bus = hold.getBus();
+            bus.releaseHold(hold);
+            routeIndex.update(bus);
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * Generates and logs a Z report that summarizes the state of all voyages of this voyage management system.
+     *
+     * @param fileOutput  The output where the report will be written.
+     */
+    public void printZReport(CommandOutput fileOutput) {
+        printZReport(sortedBusMap, fileOutput);
+    }
 
     /**
      * Generates and logs a Z report that summarizes the state of all voyages.
      * The report includes details such as voyage ID, source and destination cities,
-     * seating layout, and total revenue.
+     * seating layout, and total revenue. The details of every voyage are written as they are
+     * cached by {@link Bus#getDetails()}, so only the voyages changed since the last report are rendered.
+     * Sorted maps are reported in their own order, other maps are sorted by voyage ID first.
      *
      * @param busMap      A map of all bus voyages currently managed by the system.
-     * @param output_path The path to the output file where the report will be written.
+     * @param fileOutput  The output where the report will be written.
      */
-        public static void printZReport (Map < Integer, Bus > busMap, String output_path){
+    public static void printZReport(Map<Integer, Bus> busMap, CommandOutput fileOutput) {
+        fileOutput.write("Z Report:", true);
+        if (busMap.isEmpty()) {
+            fileOutput.write("----------------\n" + "No Voyages Available!\n" + "----------------", true);
+            return;
+        }
+        Collection<Bus> buses = busMap.values();
+        if (!(busMap instanceof SortedMap)) {
             List<Integer> sortedKeys = new ArrayList<>(busMap.keySet());
             Collections.sort(sortedKeys);
-            StringBuilder output = new StringBuilder();
-            output.append("Z Report:\n");
-            if (busMap.isEmpty()) {
-                output.append("----------------\n" + "No Voyages Available!\n" + "----------------");
-            } else {
-                for (Integer id : sortedKeys) {
-                    Bus bus = busMap.get(id);
-                    output.append("----------------\n" + "Voyage ").append(bus.getId()).append("\n").append(bus.getFromCity()).append("-").append(bus.getToCity()).append("\n").append(bus.getSeatingLayout()).append("Revenue: ").append(String.format("%.2f", bus.getRevenue())).append("\n");
-                }
-                output.append("----------------");
+            List<Bus> sortedBuses = new ArrayList<>(sortedKeys.size());
+            for (Integer id : sortedKeys) {
+                sortedBuses.add(busMap.get(id));
             }
-            FileOutput.writeToFile(output_path, output.toString(), true, true);
+            buses = sortedBuses;
         }
+        for (Bus bus : buses) {
+            fileOutput.write("----------------", true);
+            fileOutput.write(bus.getDetails(), true);
+        }
+        fileOutput.write("----------------", true);
+    }
 
 }
-
-
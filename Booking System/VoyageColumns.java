@@ -0,0 +1,615 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code VoyageColumns} class holds the state of many voyages column by column, in one primitive array per
+ * attribute, so analytics such as the total revenue or the occupancy of every route are computed by scanning
+ * a few arrays instead of walking {@link Bus} objects or parsing Z reports. The columns can be written to a
+ * compact binary file and read back with bulk transfers, which is how "EXPORT_VOYAGES" makes the state of a
+ * run available to other tools.
+ * <p>
+ * Voyage {@code i} has the {@code i}-th value of every column. Cities are dictionary encoded: the city columns
+ * hold indexes into {@link #getCities()}. Bus types are encoded as indexes into {@link #BUS_TYPES}, and the
+ * refund cut and premium fee of the bus types that do not have them are 0. The sold seats of voyage {@code i}
+ * are a bitmap in the words from {@code seatOffsets[i]} to {@code seatOffsets[i + 1]} of {@link #getSeatWords()},
+ * where seat {@code s} is bit {@code s % 64} of word {@code seatOffsets[i] + s / 64}.
+ * <p>
+ * The file starts with the {@link #MAGIC} number, the number of voyages, the number of cities, the number of
+ * bytes of the city names and the number of seat words. The columns follow in the order of the getters below,
+ * the city names first as their lengths and their concatenated UTF-8 bytes. All numbers are little-endian and
+ * every column starts at a multiple of 8 bytes, so the file can also be mapped and read in place.
+ */
+public class VoyageColumns {
+
+    /**
+     * The first four bytes of a voyage export, "VCOL".
+     */
+    public static final int MAGIC = 0x56434F4C;
+
+    /**
+     * The names of the bus types, indexed by the codes in {@link #getBusTypeCodes()}.
+     */
+    public static final String[] BUS_TYPES = {"Minibus", "Standard", "Premium"};
+
+    private static final int[] SEATS_PER_ROW = {2, 4, 3};
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int ALIGNMENT = 8;
+
+    private final int size;
+    private String[] cities;
+    private final int[] ids;
+    private final byte[] busTypes;
+    private final int[] fromCities;
+    private final int[] toCities;
+    private final int[] rows;
+    private final long[] prices;
+    private final int[] refundCuts;
+    private final int[] premiumFees;
+    private final long[] revenues;
+    private final int[] soldCounts;
+    private final int[] seatOffsets;
+    private final long[] seatWords;
+
+    /**
+     * Constructs empty columns for the given number of voyages.
+     *
+     * @param size      the number of voyages.
+     * @param wordCount the number of words of all the seat bitmaps.
+     */
+    private VoyageColumns(int size, int wordCount) {
+        this.size = size;
+        this.ids = new int[size];
+        this.busTypes = new byte[size];
+        this.fromCities = new int[size];
+        this.toCities = new int[size];
+        this.rows = new int[size];
+        this.prices = new long[size];
+        this.refundCuts = new int[size];
+        this.premiumFees = new int[size];
+        this.revenues = new long[size];
+        this.soldCounts = new int[size];
+        this.seatOffsets = new int[size + 1];
+        this.seatWords = new long[wordCount];
+    }
+
+    /**
+     * Copies the state of the given buses into columns, in the order they are iterated.
+     *
+     * @param buses the buses of the voyages, e.g. the values of a map sorted by voyage ID.
+     * @return the columns of the voyages.
+     */
+    public static VoyageColumns of(Collection<Bus> buses) {
+        long wordCount = 0;
+        for (Bus bus : buses) {
+            wordCount += bus.getSeats().getCapacity() / 64 + 1;
+        }
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many seats to be exported: " + wordCount + " words");
+        }
+        VoyageColumns columns = new VoyageColumns(buses.size(), (int) wordCount);
+        Map<String, Integer> cityCodes = new HashMap<>();
+        List<String> cities = new ArrayList<>();
+        int i = 0;
+        for (Bus bus : buses) {
+            columns.ids[i] = bus.getId();
+            columns.busTypes[i] = busTypeCode(bus.getBusType());
+            columns.fromCities[i] = cityCode(bus.getFromCity(), cityCodes, cities);
+            columns.toCities[i] = cityCode(bus.getToCity(), cityCodes, cities);
+            columns.rows[i] = bus.getRows();
+            columns.prices[i] = bus.getPrice();
+            if (bus instanceof StandartBus) {
+                columns.refundCuts[i] = ((StandartBus) bus).getRefundCut();
+            } else if (bus instanceof PremiumBus) {
+                columns.refundCuts[i] = ((PremiumBus) bus).getRefundCut();
+            }
+            Integer premiumFee = bus.getPremiumFee();
+            columns.premiumFees[i] = premiumFee == null ? 0 : premiumFee;
+            columns.revenues[i] = bus.getRevenue();
+            SeatInventory seats = bus.getSeats();
+            columns.soldCounts[i] = seats.getSoldCount();
+            columns.seatOffsets[i + 1] = columns.seatOffsets[i] + seats.getCapacity() / 64 + 1;
+            seats.copySoldBits(columns.seatWords, columns.seatOffsets[i]);
+            i++;
+        }
+        columns.cities = cities.toArray(new String[0]);
+        return columns;
+    }
+
+    /**
+     * Returns the code of a bus type.
+     *
+     * @param busType the name of the bus type.
+     * @return the index of the bus type in {@link #BUS_TYPES}.
+     */
+    private static byte busTypeCode(String busType) {
+        for (int code = 0; code < BUS_TYPES.length; code++) {
+            if (BUS_TYPES[code].equals(busType)) {
+                return (byte) code;
+            }
+        }
+        throw new IllegalArgumentException("Unknown bus type: " + busType);
+    }
+
+    /**
+     * Returns the code of a city, adding the city to the dictionary if it is not there yet.
+     *
+     * @param city      the name of the city.
+     * @param cityCodes the codes of the cities in the dictionary.
+     * @param cities    the cities in the dictionary, in the order of their codes.
+     * @return the index of the city in the dictionary.
+     */
+    private static int cityCode(String city, Map<String, Integer> cityCodes, List<String> cities) {
+        Integer code = cityCodes.get(city);
+        if (code == null) {
+            code = cities.size();
+            cityCodes.put(city, code);
+            cities.add(city);
+        }
+        return code;
+    }
+
+    /**
+     * Writes the columns to the file at the given path, replacing the file if it exists.
+     *
+     * @param path the path of the file.
+     * @throws IOException If the file can not be written.
+     */
+    public void write(String path) throws IOException {
+        int[] cityLengths = new int[cities.length];
+        byte[][] cityNames = new byte[cities.length][];
+        int cityByteCount = 0;
+        for (int i = 0; i < cities.length; i++) {
+            cityNames[i] = cities[i].getBytes(StandardCharsets.UTF_8);
+            cityLengths[i] = cityNames[i].length;
+            cityByteCount += cityLengths[i];
+        }
+        byte[] cityBytes = new byte[cityByteCount];
+        for (int i = 0, offset = 0; i < cities.length; offset += cityLengths[i], i++) {
+            System.arraycopy(cityNames[i], 0, cityBytes, offset, cityLengths[i]);
+        }
+
+        try (ColumnWriter out = new ColumnWriter(path)) {
+            out.putInts(new int[]{MAGIC, size, cities.length, cityByteCount, seatWords.length}, 5);
+            out.putInts(cityLengths, cityLengths.length);
+            out.putBytes(cityBytes, cityBytes.length);
+            out.putInts(ids, size);
+            out.putBytes(busTypes, size);
+            out.putInts(fromCities, size);
+            out.putInts(toCities, size);
+            out.putInts(rows, size);
+            out.putLongs(prices, size);
+            out.putInts(refundCuts, size);
+            out.putInts(premiumFees, size);
+            out.putLongs(revenues, size);
+            out.putInts(soldCounts, size);
+            out.putInts(seatOffsets, size + 1);
+            out.putLongs(seatWords, seatWords.length);
+        }
+    }
+
+    /**
+     * Reads the columns written by {@link #write(String)} from the file at the given path.
+     *
+     * @param path the path of the file.
+     * @return the columns of the voyages.
+     * @throws IOException If the file can not be read, is not a voyage export or is truncated.
+     */
+    public static VoyageColumns read(String path) throws IOException {
+        try (ColumnReader in = new ColumnReader(path)) {
+            int[] header = new int[5];
+            in.getInts(header, header.length);
+            if (header[0] != MAGIC) {
+                throw new IOException(path + " is not a voyage export");
+            }
+            int size = header[1];
+            int cityCount = header[2];
+            int cityByteCount = header[3];
+            int wordCount = header[4];
+            if (size < 0 || cityCount < 0 || cityByteCount < 0 || wordCount < 0) {
+                throw new IOException(path + " has a corrupted header");
+            }
+
+            int[] cityLengths = new int[cityCount];
+            in.getInts(cityLengths, cityCount);
+            byte[] cityBytes = new byte[cityByteCount];
+            in.getBytes(cityBytes, cityByteCount);
+            String[] cities = new String[cityCount];
+            for (int i = 0, offset = 0; i < cityCount; offset += cityLengths[i], i++) {
+                if (cityLengths[i] < 0 || cityLengths[i] > cityByteCount - offset) {
+                    throw new IOException(path + " has a corrupted city dictionary");
+                }
+                cities[i] = new String(cityBytes, offset, cityLengths[i], StandardCharsets.UTF_8);
+            }
+
+            VoyageColumns columns = new VoyageColumns(size, wordCount);
+            columns.cities = cities;
+            in.getInts(columns.ids, size);
+            in.getBytes(columns.busTypes, size);
+            in.getInts(columns.fromCities, size);
+            in.getInts(columns.toCities, size);
+            in.getInts(columns.rows, size);
+            in.getLongs(columns.prices, size);
+            in.getInts(columns.refundCuts, size);
+            in.getInts(columns.premiumFees, size);
+            in.getLongs(columns.revenues, size);
+            in.getInts(columns.soldCounts, size);
+            in.getInts(columns.seatOffsets, size + 1);
+            in.getLongs(columns.seatWords, wordCount);
+            return columns;
+        }
+    }
+
+    /**
+     * Returns the number of voyages.
+     *
+     * @return the number of voyages.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the dictionary of the city columns. The arrays returned by this class are the columns themselves, not copies.
+     *
+     * @return the names of the cities, indexed by their codes.
+     */
+    public String[] getCities() {
+        return cities;
+    }
+
+    /**
+     * Returns the voyage ID column.
+     *
+     * @return the IDs of the voyages.
+     */
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * Returns the bus type column.
+     *
+     * @return the bus types of the voyages as indexes into {@link #BUS_TYPES}.
+     */
+    public byte[] getBusTypeCodes() {
+        return busTypes;
+    }
+
+    /**
+     * Returns the bus type of a voyage.
+     *
+     * @param index the index of the voyage.
+     * @return the name of the bus type, e.g. "Standard".
+     */
+    public String getBusType(int index) {
+        return BUS_TYPES[busTypes[index]];
+    }
+
+    /**
+     * Returns the departure city column.
+     *
+     * @return the departure cities of the voyages as indexes into {@link #getCities()}.
+     */
+    public int[] getFromCityCodes() {
+        return fromCities;
+    }
+
+    /**
+     * Returns the arrival city column.
+     *
+     * @return the arrival cities of the voyages as indexes into {@link #getCities()}.
+     */
+    public int[] getToCityCodes() {
+        return toCities;
+    }
+
+    /**
+     * Returns the departure city of a voyage.
+     *
+     * @param index the index of the voyage.
+     * @return the name of the departure city.
+     */
+    public String getFromCity(int index) {
+        return cities[fromCities[index]];
+    }
+
+    /**
+     * Returns the arrival city of a voyage.
+     *
+     * @param index the index of the voyage.
+     * @return the name of the arrival city.
+     */
+    public String getToCity(int index) {
+        return cities[toCities[index]];
+    }
+
+    /**
+     * Returns the seat row column.
+     *
+     * @return the number of seat rows of the voyages.
+     */
+    public int[] getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the seat price column.
+     *
+     * @return the regular seat prices of the voyages in {@link Money} units.
+     */
+    public long[] getPrices() {
+        return prices;
+    }
+
+    /**
+     * Returns the refund cut column.
+     *
+     * @return the refund cut percentages of the voyages, 0 for minibuses.
+     */
+    public int[] getRefundCuts() {
+        return refundCuts;
+    }
+
+    /**
+     * Returns the premium fee column.
+     *
+     * @return the premium fee percentages of the voyages, 0 for the buses without premium seats.
+     */
+    public int[] getPremiumFees() {
+        return premiumFees;
+    }
+
+    /**
+     * Returns the revenue column.
+     *
+     * @return the revenues of the voyages in {@link Money} units.
+     */
+    public long[] getRevenues() {
+        return revenues;
+    }
+
+    /**
+     * Returns the sold seat count column.
+     *
+     * @return the number of sold seats of the voyages.
+     */
+    public int[] getSoldCounts() {
+        return soldCounts;
+    }
+
+    /**
+     * Returns the offsets of the seat bitmaps.
+     *
+     * @return the index of the first seat word of every voyage, followed by the total number of seat words.
+     */
+    public int[] getSeatOffsets() {
+        return seatOffsets;
+    }
+
+    /**
+     * Returns the words of the seat bitmaps of all the voyages.
+     *
+     * @return the seat words.
+     */
+    public long[] getSeatWords() {
+        return seatWords;
+    }
+
+    /**
+     * Returns the number of seats of a voyage.
+     *
+     * @param index the index of the voyage.
+     * @return the number of seats of the bus.
+     */
+    public int getCapacity(int index) {
+        return rows[index] * SEATS_PER_ROW[busTypes[index]];
+    }
+
+    /**
+     * Checks whether a seat of a voyage is sold.
+     *
+     * @param index the index of the voyage.
+     * @param seat  the seat number.
+     * @return true if the seat is sold, false if it is empty or does not exist.
+     */
+    public boolean isSold(int index, int seat) {
+        int word = seatOffsets[index] + (seat >>> 6);
+        return seat > 0 && word < seatOffsets[index + 1] && (seatWords[word] & 1L << seat) != 0;
+    }
+
+    /**
+     * Returns the total revenue of all the voyages.
+     *
+     * @return the sum of the revenue column in {@link Money} units.
+     */
+    public long getTotalRevenue() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += revenues[i];
+        }
+        return total;
+    }
+
+    /**
+     * The {@code ColumnWriter} class writes columns to a file through a direct buffer, copying whole runs of
+     * every column into the buffer at a time.
+     */
+    private static final class ColumnWriter implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        private ColumnWriter(String path) throws IOException {
+            this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void putBytes(byte[] values, int length) throws IOException {
+            for (int offset = 0; offset < length; ) {
+                reserve(Byte.BYTES);
+                int count = Math.min(length - offset, buffer.remaining());
+                buffer.put(values, offset, count);
+                offset += count;
+            }
+            position += length;
+            align();
+        }
+
+        private void putInts(int[] values, int length) throws IOException {
+            for (int offset = 0; offset < length; ) {
+                reserve(Integer.BYTES);
+                int count = Math.min(length - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+            }
+            position += (long) length * Integer.BYTES;
+            align();
+        }
+
+        private void putLongs(long[] values, int length) throws IOException {
+            for (int offset = 0; offset < length; ) {
+                reserve(Long.BYTES);
+                int count = Math.min(length - offset, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                offset += count;
+            }
+            position += (long) length * Long.BYTES;
+            align();
+        }
+
+        /**
+         * Pads the file with zeros up to the next multiple of {@link #ALIGNMENT} bytes.
+         */
+        private void align() throws IOException {
+            while (position % ALIGNMENT != 0) {
+                reserve(Byte.BYTES);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * The {@code ColumnReader} class reads the columns written by a {@link ColumnWriter}, filling a direct buffer
+     * from the file and copying whole runs of every column out of it at a time.
+     */
+    private static final class ColumnReader implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        private ColumnReader(String path) throws IOException {
+            this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            buffer.limit(0);
+        }
+
+        private void getBytes(byte[] values, int length) throws IOException {
+            for (int offset = 0; offset < length; ) {
+                require(Byte.BYTES);
+                int count = Math.min(length - offset, buffer.remaining());
+                buffer.get(values, offset, count);
+                offset += count;
+            }
+            position += length;
+            align();
+        }
+
+        private void getInts(int[] values, int length) throws IOException {
+            for (int offset = 0; offset < length; ) {
+                require(Integer.BYTES);
+                int count = Math.min(length - offset, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                offset += count;
+            }
+            position += (long) length * Integer.BYTES;
+            align();
+        }
+
+        private void getLongs(long[] values, int length) throws IOException {
+            for (int offset = 0; offset < length; ) {
+                require(Long.BYTES);
+                int count = Math.min(length - offset, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                offset += count;
+            }
+            position += (long) length * Long.BYTES;
+            align();
+        }
+
+        /**
+         * Skips the padding up to the next multiple of {@link #ALIGNMENT} bytes.
+         */
+        private void align() throws IOException {
+            while (position % ALIGNMENT != 0) {
+                require(Byte.BYTES);
+                buffer.get();
+                position++;
+            }
+        }
+
+        /**
+         * Makes sure that at least the given number of bytes can be taken from the buffer.
+         *
+         * @param bytes the number of bytes needed.
+         * @throws IOException If the file can not be read or ends before those bytes.
+         */
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Voyage export ends unexpectedly at offset " + position);
+                }
+            }
+            buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
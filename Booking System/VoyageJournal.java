@@ -0,0 +1,524 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code VoyageJournal} class makes the state of a {@link Voyage} durable across runs.
+ * <p>
+ * Every change of the state (a voyage initialized, seats sold or refunded, a voyage cancelled) is appended
+ * to a binary write-ahead journal as a small record protected by a CRC32 checksum, before the change is
+ * applied. Records are buffered; the journal is a {@link Flushable} that the command output flushes before
+ * any of its own content reaches the disk (see {@link BufferedFileOutput#setWriteAheadLog(Flushable)}),
+ * so the output never reports a change that the journal could lose. Every
+ * {@code snapshotInterval} records, the complete state of every bus is written to a snapshot file and a
+ * new journal generation is started, after which the older journals are deleted. On startup, the latest
+ * snapshot is loaded and only the journals written after it are replayed, so the restore time depends on
+ * the number of voyages and the snapshot interval, not on the length of the command history.
+ * <p>
+ * Files are named after a base path: {@code base.snapshot} holds the snapshot and {@code base.journal.N}
+ * holds the records of generation N. The snapshot is written to a temporary file first and then moved over
+ * the old one, so a crash never leaves a half written snapshot behind. A record that was only partly written
+ * before a crash fails its checksum, and it is cut off the journal when the state is restored.
+ */
+public class VoyageJournal implements Closeable, Flushable {
+
+    /**
+     * Default number of journal records between two snapshots.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 100_000;
+
+    private static final int SNAPSHOT_MAGIC = 0x56594732; // "VYG2", amounts in Money units
+
+    private static final byte INIT = 1;
+    private static final byte SELL = 2;
+    private static final byte REFUND = 3;
+    private static final byte CANCEL = 4;
+
+    private final Voyage voyage;
+    private final String basePath;
+    private final int snapshotInterval;
+    private final BufferedFileOutput.SyncPolicy syncPolicy;
+    private final RecordBuffer recordBytes = new RecordBuffer();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    private long generation;
+    private FileOutputStream journalFile;
+    private DataOutputStream journal;
+    private int recordsSinceSnapshot;
+
+    /**
+     * Constructs a journal for the given voyage management system. Nothing is read or written
+     * until {@link #open()} is called.
+     *
+     * @param voyage           The voyage management system whose state is journaled.
+     * @param basePath         The path the snapshot and journal file names are derived from.
+     * @param snapshotInterval The number of journal records between two snapshots.
+     * @param syncPolicy       When the journal is forced to the storage device: {@code ON_FLUSH} forces
+     *                         every record, {@code ON_CLOSE} forces the journal when it is closed and
+     *                         {@code NONE} leaves it to the operating system.
+     */
+    public VoyageJournal(Voyage voyage, String basePath, int snapshotInterval, BufferedFileOutput.SyncPolicy syncPolicy) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException(snapshotInterval + " is not a positive integer, snapshot interval must be a positive integer!");
+        }
+        this.voyage = voyage;
+        this.basePath = basePath;
+        this.snapshotInterval = snapshotInterval;
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * Restores the state of the voyage management system from the latest snapshot and the journals
+     * written after it, then starts journaling every further change of the state.
+     *
+     * @throws IOException If the snapshot or a journal can not be read, or the journal can not be opened.
+     */
+    public void open() throws IOException {
+        generation = readSnapshot();
+        List<Long> generations = journalGenerations();
+        for (long journalGeneration : generations) {
+            if (journalGeneration >= generation) {
+                long validLength = replay(journalPath(journalGeneration));
+                generation = journalGeneration;
+                try (FileChannel channel = FileChannel.open(journalPath(journalGeneration), StandardOpenOption.WRITE)) {
+                    if (channel.size() > validLength) {
+                        channel.truncate(validLength); // Cut off a record torn by a crash
+                    }
+                }
+            }
+        }
+        openJournal();
+        voyage.setJournal(this);
+    }
+
+    /**
+     * Records the initialization of a voyage.
+     *
+     * @param bus The bus of the new voyage.
+     */
+    public void recordInit(Bus bus) {
+        try {
+            record.writeByte(INIT);
+            writeBus(record, bus);
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records the sale of seats and the resulting revenue of the voyage, before the seats are sold.
+     *
+     * @param bus     The bus of the voyage.
+     * @param revenue The revenue of the voyage after the sale.
+     * @param seats   The seats that are sold.
+     * @param count   The number of seats in the array that are sold.
+     */
+    public void recordSell(Bus bus, long revenue, int[] seats, int count) {
+        recordSeats(SELL, bus, revenue, seats, count);
+    }
+
+    /**
+     * Records the refund of seats and the resulting revenue of the voyage, before the seats are refunded.
+     *
+     * @param bus     The bus of the voyage.
+     * @param revenue The revenue of the voyage after the refund.
+     * @param seats   The seats that are refunded.
+     * @param count   The number of seats in the array that are refunded.
+     */
+    public void recordRefund(Bus bus, long revenue, int[] seats, int count) {
+        recordSeats(REFUND, bus, revenue, seats, count);
+    }
+
+    /**
+     * Records the cancellation of a voyage.
+     *
+     * @param id The ID of the cancelled voyage.
+     */
+    public void recordCancel(int id) {
+        try {
+            record.writeByte(CANCEL);
+            record.writeInt(id);
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of every bus, starts a new journal generation and deletes the journals
+     * the snapshot makes unnecessary.
+     *
+     * @throws IOException If the snapshot can not be written or the new journal can not be opened.
+     */
+    public void snapshot() throws IOException {
+        closeJournal();
+        generation++;
+        openJournal(); // Records written from now on are not part of the snapshot
+
+        Path snapshot = Paths.get(basePath + ".snapshot");
+        Path temporary = Paths.get(basePath + ".snapshot.tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(generation);
+            out.writeInt(voyage.sortedBusMap.size());
+            for (Bus bus : voyage.sortedBusMap.values()) {
+                writeBus(out, bus);
+                out.writeLong(bus.getRevenue());
+                int[] sold = bus.getSeats().toArray();
+                out.writeInt(sold.length);
+                for (int seat : sold) {
+                    out.writeInt(seat);
+                }
+            }
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        recordsSinceSnapshot = 0;
+
+        for (long journalGeneration : journalGenerations()) {
+            if (journalGeneration < generation) {
+                Files.deleteIfExists(journalPath(journalGeneration));
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records to the journal file. The records are only forced to the disk as the sync
+     * policy says, like the command output they are flushed before.
+     *
+     * @throws IOException If the journal can not be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    /**
+     * Flushes and closes the journal. The voyage management system stops journaling its changes.
+     *
+     * @throws IOException If the journal can not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        voyage.setJournal(null);
+        closeJournal();
+    }
+
+    /**
+     * Records a sale or a refund of seats.
+     *
+     * @param type    The type of the record.
+     * @param bus     The bus of the voyage.
+     * @param revenue The revenue of the voyage after the sale or refund.
+     * @param seats   The seats that are sold or refunded.
+     * @param count   The number of seats in the array that are sold or refunded.
+     */
+    private void recordSeats(byte type, Bus bus, long revenue, int[] seats, int count) {
+        try {
+            record.writeByte(type);
+            record.writeInt(bus.getId());
+            record.writeLong(revenue);
+            record.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                record.writeInt(seats[i]);
+            }
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the record that has been built to the journal as length, content and checksum,
+     * and takes a snapshot if enough records have been written since the last one.
+     *
+     * @throws IOException If the record can not be written.
+     */
+    private void commit() throws IOException {
+        crc.reset();
+        crc.update(recordBytes.buffer(), 0, recordBytes.size());
+        journal.writeInt(recordBytes.size());
+        recordBytes.writeTo(journal);
+        journal.writeInt((int) crc.getValue());
+        recordBytes.reset();
+        if (syncPolicy == BufferedFileOutput.SyncPolicy.ON_FLUSH) {
+            journal.flush();
+            journalFile.getChannel().force(false);
+        }
+        if (++recordsSinceSnapshot >= snapshotInterval) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Loads the snapshot into the voyage management system, if there is one.
+     *
+     * @return the first journal generation that is not part of the snapshot, or 0 if there is no snapshot.
+     * @throws IOException If the snapshot can not be read.
+     */
+    private long readSnapshot() throws IOException {
+        Path snapshot = Paths.get(basePath + ".snapshot");
+        if (!Files.exists(snapshot)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(snapshot + " is not a voyage snapshot");
+            }
+            long snapshotGeneration = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Bus bus = readBus(in);
+                long revenue = in.readLong();
+                int soldCount = in.readInt();
+                for (int s = 0; s < soldCount; s++) {
+                    bus.sellSeat(in.readInt());
+                }
+                bus.setRevenue(revenue);
+                voyage.addVoyage(bus);
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    /**
+     * Applies the valid records of a journal to the voyage management system.
+     * Replay stops at the end of the journal or at the first record that is incomplete or fails its checksum.
+     *
+     * @param path The path of the journal.
+     * @return the length of the valid part of the journal in bytes.
+     * @throws IOException If the journal can not be read.
+     */
+    private long replay(Path path) throws IOException {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                byte[] content;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0) {
+                        break;
+                    }
+                    content = new byte[length];
+                    in.readFully(content);
+                    int checksum = in.readInt();
+                    crc.reset();
+                    crc.update(content, 0, length);
+                    if (checksum != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(content)));
+                validLength += 4 + content.length + 4;
+                recordsSinceSnapshot++;
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Applies a single journal record to the voyage management system.
+     *
+     * @param in The content of the record.
+     * @throws IOException If the record can not be read.
+     */
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case INIT:
+                voyage.addVoyage(readBus(in));
+                break;
+            case SELL:
+            case REFUND: {
+                Bus bus = voyage.busMap.get(in.readInt());
+                long revenue = in.readLong();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    int seat = in.readInt();
+                    if (type == SELL) {
+                        bus.sellSeat(seat);
+                    } else {
+                        bus.refundSeat(seat);
+                    }
+                }
+                bus.setRevenue(revenue);
+                voyage.routeIndex.update(bus);
+                break;
+            }
+            case CANCEL:
+                voyage.removeVoyage(in.readInt());
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Writes the properties a bus is initialized with.
+     *
+     * @param out The stream to write to.
+     * @param bus The bus to be written.
+     * @throws IOException If the bus can not be written.
+     */
+    private static void writeBus(DataOutputStream out, Bus bus) throws IOException {
+        out.writeUTF(bus.getBusType());
+        out.writeInt(bus.getId());
+        out.writeUTF(bus.getFromCity());
+        out.writeUTF(bus.getToCity());
+        out.writeInt(bus.getRows());
+        out.writeLong(bus.getPrice());
+        if (bus instanceof StandartBus) {
+            out.writeInt(((StandartBus) bus).getRefundCut());
+        } else if (bus instanceof PremiumBus) {
+            out.writeInt(((PremiumBus) bus).getRefundCut());
+            out.writeInt(bus.getPremiumFee());
+        }
+    }
+
+    /**
+     * Reads a bus written by {@link #writeBus(DataOutputStream, Bus)}.
+     *
+     * @param in The stream to read from.
+     * @return a new bus with the properties read.
+     * @throws IOException If the bus can not be read.
+     */
+    private static Bus readBus(DataInputStream in) throws IOException {
+        String busType = in.readUTF();
+        Bus bus;
+        switch (busType) {
+            case "Minibus":
+                bus = new MiniBus();
+                break;
+            case "Standard":
+                bus = new StandartBus();
+                break;
+            case "Premium":
+                bus = new PremiumBus();
+                break;
+            default:
+                throw new IOException("Unknown bus type " + busType);
+        }
+        bus.setId(in.readInt());
+        bus.setFromCity(in.readUTF());
+        bus.setToCity(in.readUTF());
+        bus.setRows(in.readInt());
+        bus.setPrice(in.readLong());
+        if (bus instanceof StandartBus) {
+            ((StandartBus) bus).setRefundCut(in.readInt());
+        } else if (bus instanceof PremiumBus) {
+            ((PremiumBus) bus).setRefundCut(in.readInt());
+            ((PremiumBus) bus).setPremiumFee(in.readInt());
+        }
+        return bus;
+    }
+
+    /**
+     * Opens the journal of the current generation for appending.
+     *
+     * @throws IOException If the journal can not be opened.
+     */
+    private void openJournal() throws IOException {
+        journalFile = new FileOutputStream(journalPath(generation).toFile(), true);
+        journal = new DataOutputStream(new BufferedOutputStream(journalFile, BufferedFileOutput.DEFAULT_BUFFER_SIZE));
+    }
+
+    /**
+     * Flushes and closes the journal of the current generation, forcing it to the disk unless the sync policy is {@code NONE}.
+     *
+     * @throws IOException If the journal can not be written or closed.
+     */
+    private void closeJournal() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.flush();
+            if (syncPolicy != BufferedFileOutput.SyncPolicy.NONE) {
+                journalFile.getChannel().force(false);
+            }
+        } finally {
+            journal.close();
+            journal = null;
+            journalFile = null;
+        }
+    }
+
+    /**
+     * Returns the generations of the journals that exist, in ascending order.
+     *
+     * @return the journal generations found next to the base path.
+     * @throws IOException If the directory can not be listed.
+     */
+    private List<Long> journalGenerations() throws IOException {
+        Path base = Paths.get(basePath).toAbsolutePath();
+        String prefix = base.getFileName() + ".journal.";
+        List<Long> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(base.getParent())) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix)) {
+                    try {
+                        generations.add(Long.parseLong(name.substring(prefix.length())));
+                    } catch (NumberFormatException e) {
+                        // Not a journal of this base path
+                    }
+                }
+            });
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} that exposes its buffer, so that the checksum of a record is computed
+     * without copying it.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        /**
+         * Returns the internal buffer, whose first {@link #size()} bytes are the content written so far.
+         *
+         * @return the buffer of this stream.
+         */
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Returns the path of the journal of the given generation.
+     *
+     * @param journalGeneration The generation of the journal.
+     * @return the path of the journal.
+     */
+    private Path journalPath(long journalGeneration) {
+        return Paths.get(basePath + ".journal." + journalGeneration);
+    }
+}
@@ -0,0 +1,296 @@
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@code VoyageMetrics} class collects metrics of the commands processed by {@link Voyage}s:
+ * how many commands of each type were executed, how many of them succeeded, how many failed in each
+ * error branch, a {@link LatencyHistogram} of their execution times in nanoseconds, and how much
+ * output was written. The metrics can be dumped as JSON at any time, also periodically by a reporter thread.
+ * <p>
+ * Every voyage records through its own {@link Recorder}, and the recorders of several voyages, e.g. the
+ * shards of a {@link ShardedVoyageEngine}, can share one {@code VoyageMetrics}.
+ */
+public class VoyageMetrics implements Closeable {
+
+    /**
+     * The command type the commands with an unknown name are counted under.
+     */
+    public static final String UNKNOWN_COMMAND = "UNKNOWN";
+
+    private static final String ERROR_PREFIX = "ERROR: ";
+    private static final String OTHER_ERRORS = "OTHER";
+    private static final int MAX_ERROR_BRANCHES = 64;
+
+    /**
+     * The metrics of a single command type.
+     */
+    private static class CommandStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<String, Long> errorBranches = new TreeMap<>();
+        private long errors;
+    }
+
+    private final Map<String, CommandStats> commandStats = new TreeMap<>();
+    private long outputChars;
+    private LongSupplier outputBytes;
+    private ScheduledExecutorService reporter;
+
+    /**
+     * The {@code Recorder} class measures the commands of a single voyage. It stands between the voyage
+     * and its output while a command is executed, counting the written characters and noticing the error
+     * message of the command, if there is one.
+     */
+    public class Recorder implements CommandOutput {
+
+        private CommandOutput output;
+        private String commandType;
+        private String error;
+        private long chars;
+        private long start;
+
+        /**
+         * Starts measuring a command.
+         *
+         * @param commandType The type of the command, i.e. the name of a known command or {@link #UNKNOWN_COMMAND}.
+         * @param output      The output the command writes to.
+         * @return the output the command has to write to instead, so that its output is measured.
+         */
+        public CommandOutput begin(String commandType, CommandOutput output) {
+            this.commandType = commandType;
+            this.output = output;
+            this.error = null;
+            this.chars = 0;
+            this.start = System.nanoTime();
+            return this;
+        }
+
+        /**
+         * Marks the command as failed with an exception, unless it has already written an error message.
+         *
+         * @param failure the exception thrown by the command.
+         */
+        public void fail(RuntimeException failure) {
+            if (error == null) {
+                error = ERROR_PREFIX + failure.getClass().getSimpleName();
+            }
+        }
+
+        /**
+         * Ends measuring the command and records its metrics.
+         */
+        public void end() {
+            record(commandType, System.nanoTime() - start, error, chars);
+            output = null;
+        }
+
+        /**
+         * Writes the content to the output of the command.
+         *
+         * @param content Content that is going to be written.
+         * @param newLine True if wanted to append a new line after content, false if vice versa.
+         */
+        @Override
+        public void write(String content, boolean newLine) {
+            if (error == null && content.startsWith(ERROR_PREFIX)) {
+                error = content;
+            }
+            chars += content.length() + (newLine ? 1 : 0);
+            output.write(content, newLine);
+        }
+
+        /**
+         * Appends a single character to the output of the command.
+         *
+         * @param c the character to be appended.
+         * @return this recorder.
+         */
+        @Override
+        public Recorder append(char c) {
+            chars++;
+            output.append(c);
+            return this;
+        }
+
+        /**
+         * Appends a part of the given character sequence to the output of the command.
+         *
+         * @param csq   the character sequence to be appended, "null" is used if it is null.
+         * @param start the index of the first character, inclusive.
+         * @param end   the index of the last character, exclusive.
+         * @return this recorder.
+         */
+        @Override
+        public Recorder append(CharSequence csq, int start, int end) {
+            chars += end - start;
+            output.append(csq, start, end);
+            return this;
+        }
+    }
+
+    /**
+     * Creates a recorder for a voyage.
+     *
+     * @return a new recorder feeding these metrics.
+     */
+    public Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Sets the source of the number of bytes written to the output file.
+     *
+     * @param outputBytes the source of the byte count, e.g. {@link BufferedFileOutput#getBytesWritten()}.
+     */
+    public synchronized void setOutputBytes(LongSupplier outputBytes) {
+        this.outputBytes = outputBytes;
+    }
+
+    /**
+     * Records the metrics of an executed command.
+     *
+     * @param commandType The type of the command.
+     * @param nanos       The execution time of the command in nanoseconds.
+     * @param error       The error message written by the command, or null if it succeeded.
+     * @param chars       The number of characters the command wrote.
+     */
+    private synchronized void record(String commandType, long nanos, String error, long chars) {
+        CommandStats stats = commandStats.computeIfAbsent(commandType, type -> new CommandStats());
+        stats.latency.record(nanos);
+        if (error != null) {
+            stats.errors++;
+            String branch = errorBranch(error);
+            if (stats.errorBranches.size() >= MAX_ERROR_BRANCHES && !stats.errorBranches.containsKey(branch)) {
+                branch = OTHER_ERRORS; // Unknown command names would add a branch each
+            }
+            stats.errorBranches.merge(branch, 1L, Long::sum);
+        }
+        outputChars += chars;
+    }
+
+    /**
+     * Starts a daemon thread that prints the metrics as a single line of JSON at a fixed rate.
+     *
+     * @param intervalMillis the time between two reports in milliseconds.
+     * @param out            the stream the reports are printed to.
+     */
+    public synchronized void startReporter(long intervalMillis, PrintStream out) {
+        if (reporter != null) {
+            throw new IllegalStateException("The reporter has already been started!");
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "voyage-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> out.println(toJson()), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the reporter thread, if it has been started.
+     */
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Returns the metrics as a single line of JSON, e.g.
+     * {@code {"commands":{"SELL_TICKET":{"count":2,"success":1,"errors":1,"errorBranches":{...},"latencyNanos":{...}}},
+     * "outputChars":120,"outputBytes":120}}.
+     *
+     * @return the JSON document.
+     */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"commands\":{");
+        String separator = "";
+        for (Map.Entry<String, CommandStats> entry : commandStats.entrySet()) {
+            CommandStats stats = entry.getValue();
+            LatencyHistogram latency = stats.latency;
+            json.append(separator);
+            appendString(json, entry.getKey());
+            json.append(":{\"count\":").append(latency.getCount())
+                    .append(",\"success\":").append(latency.getCount() - stats.errors)
+                    .append(",\"errors\":").append(stats.errors)
+                    .append(",\"errorBranches\":{");
+            String branchSeparator = "";
+            for (Map.Entry<String, Long> branch : stats.errorBranches.entrySet()) {
+                json.append(branchSeparator);
+                appendString(json, branch.getKey());
+                json.append(':').append(branch.getValue());
+                branchSeparator = ",";
+            }
+            json.append("},\"latencyNanos\":{\"min\":").append(latency.getMin())
+                    .append(",\"mean\":").append(Math.round(latency.getMean()))
+                    .append(",\"p50\":").append(latency.getValueAtPercentile(50))
+                    .append(",\"p90\":").append(latency.getValueAtPercentile(90))
+                    .append(",\"p99\":").append(latency.getValueAtPercentile(99))
+                    .append(",\"p999\":").append(latency.getValueAtPercentile(99.9))
+                    .append(",\"max\":").append(latency.getMax())
+                    .append("}}");
+            separator = ",";
+        }
+        json.append("},\"outputChars\":").append(outputChars);
+        if (outputBytes != null) {
+            json.append(",\"outputBytes\":").append(outputBytes.getAsLong());
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Returns the error branch of an error message, which is the message with every number replaced by "N",
+     * so that e.g. all "There is no voyage with ID of N!" errors are counted together.
+     *
+     * @param error the error message.
+     * @return the error branch.
+     */
+    private static String errorBranch(String error) {
+        StringBuilder branch = new StringBuilder(error.length());
+        boolean inNumber = false;
+        for (int i = 0; i < error.length(); i++) {
+            char c = error.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            boolean sign = c == '-' && i + 1 < error.length() && Character.isDigit(error.charAt(i + 1))
+                    && (i == 0 || error.charAt(i - 1) == ' ');
+            if (digit || sign) {
+                if (!inNumber) {
+                    branch.append('N');
+                }
+                inNumber = true;
+            } else {
+                branch.append(c);
+                inNumber = false;
+            }
+        }
+        return branch.toString().trim();
+    }
+
+    /**
+     * Appends a JSON string literal.
+     *
+     * @param json the JSON document.
+     * @param text the text of the string.
+     */
+    private static void appendString(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
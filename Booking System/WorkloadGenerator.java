@@ -0,0 +1,419 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The {@code WorkloadGenerator} class writes synthetic command files for load testing the booking system.
+ * It keeps a model of the voyages the generated commands create, so that the valid commands it writes are
+ * really valid when they are replayed: seats are only sold when they are empty, only refunded when they are
+ * sold, and voyages are only printed or cancelled while they exist. A configurable share of the commands is
+ * made erroneous on purpose, exercising the error branches of every command without changing the state.
+ * <p>
+ * The generated files can be given to {@link BookingSystem#main(String[])} as they are. The same settings
+ * and seed always produce the same file, so load tests are reproducible.
+ */
+public class WorkloadGenerator {
+
+    private static final String[] BUS_TYPES = {"Minibus", "Standard", "Premium"};
+    private static final int[] SEATS_PER_ROW = {2, 4, 3};
+    private static final int MINIBUS = 0;
+    private static final int MAX_SEATS_PER_COMMAND = 4;
+    private static final int NUMBER_OF_ERROR_KINDS = 12;
+
+    /**
+     * A voyage created by the generated commands, as the booking system will see it.
+     */
+    private static class VoyageModel {
+        private final int id;
+        private final int busType;
+        private final int capacity;
+        private final BitSet sold = new BitSet();
+        private int soldCount;
+
+        private VoyageModel(int id, int busType, int capacity) {
+            this.id = id;
+            this.busType = busType;
+            this.capacity = capacity;
+        }
+    }
+
+    private int fleetSize = 1000;
+    private int[] busTypeMix = {1, 1, 1};
+    private double contention = 0.0;
+    private double errorRate = 0.05;
+    private long seed = 42;
+    private int zReportInterval = 100_000;
+
+    private Random random;
+    private List<VoyageModel> voyages;
+    private int nextId;
+
+    /**
+     * Returns the number of voyages kept alive by the generated commands.
+     *
+     * @return the fleet size.
+     */
+    public int getFleetSize() {
+        return fleetSize;
+    }
+
+    /**
+     * Sets the number of voyages kept alive by the generated commands. Cancelled voyages are
+     * replaced by new ones, so the fleet stays at this size once it has been initialized.
+     *
+     * @param fleetSize the new fleet size.
+     */
+    public void setFleetSize(int fleetSize) {
+        if (fleetSize < 1) {
+            throw new IllegalArgumentException(fleetSize + " is not a positive integer, fleet size must be a positive integer!");
+        }
+        this.fleetSize = fleetSize;
+    }
+
+    /**
+     * Sets the relative weights of the bus types of the initialized voyages.
+     *
+     * @param minibus  the weight of minibus voyages.
+     * @param standard the weight of standard voyages.
+     * @param premium  the weight of premium voyages.
+     */
+    public void setBusTypeMix(int minibus, int standard, int premium) {
+        if (minibus < 0 || standard < 0 || premium < 0 || minibus + standard + premium == 0) {
+            throw new IllegalArgumentException("Bus type weights must be non-negative integers with a positive sum!");
+        }
+        this.busTypeMix = new int[]{minibus, standard, premium};
+    }
+
+    /**
+     * Returns the share of the seat commands that target the hot voyages.
+     *
+     * @return the seat contention, in range of [0, 1].
+     */
+    public double getContention() {
+        return contention;
+    }
+
+    /**
+     * Sets the share of the seat commands that target the hot voyages, the first hundredth of the fleet.
+     * With a high contention most sales and refunds hit a few voyages, which then fill up and are refunded
+     * over and over again, like the popular voyages of a real booking system.
+     *
+     * @param contention the new seat contention, in range of [0, 1].
+     */
+    public void setContention(double contention) {
+        if (contention < 0 || contention > 1) {
+            throw new IllegalArgumentException(contention + " is not in range of [0, 1], contention must be in range of [0, 1]!");
+        }
+        this.contention = contention;
+    }
+
+    /**
+     * Returns the share of the generated commands that are erroneous on purpose.
+     *
+     * @return the error rate, in range of [0, 1].
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Sets the share of the generated commands that are erroneous on purpose.
+     *
+     * @param errorRate the new error rate, in range of [0, 1].
+     */
+    public void setErrorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException(errorRate + " is not in range of [0, 1], error rate must be in range of [0, 1]!");
+        }
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Returns the seed of the random numbers.
+     *
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed of the random numbers.
+     *
+     * @param seed the new seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of commands between two "Z_REPORT" commands.
+     *
+     * @param zReportInterval the new interval, or zero to generate no "Z_REPORT" commands.
+     */
+    public void setZReportInterval(int zReportInterval) {
+        if (zReportInterval < 0) {
+            throw new IllegalArgumentException(zReportInterval + " is not a non-negative integer, Z report interval must be a non-negative integer!");
+        }
+        this.zReportInterval = zReportInterval;
+    }
+
+    /**
+     * Generates the given number of commands, one per line.
+     *
+     * @param commandCount the number of commands to be generated.
+     * @param output       the output the commands are written to.
+     */
+    public void generate(long commandCount, CommandOutput output) {
+        random = new Random(seed);
+        voyages = new ArrayList<>();
+        nextId = 1;
+        for (long i = 1; i <= commandCount; i++) {
+            if (zReportInterval > 0 && i % zReportInterval == 0) {
+                output.write("Z_REPORT", true);
+            } else if (random.nextDouble() < errorRate) {
+                output.write(erroneousCommand(), true);
+            } else {
+                output.write(validCommand(), true);
+            }
+        }
+    }
+
+    /**
+     * Returns a valid command and applies it to the model. New voyages are initialized until the
+     * fleet is complete; after that seats are sold, refunded, and voyages are printed and cancelled.
+     *
+     * @return the command line.
+     */
+    private String validCommand() {
+        if (voyages.size() < fleetSize) {
+            int kurus = random.nextInt(100);
+            return initVoyage(nextId++, chooseBusType(), 5 + random.nextInt(36),
+                    (50 + random.nextInt(451)) + (kurus < 10 ? ".0" : ".") + kurus);
+        }
+        int roll = random.nextInt(100);
+        if (roll < 55) {
+            String command = sellTicket(chooseVoyage());
+            if (command != null) {
+                return command;
+            }
+        }
+        if (roll < 80) {
+            String command = refundTicket(chooseVoyage());
+            if (command != null) {
+                return command;
+            }
+        }
+        if (roll < 95) {
+            return "PRINT_VOYAGE\t" + chooseVoyage().id;
+        }
+        return "CANCEL_VOYAGE\t" + removeVoyage(random.nextInt(voyages.size())).id;
+    }
+
+    /**
+     * Returns an "INIT_VOYAGE" command and adds its voyage to the model.
+     *
+     * @param id      the ID of the voyage.
+     * @param busType the index of the bus type.
+     * @param rows    the number of seat rows.
+     * @param price   the price of a regular seat.
+     * @return the command line.
+     */
+    private String initVoyage(int id, int busType, int rows, String price) {
+        StringBuilder command = new StringBuilder("INIT_VOYAGE\t").append(BUS_TYPES[busType]).append('\t').append(id)
+                .append("\tCity").append(random.nextInt(50)).append("\tCity").append(random.nextInt(50))
+                .append('\t').append(rows).append('\t').append(price);
+        if (busType != MINIBUS) {
+            command.append('\t').append(random.nextInt(101)); // Refund cut
+        }
+        if (busType == 2) {
+            command.append('\t').append(random.nextInt(101)); // Premium fee
+        }
+        voyages.add(new VoyageModel(id, busType, rows * SEATS_PER_ROW[busType]));
+        return command.toString();
+    }
+
+    /**
+     * Returns a "SELL_TICKET" command selling empty seats of the given voyage and marks them as sold.
+     *
+     * @param voyage the voyage.
+     * @return the command line, or null if the voyage is full.
+     */
+    private String sellTicket(VoyageModel voyage) {
+        int count = Math.min(1 + random.nextInt(MAX_SEATS_PER_COMMAND), voyage.capacity - voyage.soldCount);
+        if (count == 0) {
+            return null;
+        }
+        StringBuilder command = new StringBuilder("SELL_TICKET\t").append(voyage.id).append('\t');
+        for (int i = 0; i < count; i++) {
+            int seat = findSeat(voyage, false);
+            voyage.sold.set(seat);
+            voyage.soldCount++;
+            command.append(i == 0 ? "" : "_").append(seat);
+        }
+        return command.toString();
+    }
+
+    /**
+     * Returns a "REFUND_TICKET" command refunding sold seats of the given voyage and marks them as empty.
+     *
+     * @param voyage the voyage.
+     * @return the command line, or null if the voyage is a minibus voyage or has no sold seats.
+     */
+    private String refundTicket(VoyageModel voyage) {
+        int count = Math.min(1 + random.nextInt(MAX_SEATS_PER_COMMAND), voyage.soldCount);
+        if (voyage.busType == MINIBUS || count == 0) {
+            return null;
+        }
+        StringBuilder command = new StringBuilder("REFUND_TICKET\t").append(voyage.id).append('\t');
+        for (int i = 0; i < count; i++) {
+            int seat = findSeat(voyage, true);
+            voyage.sold.clear(seat);
+            voyage.soldCount--;
+            command.append(i == 0 ? "" : "_").append(seat);
+        }
+        return command.toString();
+    }
+
+    /**
+     * Returns an erroneous command. Erroneous commands are rejected by the booking system without
+     * changing any voyage, so the model is left as it is.
+     *
+     * @return the command line.
+     */
+    private String erroneousCommand() {
+        if (voyages.isEmpty()) {
+            return "PRINT_VOYAGE\t" + nextId; // No such voyage
+        }
+        VoyageModel voyage = chooseVoyage();
+        switch (random.nextInt(NUMBER_OF_ERROR_KINDS)) {
+            case 0:
+                return "SELL_TICKET\t" + nextId + "\t1"; // No such voyage
+            case 1:
+                return "SELL_TICKET\t" + voyage.id + "\t" + (voyage.capacity + 1); // No such seat
+            case 2:
+                return "SELL_TICKET\t" + voyage.id + "\t0"; // Not a positive seat number
+            case 3:
+                if (voyage.soldCount > 0) {
+                    return "SELL_TICKET\t" + voyage.id + "\t" + findSeat(voyage, true); // Already sold
+                }
+                return "SELL_TICKET\t" + voyage.id; // Erroneous usage
+            case 4:
+                if (voyage.busType == MINIBUS) {
+                    return "REFUND_TICKET\t" + voyage.id + "\t1"; // Not refundable
+                }
+                if (voyage.soldCount < voyage.capacity) {
+                    return "REFUND_TICKET\t" + voyage.id + "\t" + findSeat(voyage, false); // Already empty
+                }
+                return "REFUND_TICKET\t" + voyage.id; // Erroneous usage
+            case 5:
+                return "INIT_VOYAGE\tStandard\t" + voyage.id + "\tCity0\tCity1\t10\t100\t10"; // Duplicate ID
+            case 6:
+                return "INIT_VOYAGE\tStandard\t" + nextId + "\tCity0\tCity1\t10\t-100\t10"; // Negative price
+            case 7:
+                return "INIT_VOYAGE\tMinibus\t" + nextId + "\tCity0\tCity1\t-10\t100"; // Negative rows
+            case 8:
+                return "INIT_VOYAGE\tDoubleDecker\t" + nextId + "\tCity0\tCity1\t10\t100"; // Unknown bus type
+            case 9:
+                return "CANCEL_VOYAGE\t" + nextId; // No such voyage
+            case 10:
+                return "Z_REPORT\t" + voyage.id; // Erroneous usage
+            default:
+                return "BOOK_TICKET\t" + voyage.id + "\t1"; // Unknown command
+        }
+    }
+
+    /**
+     * Chooses the voyage of a seat command, taking the contention into account.
+     *
+     * @return a voyage of the model.
+     */
+    private VoyageModel chooseVoyage() {
+        int hotVoyages = Math.max(1, voyages.size() / 100);
+        if (random.nextDouble() < contention) {
+            return voyages.get(random.nextInt(hotVoyages));
+        }
+        return voyages.get(random.nextInt(voyages.size()));
+    }
+
+    /**
+     * Chooses the bus type of a new voyage according to the bus type mix.
+     *
+     * @return the index of the bus type.
+     */
+    private int chooseBusType() {
+        int roll = random.nextInt(busTypeMix[0] + busTypeMix[1] + busTypeMix[2]);
+        int busType = 0;
+        while (roll >= busTypeMix[busType]) {
+            roll -= busTypeMix[busType++];
+        }
+        return busType;
+    }
+
+    /**
+     * Finds a random seat of the voyage that is sold or empty, starting from a random seat and
+     * wrapping around. The voyage must have at least one such seat.
+     *
+     * @param voyage the voyage.
+     * @param sold   true to find a sold seat, false to find an empty one.
+     * @return the seat number.
+     */
+    private int findSeat(VoyageModel voyage, boolean sold) {
+        int start = 1 + random.nextInt(voyage.capacity);
+        int seat = sold ? voyage.sold.nextSetBit(start) : voyage.sold.nextClearBit(start);
+        if (seat < 1 || seat > voyage.capacity) {
+            seat = sold ? voyage.sold.nextSetBit(1) : voyage.sold.nextClearBit(1);
+        }
+        return seat;
+    }
+
+    /**
+     * Removes a cancelled voyage from the model. The last voyage takes its place, so the
+     * removal takes constant time.
+     *
+     * @param index the index of the voyage to be removed.
+     * @return the removed voyage.
+     */
+    private VoyageModel removeVoyage(int index) {
+        VoyageModel voyage = voyages.get(index);
+        VoyageModel last = voyages.remove(voyages.size() - 1);
+        if (index < voyages.size()) {
+            voyages.set(index, last);
+        }
+        return voyage;
+    }
+
+    /**
+     * Generates a command file. The settings are read from system properties:
+     * {@code workload.fleet} (fleet size), {@code workload.mix} (bus type weights as "minibus:standard:premium"),
+     * {@code workload.contention}, {@code workload.errors} (error rate), {@code workload.seed} and
+     * {@code workload.zreport} (number of commands between Z reports).
+     *
+     * @param args Array of command-line arguments where args[0] is the path of the command file to be
+     *             written, which is replaced if it exists, and args[1] is the number of commands.
+     */
+    public static void main(String[] args) {
+        try {
+            WorkloadGenerator generator = new WorkloadGenerator();
+            generator.setFleetSize(Integer.getInteger("workload.fleet", generator.getFleetSize()));
+            String[] mix = System.getProperty("workload.mix", "1:1:1").split(":");
+            generator.setBusTypeMix(Integer.parseInt(mix[0]), Integer.parseInt(mix[1]), Integer.parseInt(mix[2]));
+            generator.setContention(Double.parseDouble(System.getProperty("workload.contention", "0")));
+            generator.setErrorRate(Double.parseDouble(System.getProperty("workload.errors", "0.05")));
+            generator.setSeed(Long.getLong("workload.seed", generator.getSeed()));
+            generator.setZReportInterval(Integer.getInteger("workload.zreport", 100_000));
+
+            Files.deleteIfExists(Paths.get(args[0]));
+            try (BufferedFileOutput output = new BufferedFileOutput(args[0])) {
+                generator.generate(Long.parseLong(args[1]), output);
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Print stack trace to standard error stream in case of exceptions
+            ex.printStackTrace();
+        }
+    }
+}
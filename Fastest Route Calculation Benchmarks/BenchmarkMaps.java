@@ -0,0 +1,66 @@
+import java.util.Random;
+
+/**
+ * The {@code BenchmarkMaps} class builds the road maps searched by the benchmarks. A map is a square grid of points,
+ * named {@code P0} to {@code P<n - 1>} row by row, with a road between every two neighbouring points and random
+ * distances from 1 to {@value #MAX_DISTANCE}. Roads are numbered from 1 in the order they are added.
+ * The maps are generated from a fixed seed, so every trial searches exactly the same map.
+ */
+public final class BenchmarkMaps {
+
+    /**
+     * The longest distance of a road.
+     */
+    public static final int MAX_DISTANCE = 100;
+
+    private static final long SEED = 42;
+
+    private BenchmarkMaps() {
+    }
+
+    /**
+     * Returns the number of points on a side of the grid that has about the given number of roads.
+     *
+     * @param roads the number of roads.
+     * @return the side of the grid.
+     */
+    public static int side(int roads) {
+        return Math.max(2, (int) Math.round(Math.sqrt(roads / 2.0)));
+    }
+
+    /**
+     * Builds a grid map with about the given number of roads.
+     *
+     * @param roads the number of roads, a grid with {@code side} points on a side has {@code 2 * side * (side - 1)} of them.
+     * @return the map, with the roads added but not frozen yet.
+     */
+    public static MapAnalyzerAlgorithm grid(int roads) {
+        int side = side(roads);
+        Random random = new Random(SEED);
+        MapAnalyzerAlgorithm map = new MapAnalyzerAlgorithm();
+        int id = 1;
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int point = row * side + column;
+                if (column + 1 < side) {
+                    map.addRoad("P" + point, "P" + (point + 1), 1 + random.nextInt(MAX_DISTANCE), id++);
+                }
+                if (row + 1 < side) {
+                    map.addRoad("P" + point, "P" + (point + side), 1 + random.nextInt(MAX_DISTANCE), id++);
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns the name of the point at the opposite corner of the grid to {@code P0}.
+     *
+     * @param roads the number of roads the grid was built with.
+     * @return the name of the last point.
+     */
+    public static String farCorner(int roads) {
+        int side = side(roads);
+        return "P" + (side * side - 1);
+    }
+}
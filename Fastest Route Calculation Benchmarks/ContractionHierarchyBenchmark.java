@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code ContractionHierarchyBenchmark} class measures the {@link ContractionHierarchy} of a grid map with
+ * {@code roads} roads:
+ * <ul>
+ *     <li>{@code build} contracts the map, the preprocessing time,</li>
+ *     <li>{@code read} loads the hierarchy written by {@link ContractionHierarchy#write(String)},</li>
+ *     <li>{@code query} answers fastest route queries between random points with the hierarchy, including the
+ *     search over the map that picks the same route as {@code ShortestPath}.</li>
+ * </ul>
+ * The size of the index, the number of shortcuts, the number of edges the queries search and the size of the file,
+ * is printed once per trial. The query pairs are drawn from the same seed as those of {@link PointToPointBenchmark},
+ * so the query latency can be compared with the other modes of {@link RouteQueryEngine}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ContractionHierarchyBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    private int roads;
+
+    private RoadNetwork map;
+    private ContractionHierarchy hierarchy;
+    private Path file;
+    private int[] sources;
+    private int[] targets;
+    private int query;
+
+    /**
+     * Builds the map and its hierarchy, writes the hierarchy to a temporary file, prints the size of the index
+     * and draws the query pairs.
+     *
+     * @throws IOException If the file can not be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        map = BenchmarkMaps.grid(roads).getNetwork();
+        hierarchy = ContractionHierarchy.build(map);
+        file = Files.createTempFile("route-hierarchy", ".bin");
+        hierarchy.write(file.toString());
+        System.out.printf("%nIndex of %d roads: %d shortcuts, %d upward edges, %d core points, %d bytes on file%n",
+                map.getRoadCount(), hierarchy.getShortcutCount(), hierarchy.getUpwardEdgeCount(),
+                hierarchy.getCoreSize(), Files.size(file));
+        Random random = new Random(7);
+        sources = new int[QUERIES];
+        targets = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            sources[i] = random.nextInt(map.getPointCount());
+            targets[i] = random.nextInt(map.getPointCount());
+        }
+    }
+
+    /**
+     * Deletes the hierarchy file of the trial.
+     *
+     * @throws IOException If the file can not be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Contracts the map.
+     *
+     * @return the hierarchy.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public ContractionHierarchy build() {
+        return ContractionHierarchy.build(map);
+    }
+
+    /**
+     * Loads the hierarchy from its file.
+     *
+     * @return the hierarchy.
+     * @throws IOException If the file can not be read.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ContractionHierarchy read() throws IOException {
+        return ContractionHierarchy.read(file.toString(), map);
+    }
+
+    /**
+     * Answers the next query with the hierarchy.
+     *
+     * @return the route.
+     */
+    @Benchmark
+    public List<Road> query() {
+        int i = query++ & (QUERIES - 1);
+        return hierarchy.query(sources[i], targets[i]);
+    }
+}
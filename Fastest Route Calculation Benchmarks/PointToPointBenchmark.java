@@ -0,0 +1,86 @@
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code PointToPointBenchmark} class measures fastest route queries between random points of a grid map
+ * with {@code roads} roads. {@code engine} answers them with a {@link RouteQueryEngine} in the given {@code mode},
+ * whose landmarks are prepared once per trial, while {@code shortestPath} settles the whole map for every query
+ * like {@link MapAnalyzerAlgorithm#ShortestPath(String, String, List)}. The query pairs are drawn from a fixed
+ * seed, so every mode answers the same queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PointToPointBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    private int roads;
+
+    @Param({"DIJKSTRA", "BIDIRECTIONAL", "ALT"})
+    private RouteQueryEngine.Mode mode;
+
+    private RoadNetwork map;
+    private RouteQueryEngine engine;
+    private int[] sources;
+    private int[] targets;
+    private int query;
+
+    /**
+     * Builds the map, prepares the landmarks and draws the query pairs.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = BenchmarkMaps.grid(roads).getNetwork();
+        engine = new RouteQueryEngine(map);
+        engine.prepareLandmarks();
+        Random random = new Random(7);
+        sources = new int[QUERIES];
+        targets = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            sources[i] = random.nextInt(map.getPointCount());
+            targets[i] = random.nextInt(map.getPointCount());
+        }
+    }
+
+    /**
+     * Answers the next query with the engine.
+     *
+     * @return the route.
+     */
+    @Benchmark
+    public List<Road> engine() {
+        int i = query++ & (QUERIES - 1);
+        return engine.query(sources[i], targets[i], mode);
+    }
+
+    /**
+     * Answers the next query by settling the whole map. It does not depend on the mode.
+     *
+     * @return the route.
+     */
+    @Benchmark
+    public List<Road> shortestPath() {
+        int i = query++ & (QUERIES - 1);
+        int[] path = MapAnalyzerAlgorithm.shortestPathTree(map, sources[i]);
+        return MapAnalyzerAlgorithm.route(map, path, sources[i], targets[i]);
+    }
+}
@@ -0,0 +1,34 @@
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The {@code RouteBenchmarks} class runs the JMH benchmarks of the fastest route calculation and reports
+ * their results together with the allocation rate measured by the GC profiler.
+ * <p>
+ * The benchmarks are compiled together with the sources of the fastest route calculation, with {@code jmh-core}
+ * and {@code jmh-generator-annprocess} on the class path, e.g.
+ * {@code javac -cp jmh.jar -d out "Fastest Route Calculation"/*.java "Fastest Route Calculation Benchmarks"/*.java}
+ * followed by {@code java -cp jmh.jar:out RouteBenchmarks}.
+ */
+public class RouteBenchmarks {
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args Optional regular expressions selecting the benchmarks to run, all benchmarks are run if none is given.
+     * @throws RunnerException If the benchmarks can not be run.
+     */
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class);
+        if (args.length == 0) {
+            options.include("RouteReconstructionBenchmark|ShortestPathBenchmark|PointToPointBenchmark|ContractionHierarchyBenchmark");
+        }
+        for (String pattern : args) {
+            options.include(pattern);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code RouteReconstructionBenchmark} class measures how the route between the opposite corners of a grid map
+ * with {@code roads} roads is rebuilt once the shortest path tree has been computed. {@code predecessorEdges}
+ * follows the edges the points were reached by, as {@link MapAnalyzerAlgorithm#ShortestPath(String, String, List)}
+ * does, while {@code scanByRoadId} looks every step up by scanning all the roads for its ID, as it had to be done
+ * before the edges knew their roads. {@code shortestPath} measures the whole query for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RouteReconstructionBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int roads;
+
+    private MapAnalyzerAlgorithm algorithm;
+    private RoadNetwork map;
+    private String end;
+    private int source;
+    private int target;
+    private int[] path;
+
+    /**
+     * Builds the map and computes the shortest path tree from its first corner.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        algorithm = BenchmarkMaps.grid(roads);
+        map = algorithm.getNetwork();
+        end = BenchmarkMaps.farCorner(roads);
+        source = map.getPointId("P0");
+        target = map.getPointId(end);
+        path = MapAnalyzerAlgorithm.shortestPathTree(map, source);
+    }
+
+    /**
+     * Rebuilds the route by following the edges the points were reached by.
+     *
+     * @return the route.
+     */
+    @Benchmark
+    public List<Road> predecessorEdges() {
+        return MapAnalyzerAlgorithm.route(map, path, source, target);
+    }
+
+    /**
+     * Rebuilds the route by looking every step up among all the roads by its ID.
+     *
+     * @return the route.
+     */
+    @Benchmark
+    public List<Road> scanByRoadId() {
+        int[] edgeRoads = map.getRoads();
+        List<Road> route = new ArrayList<>();
+        int current = target;
+        while (current != source && path[current] >= 0) {
+            int stepRoad = edgeRoads[path[current]];
+            for (int road = 0; road < map.getRoadCount(); road++) {
+                if (map.getRoadId(road) == map.getRoadId(stepRoad)) {
+                    route.add(map.getRoad(road));
+                }
+            }
+            current = map.getRoadPointB(stepRoad) == current ? map.getRoadPointF(stepRoad) : map.getRoadPointB(stepRoad);
+        }
+        Collections.reverse(route);
+        return route;
+    }
+
+    /**
+     * Answers the whole query, searching the map and rebuilding the route.
+     *
+     * @return the route.
+     */
+    @Benchmark
+    public List<Road> shortestPath() {
+        return algorithm.ShortestPath("P0", end, null);
+    }
+}
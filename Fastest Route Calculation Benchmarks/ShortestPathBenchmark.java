@@ -0,0 +1,95 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code ShortestPathBenchmark} class measures Dijkstra's algorithm over a whole grid map with {@code roads} roads.
+ * {@code indexedHeap} runs {@link MapAnalyzerAlgorithm#shortestPathTree(RoadNetwork, int)}, which lowers the keys
+ * of a {@link PointHeap} in place, while {@code lazyPriorityQueue} adds a new entry to a {@link PriorityQueue}
+ * for every improved distance and skips the stale ones, as it had to be done before the heap existed.
+ * Both settle the points in the same order, and the GC profiler shows the allocations per edge of the latter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShortestPathBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int roads;
+
+    private RoadNetwork map;
+    private int source;
+
+    /**
+     * Builds the map.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = BenchmarkMaps.grid(roads).getNetwork();
+        source = map.getPointId("P0");
+    }
+
+    /**
+     * Searches the map with the indexed heap.
+     *
+     * @return the edge every point was reached by.
+     */
+    @Benchmark
+    public int[] indexedHeap() {
+        return MapAnalyzerAlgorithm.shortestPathTree(map, source);
+    }
+
+    /**
+     * Searches the map with a priority queue of {distance, road ID, point} entries and lazy deletion.
+     *
+     * @return the edge every point was reached by.
+     */
+    @Benchmark
+    public int[] lazyPriorityQueue() {
+        int[] offsets = map.getOffsets();
+        int[] targets = map.getTargets();
+        int[] edgeDistances = map.getDistances();
+        int[] edgeRoads = map.getRoads();
+        int[] distances = new int[map.getPointCount()];
+        int[] path = new int[map.getPointCount()];
+        boolean[] visited = new boolean[map.getPointCount()];
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        Arrays.fill(path, -1);
+        PriorityQueue<int[]> pq = new PriorityQueue<>((r1, r2) ->
+                r1[0] != r2[0] ? Integer.compare(r1[0], r2[0]) : Integer.compare(r1[1], r2[1]));
+        distances[source] = 0;
+        pq.add(new int[]{0, -1, source});
+        while (!pq.isEmpty()) {
+            int current = pq.poll()[2];
+            if (visited[current]) continue;
+            visited[current] = true;
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = targets[edge];
+                if (visited[next]) continue;
+                int newDist = distances[current] + edgeDistances[edge];
+                if (newDist < distances[next]) {
+                    distances[next] = newDist;
+                    path[next] = edge;
+                    pq.add(new int[]{newDist, map.getRoadId(edgeRoads[edge]), next});
+                }
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,1026 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * This class is a contraction hierarchy of a {@link RoadNetwork}, an index that answers fastest route queries
+ * by settling a few hundred points instead of a large part of the map.
+ * <p>
+ * The hierarchy is built once by {@link #build(RoadNetwork)}, which contracts the points one by one, least important
+ * first. Contracting a point removes it from the map and adds a shortcut between two of its neighbours whenever
+ * the route through it is the only shortest route between them, so the distances between the remaining points
+ * do not change. The order a point was contracted in is its rank. A query searches from both of its points
+ * over the roads and shortcuts that lead to points of a higher rank only, and the two searches meet at the
+ * highest point of the route. Maps that are not drawn on a plane, like random ones, get denser and denser as they
+ * are contracted, so the contraction stops at a dense core of points, which get the highest ranks, and the
+ * searches move freely between the points of the core. A shortcut knows the two roads or shortcuts it replaces,
+ * so its distance is the sum of theirs.
+ * <p>
+ * The routes are identical to those of {@code ShortestPath}, including which of several equally short routes is
+ * returned: the hierarchy gives the shortest distance, and the route is then picked by a search over the roads of
+ * the map with the tie-breaking of {@code ShortestPath} that only follows roads of shortest routes.
+ * <p>
+ * {@link #write(String)} persists the hierarchy, and {@link #read(String, RoadNetwork)} loads it for the same map
+ * without contracting it again. The file starts with the {@link #MAGIC} number, the number of points, the number
+ * of roads, the number of shortcuts, the size of the core and a fingerprint of the roads of the map, followed by
+ * the rank of every point and the first road, the second road and the middle point of every shortcut. Roads are
+ * numbered by their index in the map and shortcuts from the number of roads on. All numbers are little-endian ints.
+ * <p>
+ * The search state is allocated once per hierarchy and reused by every query, so a hierarchy must not be
+ * queried by several threads at the same time.
+ */
+public class ContractionHierarchy {
+
+    /**
+     * The first four bytes of a persisted hierarchy, "CHRD".
+     */
+    public static final int MAGIC = 0x43485244;
+
+    private static final int HEADER_INTS = 7;
+    private static final int WITNESS_SETTLE_LIMIT = 100;
+    private static final int CORE_DEGREE = 32;
+
+    private final RoadNetwork map;
+    private final int roadCount;
+    private final int[] ranks;
+    private final int coreSize;
+    private final int[] shortcutFirst;
+    private final int[] shortcutSecond;
+    private final int[] shortcutMiddle;
+    private final int[] shortcutPointA;
+    private final int[] shortcutPointB;
+    private final int[] shortcutDistances;
+
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upDistances;
+    private final int[] upEdges;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] edgeDistances;
+    private final int[] edgeRoads;
+
+    private final Search forward;
+    private final Search backward;
+    private final int[] targetDistances;
+    private final int[] targetStamps;
+    private int[] pendingPoints = new int[64];
+    private int[] pendingEdges = new int[64];
+    private int settledCount;
+
+    /**
+     * Constructs the hierarchy of a map from the ranks of its points and its shortcuts, and lays out the roads and
+     * shortcuts leading to higher points in a compressed sparse row structure like that of {@link RoadNetwork}.
+     *
+     * @param map            the network the hierarchy was built for
+     * @param ranks          the rank of every point
+     * @param coreSize       the number of points that were not contracted, which have the highest ranks
+     * @param shortcutFirst  the road or shortcut from the first point of every shortcut to its middle point
+     * @param shortcutSecond the road or shortcut from the middle point of every shortcut to its second point
+     * @param shortcutMiddle the point every shortcut goes around
+     */
+    private ContractionHierarchy(RoadNetwork map, int[] ranks, int coreSize, int[] shortcutFirst, int[] shortcutSecond, int[] shortcutMiddle) {
+        this.map = map;
+        this.roadCount = map.getRoadCount();
+        this.ranks = ranks;
+        this.coreSize = coreSize;
+        this.shortcutFirst = shortcutFirst;
+        this.shortcutSecond = shortcutSecond;
+        this.shortcutMiddle = shortcutMiddle;
+        int shortcutCount = shortcutMiddle.length;
+        shortcutPointA = new int[shortcutCount];
+        shortcutPointB = new int[shortcutCount];
+        shortcutDistances = new int[shortcutCount];
+        for (int shortcut = 0; shortcut < shortcutCount; shortcut++) {
+            // A shortcut only replaces roads and shortcuts made before it
+            shortcutPointA[shortcut] = otherPoint(shortcutFirst[shortcut], shortcutMiddle[shortcut]);
+            shortcutPointB[shortcut] = otherPoint(shortcutSecond[shortcut], shortcutMiddle[shortcut]);
+            shortcutDistances[shortcut] = distance(shortcutFirst[shortcut]) + distance(shortcutSecond[shortcut]);
+        }
+
+        int pointCount = map.getPointCount();
+        int edgeCount = roadCount + shortcutCount;
+        upOffsets = new int[pointCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if (pointA(edge) != pointB(edge)) {
+                upOffsets[lowerPoint(edge) + 1]++;
+                if (isCoreEdge(edge)) {
+                    upOffsets[otherPoint(edge, lowerPoint(edge)) + 1]++;
+                }
+            }
+        }
+        for (int point = 0; point < pointCount; point++) {
+            upOffsets[point + 1] += upOffsets[point];
+        }
+        upTargets = new int[upOffsets[pointCount]];
+        upDistances = new int[upOffsets[pointCount]];
+        upEdges = new int[upOffsets[pointCount]];
+        int[] next = Arrays.copyOf(upOffsets, pointCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if (pointA(edge) != pointB(edge)) {
+                int lower = lowerPoint(edge);
+                int up = next[lower]++;
+                int higher = otherPoint(edge, lower);
+                upTargets[up] = higher;
+                upDistances[up] = distance(edge);
+                upEdges[up] = edge;
+                if (isCoreEdge(edge)) {
+                    up = next[higher]++;
+                    upTargets[up] = lower;
+                    upDistances[up] = distance(edge);
+                    upEdges[up] = edge;
+                }
+            }
+        }
+
+        offsets = map.getOffsets();
+        targets = map.getTargets();
+        edgeDistances = map.getDistances();
+        edgeRoads = map.getRoads();
+
+        forward = new Search(pointCount);
+        backward = new Search(pointCount);
+        targetDistances = new int[pointCount];
+        targetStamps = new int[pointCount];
+    }
+
+    /**
+     * Builds the hierarchy of a map. Points are contracted in the order of their priority, the number of shortcuts
+     * contracting them adds minus the number of roads it removes plus the number of their neighbours contracted
+     * before them, so the map is contracted evenly. Priorities change as neighbours are contracted, so the
+     * priority of a point is computed again when it is next in line, and it is put back if it has grown past
+     * the next point. A shortcut is not added if a witness search finds a route around the point that is not
+     * longer. Witness searches settle at most {@value #WITNESS_SETTLE_LIMIT} points, which may add a few
+     * shortcuts that are not needed but never leaves out one that is. The points left once the remaining map has
+     * more than {@value #CORE_DEGREE} roads and shortcuts per point on average are not contracted.
+     *
+     * @param map the network to be contracted
+     * @return the hierarchy of the network
+     */
+    public static ContractionHierarchy build(RoadNetwork map) {
+        return new Contractor(map).contract();
+    }
+
+    /**
+     * Writes the hierarchy to a file, in the format described above.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file can not be written
+     */
+    public void write(String path) throws IOException {
+        int shortcutCount = shortcutMiddle.length;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * (HEADER_INTS + ranks.length + 3 * shortcutCount))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long fingerprint = fingerprint(map);
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(new int[]{MAGIC, ranks.length, roadCount, shortcutCount, coreSize, (int) fingerprint, (int) (fingerprint >>> 32)});
+        ints.put(ranks);
+        ints.put(shortcutFirst);
+        ints.put(shortcutSecond);
+        ints.put(shortcutMiddle);
+        Files.write(Paths.get(path), buffer.array());
+    }
+
+    /**
+     * Reads a hierarchy written by {@link #write(String)} for the given map.
+     *
+     * @param path the path of the file
+     * @param map  the network the hierarchy was built for
+     * @return the hierarchy of the network
+     * @throws IOException if the file can not be read, is not a hierarchy, is corrupted or was built for another map
+     */
+    public static ContractionHierarchy read(String path, RoadNetwork map) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        int[] header = readHeader(path, ByteBuffer.wrap(bytes));
+        if (!isBuiltFor(header, map)) {
+            throw new IOException(path + " was built for another map");
+        }
+        IntBuffer ints = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        ints.position(HEADER_INTS);
+        int shortcutCount = header[3];
+        int coreSize = header[4];
+        if (shortcutCount < 0 || coreSize < 0 || coreSize > map.getPointCount() || ints.remaining() != map.getPointCount() + 3L * shortcutCount) {
+            throw new IOException(path + " has a corrupted header");
+        }
+        int[] ranks = new int[map.getPointCount()];
+        int[] first = new int[shortcutCount];
+        int[] second = new int[shortcutCount];
+        int[] middle = new int[shortcutCount];
+        ints.get(ranks);
+        ints.get(first);
+        ints.get(second);
+        ints.get(middle);
+
+        boolean[] ranked = new boolean[ranks.length];
+        for (int rank : ranks) {
+            if (rank < 0 || rank >= ranks.length || ranked[rank]) {
+                throw new IOException(path + " has corrupted ranks");
+            }
+            ranked[rank] = true;
+        }
+        int roadCount = map.getRoadCount();
+        for (int shortcut = 0; shortcut < shortcutCount; shortcut++) {
+            int edgeCount = roadCount + shortcut;
+            if (first[shortcut] < 0 || first[shortcut] >= edgeCount || second[shortcut] < 0 || second[shortcut] >= edgeCount
+                    || middle[shortcut] < 0 || middle[shortcut] >= ranks.length) {
+                throw new IOException(path + " has a corrupted shortcut");
+            }
+        }
+        return new ContractionHierarchy(map, ranks, coreSize, first, second, middle);
+    }
+
+    /**
+     * Checks whether a file written by {@link #write(String)} holds the hierarchy of the given map, reading only
+     * its header.
+     *
+     * @param path the path of the file
+     * @param map  the network
+     * @return true if the hierarchy was built for the network, false if it was built for another map
+     * @throws IOException if the file can not be read or is not a hierarchy
+     */
+    public static boolean isBuiltFor(String path, RoadNetwork map) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES * HEADER_INTS);
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // Keep reading until the header is complete or the file ends
+            }
+        }
+        bytes.flip();
+        return isBuiltFor(readHeader(path, bytes), map);
+    }
+
+    /**
+     * Reads the header of a hierarchy file from the start of its bytes.
+     *
+     * @param path  the path of the file, for the error message
+     * @param bytes the bytes of the file, at least those of the header
+     * @return the header
+     * @throws IOException if the bytes are too few or do not start with {@link #MAGIC}
+     */
+    private static int[] readHeader(String path, ByteBuffer bytes) throws IOException {
+        if (bytes.remaining() < Integer.BYTES * HEADER_INTS) {
+            throw new IOException(path + " is not a contraction hierarchy");
+        }
+        int[] header = new int[HEADER_INTS];
+        bytes.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(header);
+        if (header[0] != MAGIC) {
+            throw new IOException(path + " is not a contraction hierarchy");
+        }
+        return header;
+    }
+
+    /**
+     * Checks whether a header matches the point count, road count and fingerprint of a map.
+     *
+     * @param header the header of a hierarchy file
+     * @param map    the network
+     * @return true if the hierarchy was built for the network
+     */
+    private static boolean isBuiltFor(int[] header, RoadNetwork map) {
+        long fingerprint = (header[5] & 0xFFFFFFFFL) | ((long) header[6] << 32);
+        return header[1] == map.getPointCount() && header[2] == map.getRoadCount() && fingerprint == fingerprint(map);
+    }
+
+    /**
+     * Computes a fingerprint of the points and roads of a map, which tells whether a persisted hierarchy
+     * was built for it.
+     *
+     * @param map the network
+     * @return the fingerprint
+     */
+    private static long fingerprint(RoadNetwork map) {
+        long fingerprint = map.getPointCount();
+        for (int road = 0; road < map.getRoadCount(); road++) {
+            fingerprint = 31 * fingerprint + map.getRoadPointB(road);
+            fingerprint = 31 * fingerprint + map.getRoadPointF(road);
+            fingerprint = 31 * fingerprint + map.getRoadDistance(road);
+            fingerprint = 31 * fingerprint + map.getRoadId(road);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the network the hierarchy was built for.
+     *
+     * @return the road network
+     */
+    public RoadNetwork getNetwork() {
+        return map;
+    }
+
+    /**
+     * Returns the number of shortcuts added by the contraction.
+     *
+     * @return the number of shortcuts
+     */
+    public int getShortcutCount() {
+        return shortcutMiddle.length;
+    }
+
+    /**
+     * Returns the number of points that were not contracted.
+     *
+     * @return the size of the core
+     */
+    public int getCoreSize() {
+        return coreSize;
+    }
+
+    /**
+     * Returns the number of roads and shortcuts the queries search, counted once from their lower point, and once more
+     * from their higher point if both of their points are in the core.
+     *
+     * @return the number of upward edges
+     */
+    public int getUpwardEdgeCount() {
+        return upTargets.length;
+    }
+
+    /**
+     * Returns the number of points settled by the last query, counting every search.
+     *
+     * @return the number of settled points
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Finds the fastest route between two points.
+     *
+     * @param start starting point of the path
+     * @param end   ending point of the path
+     * @return a list of roads representing a shortest path from start to end
+     * @throws IllegalArgumentException if no road of the map starts or ends at the starting point
+     */
+    public List<Road> query(String start, String end) {
+        int source = map.getPointId(start);
+        if (source < 0) {
+            throw new IllegalArgumentException("There is no road at " + start);
+        }
+        return query(source, map.getPointId(end));
+    }
+
+    /**
+     * Finds the fastest route between two points, the same route {@code ShortestPath} returns.
+     * <p>
+     * The searches from both points settle the next closest point of either of them, and stop once that point is
+     * not closer than the shortest route found. A point is not searched further if it can be reached by a shorter
+     * route from a higher point the search has reached, since the route to it can not be a shortest one. This
+     * gives the shortest distance, but the route through the meeting point may be another one of several equally
+     * short routes. So the backward search goes on up to the shortest distance, and the route is picked by a
+     * Dijkstra search over the map with the tie-breaking of {@code ShortestPath} that only follows the roads of
+     * shortest routes, the roads whose distance from the starting point plus the distance from their end to the
+     * ending point is the shortest distance, see {@link #distanceToTarget(int)}.
+     *
+     * @param source the ID of the starting point
+     * @param target the ID of the ending point, or -1 if it is not a point of the map
+     * @return a list of roads representing the shortest path from source to target, empty if there is none
+     */
+    public List<Road> query(int source, int target) {
+        settledCount = 0;
+        if (target < 0 || target == source) {
+            return new ArrayList<>();
+        }
+        forward.nextStamp();
+        backward.nextStamp();
+        long best = shortestDistance(source, target);
+        if (best == Long.MAX_VALUE) {
+            return new ArrayList<>();
+        }
+        searchUpTo((int) best);
+        forward.nextStamp();
+        return shortestRouteSearch(source, target, (int) best)
+                ? MapAnalyzerAlgorithm.route(map, forward.edges, source, target) : new ArrayList<>();
+    }
+
+    /**
+     * Searches the hierarchy from both points for the shortest distance between them.
+     *
+     * @param source the ID of the starting point
+     * @param target the ID of the ending point
+     * @return the shortest distance, or {@link Long#MAX_VALUE} if the points are not connected
+     */
+    private long shortestDistance(int source, int target) {
+        forward.start(source, 0);
+        backward.start(target, 0);
+        long best = Long.MAX_VALUE;
+        while (true) {
+            long nextForward = forward.heap.isEmpty() ? Long.MAX_VALUE : forward.distances[forward.heap.peek()];
+            long nextBackward = backward.heap.isEmpty() ? Long.MAX_VALUE : backward.distances[backward.heap.peek()];
+            if (Math.min(nextForward, nextBackward) >= best || (nextForward == Long.MAX_VALUE && nextBackward == Long.MAX_VALUE)) {
+                break;
+            }
+            Search search = nextForward <= nextBackward ? forward : backward;
+            Search other = search == forward ? backward : forward;
+            int current = search.settleNext();
+            if (search.isStalled(current)) continue;
+            search.relax(current);
+            for (int up = upOffsets[current]; up < upOffsets[current + 1]; up++) {
+                int next = upTargets[up];
+                if (other.isReached(next) && (long) search.distances[next] + other.distances[next] < best) {
+                    best = (long) search.distances[next] + other.distances[next];
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lets the backward search go on until every point up to the given distance from the ending point has been
+     * settled. Every point whose shortest route to the ending point leads down the hierarchy only is then settled
+     * with its exact distance.
+     *
+     * @param limit the largest distance that is needed
+     */
+    private void searchUpTo(int limit) {
+        while (!backward.heap.isEmpty() && backward.distances[backward.heap.peek()] <= limit) {
+            int current = backward.settleNext();
+            if (!backward.isStalled(current)) {
+                backward.relax(current);
+            }
+        }
+    }
+
+    /**
+     * Runs Dijkstra's algorithm over the map from the starting point with the tie-breaking of {@code ShortestPath},
+     * following only the roads that lie on a shortest route to the ending point, until the ending point is settled.
+     * The full search reaches the points of the shortest routes by these roads with the same keys, so the points
+     * are settled in the same order and keep the same roads.
+     *
+     * @param source   the ID of the starting point
+     * @param target   the ID of the ending point
+     * @param distance the shortest distance between the points
+     * @return true if the ending point was reached, then the forward search holds the route
+     */
+    private boolean shortestRouteSearch(int source, int target, int distance) {
+        forward.start(source, PointHeap.key(0, -1));
+        while (!forward.heap.isEmpty()) {
+            int current = forward.settleNext();
+            if (current == target) {
+                return true;
+            }
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = targets[edge];
+                if (forward.isSettled(next)) continue;
+                int newDist = forward.distances[current] + edgeDistances[edge];
+                int rest = distance - newDist;
+                // No route to the ending point is shorter than rest, so a route the backward search found is a shortest one
+                if (rest < 0 || !(backward.isReached(next) && backward.distances[next] == rest) && distanceToTarget(next) != rest) continue;
+                if (!forward.isReached(next) || newDist < forward.distances[next]) {
+                    forward.reach(next, newDist, edge, PointHeap.key(newDist, map.getRoadId(edgeRoads[edge])));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the distance from a point to the ending point, as far as it is needed by the search for the route.
+     * A shortest route from a point to the ending point goes up the hierarchy, or through the core, and then down to
+     * the ending point, which the backward search has settled in reverse. So the distance of a point of the core is
+     * the one the backward search settled it with, and that of a contracted point is the smallest of that one and
+     * the distance of every higher neighbour plus the road or shortcut to it. The distances are computed once per
+     * query, higher points first, by a depth-first walk with an explicit stack.
+     *
+     * @param point the ID of the point
+     * @return the distance to the ending point, or {@link Integer#MAX_VALUE} if it is longer than the shortest route
+     */
+    private int distanceToTarget(int point) {
+        int stamp = backward.stamp;
+        if (targetStamps[point] == stamp) {
+            return targetDistances[point];
+        }
+        int firstCoreRank = ranks.length - coreSize;
+        int size = 0;
+        targetDistances[point] = backward.isSettled(point) ? backward.distances[point] : Integer.MAX_VALUE;
+        pendingPoints[size] = point;
+        pendingEdges[size++] = ranks[point] < firstCoreRank ? upOffsets[point] : upOffsets[point + 1];
+        while (size > 0) {
+            int current = pendingPoints[size - 1];
+            int up = pendingEdges[size - 1];
+            int end = upOffsets[current + 1];
+            for (; up < end; up++) {
+                int higher = upTargets[up];
+                if (targetStamps[higher] != stamp) {
+                    break;
+                }
+                if (targetDistances[higher] != Integer.MAX_VALUE) {
+                    targetDistances[current] = Math.min(targetDistances[current], targetDistances[higher] + upDistances[up]);
+                }
+            }
+            if (up == end) {
+                targetStamps[current] = stamp;
+                size--;
+                continue;
+            }
+            // Higher points are visited before the points below them, and the edge is read again once they are done
+            pendingEdges[size - 1] = up;
+            int higher = upTargets[up];
+            if (size == pendingPoints.length) {
+                pendingPoints = Arrays.copyOf(pendingPoints, 2 * size);
+                pendingEdges = Arrays.copyOf(pendingEdges, 2 * size);
+            }
+            targetDistances[higher] = backward.isSettled(higher) ? backward.distances[higher] : Integer.MAX_VALUE;
+            pendingPoints[size] = higher;
+            pendingEdges[size++] = ranks[higher] < firstCoreRank ? upOffsets[higher] : upOffsets[higher + 1];
+        }
+        return targetDistances[point];
+    }
+
+    /**
+     * Returns the first point of a road or shortcut.
+     *
+     * @param edge the index of the road or shortcut
+     * @return the ID of the starting point of the road, or of the first point of the shortcut
+     */
+    private int pointA(int edge) {
+        return edge < roadCount ? map.getRoadPointB(edge) : shortcutPointA[edge - roadCount];
+    }
+
+    /**
+     * Returns the second point of a road or shortcut.
+     *
+     * @param edge the index of the road or shortcut
+     * @return the ID of the ending point of the road, or of the second point of the shortcut
+     */
+    private int pointB(int edge) {
+        return edge < roadCount ? map.getRoadPointF(edge) : shortcutPointB[edge - roadCount];
+    }
+
+    /**
+     * Returns the point at the other end of a road or shortcut.
+     *
+     * @param edge  the index of the road or shortcut
+     * @param point the ID of one of its points
+     * @return the ID of its other point
+     */
+    private int otherPoint(int edge, int point) {
+        int pointA = pointA(edge);
+        return pointA == point ? pointB(edge) : pointA;
+    }
+
+    /**
+     * Returns the point of a road or shortcut that was contracted first.
+     *
+     * @param edge the index of the road or shortcut
+     * @return the ID of the point with the lower rank
+     */
+    private int lowerPoint(int edge) {
+        int pointA = pointA(edge);
+        int pointB = pointB(edge);
+        return ranks[pointA] < ranks[pointB] ? pointA : pointB;
+    }
+
+    /**
+     * Checks whether both points of a road or shortcut are in the core, so it can be travelled both ways
+     * by the searches.
+     *
+     * @param edge the index of the road or shortcut
+     * @return true if neither of its points was contracted
+     */
+    private boolean isCoreEdge(int edge) {
+        int firstCoreRank = ranks.length - coreSize;
+        return ranks[pointA(edge)] >= firstCoreRank && ranks[pointB(edge)] >= firstCoreRank;
+    }
+
+    /**
+     * Returns the distance of a road or shortcut.
+     *
+     * @param edge the index of the road or shortcut
+     * @return its distance
+     */
+    private int distance(int edge) {
+        return edge < roadCount ? map.getRoadDistance(edge) : shortcutDistances[edge - roadCount];
+    }
+
+    /**
+     * The state of one of the two searches of a query: the tentative distance of every point, the road or shortcut
+     * it was reached by, the searches it was reached and settled in, and the heap of the points waiting to be settled.
+     * Once the shortest distance is known, the forward search is started again for the search over the roads of
+     * the map, where the edges are those of the {@link RoadNetwork}. The arrays are stamped with the search they were
+     * written by, so they do not have to be cleared between searches.
+     */
+    private final class Search {
+        private final int[] distances;
+        private final int[] edges;
+        private final int[] reached;
+        private final int[] settled;
+        private final PointHeap heap;
+        private int stamp;
+
+        private Search(int pointCount) {
+            distances = new int[pointCount];
+            edges = new int[pointCount];
+            reached = new int[pointCount];
+            settled = new int[pointCount];
+            heap = new PointHeap(pointCount);
+        }
+
+        private boolean isReached(int point) {
+            return reached[point] == stamp;
+        }
+
+        private boolean isSettled(int point) {
+            return settled[point] == stamp;
+        }
+
+        private void start(int source, long key) {
+            heap.clear();
+            reach(source, 0, -1, key);
+        }
+
+        private void reach(int point, int distance, int edge, long key) {
+            distances[point] = distance;
+            edges[point] = edge;
+            reached[point] = stamp;
+            heap.push(point, key);
+        }
+
+        private int settleNext() {
+            int point = heap.poll();
+            settled[point] = stamp;
+            settledCount++;
+            return point;
+        }
+
+        /**
+         * Checks whether a higher point the search has reached leads to the point by a shorter route.
+         *
+         * @param point the ID of the point
+         * @return true if the point does not have to be searched further
+         */
+        private boolean isStalled(int point) {
+            for (int up = upOffsets[point]; up < upOffsets[point + 1]; up++) {
+                int higher = upTargets[up];
+                if (isReached(higher) && (long) distances[higher] + upDistances[up] < distances[point]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Relaxes the roads and shortcuts that lead up from a settled point.
+         *
+         * @param point the ID of the point
+         */
+        private void relax(int point) {
+            for (int up = upOffsets[point]; up < upOffsets[point + 1]; up++) {
+                int next = upTargets[up];
+                if (isSettled(next)) continue;
+                int newDist = distances[point] + upDistances[up];
+                if (!isReached(next) || newDist < distances[next]) {
+                    reach(next, newDist, upEdges[up], newDist);
+                }
+            }
+        }
+
+        private void nextStamp() {
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(reached, 0);
+                Arrays.fill(settled, 0);
+                if (this == backward) {
+                    Arrays.fill(targetStamps, 0);
+                }
+                stamp = 0;
+            }
+            stamp++;
+        }
+    }
+
+    /**
+     * This class contracts the points of a network and collects the shortcuts. The remaining map is kept as a list of
+     * roads and shortcuts for every point, from which the roads and shortcuts leading to contracted points
+     * are dropped lazily.
+     */
+    private static final class Contractor {
+        private final RoadNetwork map;
+        private final int pointCount;
+        private final int roadCount;
+
+        private int edgeCount;
+        private int[] edgePointA;
+        private int[] edgePointB;
+        private int[] edgeDistances;
+        private int[] edgeFirst;
+        private int[] edgeSecond;
+        private int[] edgeMiddle;
+        private final int[][] adjacency;
+        private final int[] degrees;
+
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+
+        private int neighbourCount;
+        private int[] neighbours = new int[16];
+        private int[] neighbourEdges = new int[16];
+        private int[] neighbourDistances = new int[16];
+        private int foundCount;
+        private int[] foundFroms = new int[16];
+        private int[] foundTos = new int[16];
+        private final int[] neighbourIndexes;
+        private final int[] neighbourStamps;
+        private int neighbourStamp;
+
+        private final int[] witnessDistances;
+        private final int[] witnessStamps;
+        private int witnessStamp;
+        private final PointHeap witnessHeap;
+
+        /**
+         * Copies the roads of a network into the lists of the remaining map.
+         *
+         * @param map the network to be contracted
+         */
+        private Contractor(RoadNetwork map) {
+            this.map = map;
+            this.pointCount = map.getPointCount();
+            this.roadCount = map.getRoadCount();
+            int capacity = Math.max(16, 2 * roadCount);
+            edgePointA = new int[capacity];
+            edgePointB = new int[capacity];
+            edgeDistances = new int[capacity];
+            edgeFirst = new int[capacity];
+            edgeSecond = new int[capacity];
+            edgeMiddle = new int[capacity];
+            for (int road = 0; road < roadCount; road++) {
+                edgePointA[road] = map.getRoadPointB(road);
+                edgePointB[road] = map.getRoadPointF(road);
+                edgeDistances[road] = map.getRoadDistance(road);
+            }
+            edgeCount = roadCount;
+
+            int[] offsets = map.getOffsets();
+            int[] roads = map.getRoads();
+            adjacency = new int[pointCount][];
+            degrees = new int[pointCount];
+            for (int point = 0; point < pointCount; point++) {
+                adjacency[point] = Arrays.copyOfRange(roads, offsets[point], offsets[point + 1]);
+                degrees[point] = adjacency[point].length;
+            }
+
+            contracted = new boolean[pointCount];
+            contractedNeighbours = new int[pointCount];
+            neighbourIndexes = new int[pointCount];
+            neighbourStamps = new int[pointCount];
+            witnessDistances = new int[pointCount];
+            witnessStamps = new int[pointCount];
+            witnessHeap = new PointHeap(pointCount);
+        }
+
+        /**
+         * Contracts the points in the order of their priority, until the remaining map has more than
+         * {@value #CORE_DEGREE} roads and shortcuts per point on average. The remaining points are the core.
+         *
+         * @return the hierarchy
+         */
+        private ContractionHierarchy contract() {
+            PointHeap queue = new PointHeap(pointCount);
+            for (int point = 0; point < pointCount; point++) {
+                queue.push(point, key(priority(point), point));
+            }
+            long remainingEdges = 0;
+            for (int road = 0; road < roadCount; road++) {
+                if (edgePointA[road] != edgePointB[road]) {
+                    remainingEdges++;
+                }
+            }
+            int[] ranks = new int[pointCount];
+            int rank = 0;
+            while (!queue.isEmpty() && 2 * remainingEdges <= (long) CORE_DEGREE * (pointCount - rank)) {
+                int point = queue.poll();
+                long key = key(priority(point), point);
+                if (!queue.isEmpty() && key > queue.getKey(queue.peek())) {
+                    queue.push(point, key);
+                    continue;
+                }
+                // The shortcuts found for its priority are still those it needs
+                addShortcuts(point);
+                remainingEdges += foundCount - degrees[point];
+                contracted[point] = true;
+                ranks[point] = rank++;
+                for (int i = 0; i < neighbourCount; i++) {
+                    contractedNeighbours[neighbours[i]]++;
+                }
+            }
+            int coreSize = pointCount - rank;
+            while (!queue.isEmpty()) {
+                ranks[queue.poll()] = rank++;
+            }
+
+            return new ContractionHierarchy(map, ranks, coreSize,
+                    Arrays.copyOfRange(edgeFirst, roadCount, edgeCount),
+                    Arrays.copyOfRange(edgeSecond, roadCount, edgeCount),
+                    Arrays.copyOfRange(edgeMiddle, roadCount, edgeCount));
+        }
+
+        /**
+         * Makes the queue key of a point, which orders points by priority and then by ID.
+         *
+         * @param priority the priority of the point
+         * @param point    the ID of the point
+         * @return the key
+         */
+        private static long key(int priority, int point) {
+            return ((long) priority << 32) | point;
+        }
+
+        /**
+         * Computes the priority of a point by finding the shortcuts its contraction needs.
+         *
+         * @param point the ID of the point
+         * @return the priority, lower for points that should be contracted earlier
+         */
+        private int priority(int point) {
+            int shortcuts = findShortcuts(point);
+            return shortcuts - neighbourCount + contractedNeighbours[point];
+        }
+
+        /**
+         * Finds the shortcuts needed to contract a point. The neighbours of the point are left in the neighbour arrays
+         * and the shortcuts in the shortcut arrays, so {@link #addShortcuts(int)} can add them if the point is contracted
+         * before the map changes.
+         *
+         * @param point the ID of the point
+         * @return the number of shortcuts needed
+         */
+        private int findShortcuts(int point) {
+            collectNeighbours(point);
+            foundCount = 0;
+            for (int i = 0; i < neighbourCount - 1; i++) {
+                int limit = 0;
+                for (int j = i + 1; j < neighbourCount; j++) {
+                    limit = Math.max(limit, neighbourDistances[i] + neighbourDistances[j]);
+                }
+                witnessSearch(i, point, limit);
+                for (int j = i + 1; j < neighbourCount; j++) {
+                    int other = neighbours[j];
+                    if (witnessStamps[other] != witnessStamp || witnessDistances[other] > neighbourDistances[i] + neighbourDistances[j]) {
+                        if (foundCount == foundFroms.length) {
+                            foundFroms = Arrays.copyOf(foundFroms, 2 * foundCount);
+                            foundTos = Arrays.copyOf(foundTos, 2 * foundCount);
+                        }
+                        foundFroms[foundCount] = i;
+                        foundTos[foundCount] = j;
+                        foundCount++;
+                    }
+                }
+            }
+            return foundCount;
+        }
+
+        /**
+         * Adds the shortcuts found by the last call of {@link #findShortcuts(int)} to the remaining map.
+         *
+         * @param point the ID of the point the shortcuts were found for
+         */
+        private void addShortcuts(int point) {
+            for (int k = 0; k < foundCount; k++) {
+                int i = foundFroms[k];
+                int j = foundTos[k];
+                addShortcut(neighbours[i], neighbours[j], point, neighbourEdges[i], neighbourEdges[j],
+                        neighbourDistances[i] + neighbourDistances[j]);
+            }
+        }
+
+        /**
+         * Collects the neighbours of a point that have not been contracted, each with the shortest road or shortcut
+         * to it, and drops the roads and shortcuts leading to contracted points or back to the point itself
+         * from the list of the point.
+         *
+         * @param point the ID of the point
+         */
+        private void collectNeighbours(int point) {
+            neighbourCount = 0;
+            neighbourStamp++;
+            int[] edges = adjacency[point];
+            int kept = 0;
+            for (int i = 0; i < degrees[point]; i++) {
+                int edge = edges[i];
+                int neighbour = edgePointA[edge] == point ? edgePointB[edge] : edgePointA[edge];
+                if (contracted[neighbour] || neighbour == point) continue;
+                edges[kept++] = edge;
+                if (neighbourStamps[neighbour] == neighbourStamp) {
+                    int index = neighbourIndexes[neighbour];
+                    if (edgeDistances[edge] < neighbourDistances[index]) {
+                        neighbourEdges[index] = edge;
+                        neighbourDistances[index] = edgeDistances[edge];
+                    }
+                    continue;
+                }
+                if (neighbourCount == neighbours.length) {
+                    neighbours = Arrays.copyOf(neighbours, 2 * neighbourCount);
+                    neighbourEdges = Arrays.copyOf(neighbourEdges, 2 * neighbourCount);
+                    neighbourDistances = Arrays.copyOf(neighbourDistances, 2 * neighbourCount);
+                }
+                neighbourStamps[neighbour] = neighbourStamp;
+                neighbourIndexes[neighbour] = neighbourCount;
+                neighbours[neighbourCount] = neighbour;
+                neighbourEdges[neighbourCount] = edge;
+                neighbourDistances[neighbourCount] = edgeDistances[edge];
+                neighbourCount++;
+            }
+            degrees[point] = kept;
+        }
+
+        /**
+         * Runs Dijkstra's algorithm from a neighbour of the point being contracted over the remaining map without
+         * that point, until the neighbours after it are settled, or up to the given distance or
+         * {@value #WITNESS_SETTLE_LIMIT} settled points. The roads and shortcuts leading to contracted points
+         * are dropped from the lists of the points it settles.
+         *
+         * @param index    the index of the neighbour in the neighbour arrays
+         * @param excluded the ID of the point being contracted
+         * @param limit    the longest route through the point being contracted
+         */
+        private void witnessSearch(int index, int excluded, int limit) {
+            int source = neighbours[index];
+            int remaining = neighbourCount - index - 1;
+            witnessStamp++;
+            witnessHeap.clear();
+            witnessDistances[source] = 0;
+            witnessStamps[source] = witnessStamp;
+            witnessHeap.push(source, 0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT && remaining > 0) {
+                int current = witnessHeap.poll();
+                if (witnessDistances[current] > limit) {
+                    break;
+                }
+                settled++;
+                if (neighbourStamps[current] == neighbourStamp && neighbourIndexes[current] > index) {
+                    remaining--;
+                }
+                int[] edges = adjacency[current];
+                int kept = 0;
+                for (int i = 0; i < degrees[current]; i++) {
+                    int edge = edges[i];
+                    int next = edgePointA[edge] == current ? edgePointB[edge] : edgePointA[edge];
+                    if (contracted[next]) continue;
+                    edges[kept++] = edge;
+                    if (next == excluded) continue;
+                    int newDist = witnessDistances[current] + edgeDistances[edge];
+                    if (newDist > limit) continue;
+                    if (witnessStamps[next] != witnessStamp || newDist < witnessDistances[next]) {
+                        witnessDistances[next] = newDist;
+                        witnessStamps[next] = witnessStamp;
+                        witnessHeap.push(next, newDist);
+                    }
+                }
+                degrees[current] = kept;
+            }
+        }
+
+        /**
+         * Adds a shortcut to the remaining map.
+         *
+         * @param pointA   the ID of the first point
+         * @param pointB   the ID of the second point
+         * @param middle   the ID of the point the shortcut goes around
+         * @param first    the road or shortcut from the first point to the middle point
+         * @param second   the road or shortcut from the middle point to the second point
+         * @param distance the distance of the shortcut
+         */
+        private void addShortcut(int pointA, int pointB, int middle, int first, int second, int distance) {
+            if (edgeCount == edgePointA.length) {
+                int capacity = 2 * edgeCount;
+                edgePointA = Arrays.copyOf(edgePointA, capacity);
+                edgePointB = Arrays.copyOf(edgePointB, capacity);
+                edgeDistances = Arrays.copyOf(edgeDistances, capacity);
+                edgeFirst = Arrays.copyOf(edgeFirst, capacity);
+                edgeSecond = Arrays.copyOf(edgeSecond, capacity);
+                edgeMiddle = Arrays.copyOf(edgeMiddle, capacity);
+            }
+            int edge = edgeCount++;
+            edgePointA[edge] = pointA;
+            edgePointB[edge] = pointB;
+            edgeDistances[edge] = distance;
+            edgeFirst[edge] = first;
+            edgeSecond[edge] = second;
+            edgeMiddle[edge] = middle;
+            append(pointA, edge);
+            append(pointB, edge);
+        }
+
+        /**
+         * Appends a road or shortcut to the list of a point.
+         *
+         * @param point the ID of the point
+         * @param edge  the index of the road or shortcut
+         */
+        private void append(int point, int edge) {
+            if (degrees[point] == adjacency[point].length) {
+                adjacency[point] = Arrays.copyOf(adjacency[point], Math.max(4, 2 * degrees[point]));
+            }
+            adjacency[point][degrees[point]++] = edge;
+        }
+    }
+}
@@ -12,12 +12,20 @@ public class MapAnalyzer {
      * to the file specified as the second command line argument.
      *
      * @param args Command line arguments where args[0] is the path to the input file and
-     *             args[1] is the path to the output file.
+     *             args[1] is the path to the output file. The system property {@code route.mode} may name the
+     *             {@link RouteQueryEngine.Mode} the fastest route is found with, e.g. {@code -Droute.mode=alt}, and
+     *             the system property {@code route.hierarchy} may name the file the contraction hierarchy of the
+     *             CH mode is read from, or written to if it does not exist or was built for another map; it is
+     *             not used in the other modes.
      */
     public static void main(String[] args) {
         Locale.setDefault(Locale.US);
         try {
             MapAnalyzerAlgorithm mapAnalyzer = new MapAnalyzerAlgorithm();
+            String mode = System.getProperty("route.mode");
+            if (mode != null) {
+                mapAnalyzer.setQueryMode(RouteQueryEngine.Mode.valueOf(mode.toUpperCase()));
+            }
             Scanner scanner = new Scanner(new File(args[0]));
             String[] points = scanner.nextLine().split("\t");
             String start = points[0];
@@ -29,6 +37,10 @@ public class MapAnalyzer {
             }
 
             scanner.close();
+            String hierarchy = System.getProperty("route.hierarchy");
+            if (hierarchy != null) {
+                mapAnalyzer.useHierarchyFile(hierarchy);
+            }
             String output = String.valueOf(mapAnalyzer.printOutput(start, end));
             FileOutput.writeToFile(args[1], output,false,false);
         }
@@ -1,17 +1,22 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
  /**
   * This class handles the analysis and manipulation of a road map.
-  * It maintains a list of roads and provides methods to add roads,
-  * find the minimum branching for the road network, and calculate the shortest path between two points.
+  * Roads are collected by a {@link RoadNetwork.Builder} as they are added, and frozen into a {@link RoadNetwork}
+  * with dense integer point IDs and a compressed sparse row adjacency the first time the map is analyzed.
+  * It provides methods to add roads, find the minimum branching for the road network,
+  * and calculate the shortest path between two points.
   */
     public class MapAnalyzerAlgorithm {
-    private final List<Road> roads = new ArrayList<>();
-
-    private final Map<String, List<Road>> adjList = new HashMap<>();
-    private final Map<String, List<Road>> orjAdjList = new HashMap<>();
+    private final RoadNetwork.Builder builder = new RoadNetwork.Builder();
+    private RoadNetwork network;
+    private RouteQueryEngine queryEngine;
+    private RouteQueryEngine.Mode queryMode = RouteQueryEngine.Mode.DIJKSTRA;
 
     /**
-    * Adds a road to the map and updates the adjacency lists for both directed and undirected graphs.
+    * Adds a road to the map. The road can be travelled in both directions.
     *
     * @param pointB   the starting point of the road
     * @param pointF   the ending point of the road
@@ -20,10 +25,61 @@ import java.util.*;
     */
 
     public void addRoad(String pointB, String pointF, int distance, int id) {
-     roads.add(new Road(pointB, pointF, distance, id));
-     adjList.computeIfAbsent(pointB, k -> new ArrayList<>()).add(new Road(pointB, pointF, distance, id));
-     adjList.computeIfAbsent(pointF, k -> new ArrayList<>()).add(new Road(pointF, pointB, distance, id));
-     orjAdjList.computeIfAbsent(pointB, k -> new ArrayList<>()).add(new Road(pointB, pointF, distance, id));
+     builder.addRoad(pointB, pointF, distance, id);
+     network = null;
+     queryEngine = null;
+    }
+    /**
+    * Returns the frozen network of all the roads added so far, freezing it if a road has been added since the last call.
+    *
+    * @return the road network of the map
+    */
+    public RoadNetwork getNetwork() {
+     if (network == null) {
+         network = builder.build();
+     }
+     return network;
+    }
+    /**
+    * Returns the query engine of the map, constructing it if a road has been added since the last call.
+    *
+    * @return the query engine of the road network of the map
+    */
+    public RouteQueryEngine getQueryEngine() {
+     if (queryEngine == null) {
+         queryEngine = new RouteQueryEngine(getNetwork());
+     }
+     return queryEngine;
+    }
+    /**
+    * Reads the contraction hierarchy the {@link RouteQueryEngine.Mode#CH} mode searches from a file, or builds it
+    * and writes it to the file if there is no such file or the file holds the hierarchy of another map, so the
+    * map is only contracted once. Nothing is read or built unless the query mode, which must be set first, is
+    * {@link RouteQueryEngine.Mode#CH}. Roads added afterwards are not part of the hierarchy, they discard it.
+    *
+    * @param path the path of the hierarchy file
+    * @throws IOException if the file can not be read or written, or is not a contraction hierarchy
+    */
+    public void useHierarchyFile(String path) throws IOException {
+     if (queryMode != RouteQueryEngine.Mode.CH) {
+         return;
+     }
+     RouteQueryEngine engine = getQueryEngine();
+     if (Files.exists(Paths.get(path)) && ContractionHierarchy.isBuiltFor(path, getNetwork())) {
+         engine.setHierarchy(ContractionHierarchy.read(path, getNetwork()));
+     } else {
+         engine.getHierarchy().write(path);
+     }
+    }
+    /**
+    * Sets how {@link #printOutput(String, String)} finds the fastest route in the original map. With
+    * {@link RouteQueryEngine.Mode#DIJKSTRA}, the default, it uses {@link #ShortestPath(String, String, List)};
+    * otherwise it asks the {@link RouteQueryEngine} of the map, which returns the same route in every mode.
+    *
+    * @param queryMode the way the fastest route is found
+    */
+    public void setQueryMode(RouteQueryEngine.Mode queryMode) {
+     this.queryMode = queryMode;
     }
     /**
     * Computes the minimum branching tree.
@@ -31,89 +87,149 @@ import java.util.*;
     * @return a list of roads that form the barely connected map.
     */
     public List<Road> minimumBranch() {
-     Collections.sort(roads);
-     Union uf = new Union();
-     List<Road> result = new ArrayList<>();
-
-     for (Road road : roads) {
-         uf.makeSet(road.getPointB());
-         uf.makeSet(road.getPointF());
+     RoadNetwork map = getNetwork();
+     int roadCount = map.getRoadCount();
+     long[] keys = new long[roadCount];
+     int[] order = new int[roadCount];
+     for (int road = 0; road < roadCount; road++) {
+         // Orders by distance and then by ID, like Road.compareTo
+         keys[road] = ((long) map.getRoadDistance(road) << 32) | ((map.getRoadId(road) ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+         order[road] = road;
      }
+     sortStable(order, keys);
+     Union uf = new Union(map.getPointCount());
+     List<Road> result = new ArrayList<>();
 
-     for (Road road : roads) {
-         if (!Objects.equals(uf.find(road.getPointB()), uf.find(road.getPointF()))) {
-             result.add(road);
-             uf.union(road.getPointB(), road.getPointF());
+     for (int road : order) {
+         int pointB = map.getRoadPointB(road);
+         int pointF = map.getRoadPointF(road);
+         if (uf.find(pointB) != uf.find(pointF)) {
+             result.add(map.getRoad(road));
+             uf.union(pointB, pointF);
          }
      }
 
      return result;
     }
     /**
+    * Sorts road indexes by their keys with a bottom-up merge sort. Roads with equal keys keep their order,
+    * like the roads of a list sorted with {@link Collections#sort(List)}.
+    *
+    * @param order the road indexes to be sorted
+    * @param keys  the sort key of every road, indexed by road
+    */
+    private static void sortStable(int[] order, long[] keys) {
+     int[] source = order;
+     int[] target = new int[order.length];
+     for (int width = 1; width < order.length; width *= 2) {
+         for (int low = 0; low < order.length; low += 2 * width) {
+             int middle = Math.min(low + width, order.length);
+             int high = Math.min(low + 2 * width, order.length);
+             int left = low;
+             int right = middle;
+             for (int i = low; i < high; i++) {
+                 if (left < middle && (right >= high || keys[source[left]] <= keys[source[right]])) {
+                     target[i] = source[left++];
+                 } else {
+                     target[i] = source[right++];
+                 }
+             }
+         }
+         int[] swap = source;
+         source = target;
+         target = swap;
+     }
+     if (source != order) {
+         System.arraycopy(source, 0, order, 0, order.length);
+     }
+    }
+    /**
     * Calculates the shortest path between two points.
     * Optionally uses a list of roads to consider.
     *
     * @param start starting point of the path
     * @param end   ending point of the path
-    * @param mb   list of roads to use for calculating the path; if null, uses the original adjacency list
+    * @param mb   list of roads to use for calculating the path; if null, uses all the roads of the map
     * @return a list of roads representing the shortest path from start to end
+    * @throws IllegalArgumentException if no road of the considered roads starts or ends at the starting point
     */
     public List<Road> ShortestPath(String start, String end, List<Road> mb) {
-     Map<String, List<Road>> newAdjList = mb == null ? adjList : new HashMap<>();
-     if (mb != null) {
-         for (Road road : mb) {
-             newAdjList.computeIfAbsent(road.getPointB(), k -> new ArrayList<>()).add(road);
-             newAdjList.computeIfAbsent(road.getPointF(), k -> new ArrayList<>()).add(new Road(road.getPointF(), road.getPointB(), road.getDistance(), road.getId()));
-         }
+     RoadNetwork map = mb == null ? getNetwork() : RoadNetwork.of(mb);
+     int source = map.getPointId(start);
+     if (source < 0) {
+         throw new IllegalArgumentException("There is no road at " + start);
      }
+     int[] path = shortestPathTree(map, source);
+     return route(map, path, source, map.getPointId(end));
+    }
+    /**
+    * Runs Dijkstra's algorithm from a point over the whole network. Points are settled in the order of their distance
+    * and then of the ID of the road they were reached by, and a point keeps the first road that reached it with its
+    * final distance. The points waiting to be settled are kept in a {@link PointHeap} whose keys are lowered in place,
+    * so the search only allocates its arrays once and nothing per edge.
+    *
+    * @param map    the network to be searched
+    * @param source the ID of the starting point
+    * @return the edge every point was reached by, indexed by point; -1 for the starting point and the unreachable points
+    */
+    static int[] shortestPathTree(RoadNetwork map, int source) {
+     int[] offsets = map.getOffsets();
+     int[] targets = map.getTargets();
+     int[] edgeDistances = map.getDistances();
+     int[] edgeRoads = map.getRoads();
 
+     int[] distances = new int[map.getPointCount()];
+     int[] path = new int[map.getPointCount()];
+     boolean[] visited = new boolean[map.getPointCount()];
+     Arrays.fill(distances, Integer.MAX_VALUE);
+     Arrays.fill(path, -1);
+     PointHeap pq = new PointHeap(map.getPointCount());
 
-     Map<String, Integer> distances = new HashMap<>();
-     Map<String, Road> path = new HashMap<>();
-     PriorityQueue<Road> pq = new PriorityQueue<>((r1, r2) -> {if(r1.getDistance() != r2.getDistance()) {
-         return r1.getDistance() - r2.getDistance();
-     }
-         return r1.getId() - r2.getId();
-    });
-     Set<String> visited = new HashSet<>();
-
-     for (String vertex : newAdjList.keySet()) {
-         distances.put(vertex, Integer.MAX_VALUE);
-     }
-     distances.put(start, 0);
-     pq.add(new Road(start, start, 0, -1));
+     distances[source] = 0;
+     pq.push(source, PointHeap.key(0, -1));
 
      while (!pq.isEmpty()) {
-         Road current = pq.poll();
-         if (!visited.add(current.getPointF())) continue;
-         for (Road edge : newAdjList.get(current.getPointF())) {
-             if (visited.contains(edge.getPointF())) continue;
-             int newDist = distances.get(current.getPointF()) + edge.getDistance();
-             if (newDist < distances.get(edge.getPointF())) {
-                 distances.put(edge.getPointF(), newDist);
-                 path.put(edge.getPointF(), edge);
-                 pq.add(new Road(current.getPointB(), edge.getPointF(), newDist, edge.getId()));
+         int current = pq.poll();
+         visited[current] = true;
+         for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+             int next = targets[edge];
+             if (visited[next]) continue;
+             int newDist = distances[current] + edgeDistances[edge];
+             if (newDist < distances[next]) {
+                 distances[next] = newDist;
+                 path[next] = edge;
+                 pq.push(next, PointHeap.key(newDist, map.getRoadId(edgeRoads[edge])));
              }
          }
      }
-
+     return path;
+    }
+    /**
+    * Rebuilds the route to a point by following the edges the points were reached by back to the starting point.
+    * Every edge knows the road it belongs to, so each step takes constant time and the roads are returned
+    * in their original orientation.
+    *
+    * @param map    the network that was searched
+    * @param path   the edge every point was reached by, see {@link #shortestPathTree(RoadNetwork, int)}
+    * @param source the ID of the starting point
+    * @param target the ID of the ending point, or -1 if it is not a point of the network
+    * @return the roads of the route from the starting point to the ending point, empty if there is no route
+    */
+    static List<Road> route(RoadNetwork map, int[] path, int source, int target) {
+     int[] edgeRoads = map.getRoads();
      List<Road> route = new ArrayList<>();
-     String current = end;
-     while (!current.equals(start)) {
-         Road step = path.get(current);
-         if (step == null) {
+     int current = target;
+     while (current >= 0 && current != source) {
+         int step = path[current];
+         if (step < 0) {
              break;  // No path found
          }
 
-         for(List<Road> adj : orjAdjList.values()) {
-             for (Road road : adj) {
-                 if (road.getId() == (step.getId())) {
-                     route.add(road);
-                 }
-             }
-         }
+         int road = edgeRoads[step];
+         route.add(map.getRoad(road));
 
-         current = step.getPointB();
+         // The step leads to the current point, so it leaves from its other point
+         current = map.getRoadPointB(road) == current ? map.getRoadPointF(road) : map.getRoadPointB(road);
      }
      Collections.reverse(route);
      return route;
@@ -128,7 +244,7 @@ import java.util.*;
     * @return a StringBuilder containing the detailed analysis
     */
     public StringBuilder printOutput(String start, String end) {
-     List<Road> fastestRoute = ShortestPath(start, end, null);
+     List<Road> fastestRoute = queryMode == RouteQueryEngine.Mode.DIJKSTRA ? ShortestPath(start, end, null) : getQueryEngine().query(start, end, queryMode);
      List<Road> BCM = minimumBranch();
      List<Road> fastestRouteInMB = ShortestPath(start, end, BCM);
 
@@ -138,7 +254,12 @@ import java.util.*;
      int barelyConnectedMapDistance = fastestRouteInMB.stream().mapToInt(Road::getDistance).sum();
 
      // Calculate material usage
-     double originalMaterialUsage = roads.stream().mapToInt(Road::getDistance).sum();
+     RoadNetwork map = getNetwork();
+     int totalDistance = 0;
+     for (int road = 0; road < map.getRoadCount(); road++) {
+         totalDistance += map.getRoadDistance(road);
+     }
+     double originalMaterialUsage = totalDistance;
      double bcmMaterialUsage = BCM.stream().mapToInt(Road::getDistance).sum();
 
      // Output the results
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+/**
+ * This class is a priority queue of the points of a {@link RoadNetwork} for Dijkstra's algorithm.
+ * It is a 4-ary min-heap over the dense point IDs with true decrease-key: every point is in the heap at most once,
+ * and the position of every point is tracked so its key can be lowered in place. Keys are primitive longs, so
+ * adding and updating points does not create any objects.
+ * <p>
+ * Keys made by {@link #key(int, int)} order points by their distance and then by the ID of the road they were
+ * reached by, the order the searches of {@link MapAnalyzerAlgorithm} settle points in.
+ */
+public class PointHeap {
+    private static final int ARITY = 4;
+
+    private final int[] heap;
+    private final int[] positions;
+    private final long[] keys;
+    private int size;
+
+    /**
+     * Constructs an empty heap for the points with IDs from 0 to pointCount minus one.
+     *
+     * @param pointCount the number of points
+     */
+    public PointHeap(int pointCount) {
+        heap = new int[pointCount];
+        positions = new int[pointCount];
+        keys = new long[pointCount];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Makes the key of a point from its distance and the ID of the road it was reached by.
+     *
+     * @param distance the distance of the point
+     * @param roadId   the ID of the road the point was reached by, -1 for the starting point
+     * @return a key that orders points by distance and then by road ID
+     */
+    public static long key(int distance, int roadId) {
+        return ((long) distance << 32) | ((roadId ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Checks whether the heap is empty.
+     *
+     * @return true if there are no points in the heap
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether a point is in the heap.
+     *
+     * @param point the ID of the point
+     * @return true if the point has been added and not polled yet
+     */
+    public boolean contains(int point) {
+        return positions[point] >= 0;
+    }
+
+    /**
+     * Returns the point with the lowest key without removing it.
+     *
+     * @return the ID of the point
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Returns the key a point was added with, or last lowered to.
+     *
+     * @param point the ID of the point
+     * @return the key of the point
+     */
+    public long getKey(int point) {
+        return keys[point];
+    }
+
+    /**
+     * Adds a point with the given key, or lowers the key of a point that is already in the heap.
+     * A key that is not lower than the current key of the point is ignored.
+     *
+     * @param point the ID of the point
+     * @param key   the key of the point
+     */
+    public void push(int point, long key) {
+        int position = positions[point];
+        if (position < 0) {
+            position = size++;
+        } else if (key >= keys[point]) {
+            return;
+        }
+        keys[point] = key;
+        siftUp(point, position);
+    }
+
+    /**
+     * Removes the point with the lowest key.
+     *
+     * @return the ID of the point
+     */
+    public int poll() {
+        int first = heap[0];
+        positions[first] = -1;
+        int last = heap[--size];
+        if (size > 0) {
+            siftDown(last, 0);
+        }
+        return first;
+    }
+
+    /**
+     * Removes every point from the heap, in time proportional to the number of points in it.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Moves a point up from the given position until its parent has a lower key.
+     *
+     * @param point    the ID of the point
+     * @param position the position the point starts from
+     */
+    private void siftUp(int point, int position) {
+        long key = keys[point];
+        while (position > 0) {
+            int parentPosition = (position - 1) / ARITY;
+            int parent = heap[parentPosition];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[position] = parent;
+            positions[parent] = position;
+            position = parentPosition;
+        }
+        heap[position] = point;
+        positions[point] = position;
+    }
+
+    /**
+     * Moves a point down from the given position until none of its children has a lower key.
+     *
+     * @param point    the ID of the point
+     * @param position the position the point starts from
+     */
+    private void siftDown(int point, int position) {
+        long key = keys[point];
+        while (true) {
+            int firstChild = position * ARITY + 1;
+            if (firstChild >= size) {
+                break;
+            }
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int child = firstChild;
+            long childKey = keys[heap[firstChild]];
+            for (int i = firstChild + 1; i < lastChild; i++) {
+                long k = keys[heap[i]];
+                if (k < childKey) {
+                    child = i;
+                    childKey = k;
+                }
+            }
+            if (childKey >= key) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[child]] = position;
+            position = child;
+        }
+        heap[position] = point;
+        positions[point] = position;
+    }
+}
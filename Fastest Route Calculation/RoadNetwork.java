@@ -0,0 +1,267 @@
+import java.util.*;
+
+/**
+ * This class is the frozen, integer-indexed form of a road map that the searches run on.
+ * Point names are interned to dense IDs starting from 0 and the roads are kept in primitive columns,
+ * in the order they were added and in their original orientation. A road can be travelled both ways,
+ * so every road is stored twice in the adjacency, once leaving each of its points.
+ * The adjacency is a compressed sparse row structure: the roads leaving point {@code p} are the entries
+ * {@code offsets[p]} to {@code offsets[p + 1] - 1} of the edge arrays, which hold the point the road leads to,
+ * its distance and the index of the road in the road columns. The roads leaving a point are in the order the
+ * roads were added, the same order as the per-point road lists this structure replaces.
+ */
+public class RoadNetwork {
+    private final String[] points;
+    private final Map<String, Integer> pointIds;
+
+    private final int[] roadPointB;
+    private final int[] roadPointF;
+    private final int[] roadDistances;
+    private final int[] roadIds;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] distances;
+    private final int[] roads;
+
+    /**
+     * Freezes the roads collected by a builder into the compressed sparse row adjacency.
+     *
+     * @param builder the builder holding the points and the roads
+     */
+    private RoadNetwork(Builder builder) {
+        int pointCount = builder.points.size();
+        int roadCount = builder.roadCount;
+        this.points = builder.points.toArray(new String[0]);
+        this.pointIds = builder.pointIds;
+        this.roadPointB = Arrays.copyOf(builder.roadPointB, roadCount);
+        this.roadPointF = Arrays.copyOf(builder.roadPointF, roadCount);
+        this.roadDistances = Arrays.copyOf(builder.roadDistances, roadCount);
+        this.roadIds = Arrays.copyOf(builder.roadIds, roadCount);
+
+        offsets = new int[pointCount + 1];
+        for (int road = 0; road < roadCount; road++) {
+            offsets[roadPointB[road] + 1]++;
+            offsets[roadPointF[road] + 1]++;
+        }
+        for (int point = 0; point < pointCount; point++) {
+            offsets[point + 1] += offsets[point];
+        }
+        targets = new int[2 * roadCount];
+        distances = new int[2 * roadCount];
+        roads = new int[2 * roadCount];
+        int[] next = Arrays.copyOf(offsets, pointCount);
+        for (int road = 0; road < roadCount; road++) {
+            int edge = next[roadPointB[road]]++;
+            targets[edge] = roadPointF[road];
+            distances[edge] = roadDistances[road];
+            roads[edge] = road;
+            edge = next[roadPointF[road]]++;
+            targets[edge] = roadPointB[road];
+            distances[edge] = roadDistances[road];
+            roads[edge] = road;
+        }
+    }
+
+    /**
+     * Builds a network of the given roads, in their given order and orientation.
+     *
+     * @param roadList the roads of the network
+     * @return the frozen network
+     */
+    public static RoadNetwork of(List<Road> roadList) {
+        Builder builder = new Builder();
+        for (Road road : roadList) {
+            builder.addRoad(road.getPointB(), road.getPointF(), road.getDistance(), road.getId());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of points of the network.
+     *
+     * @return the number of points, whose IDs are 0 to this number minus one
+     */
+    public int getPointCount() {
+        return points.length;
+    }
+
+    /**
+     * Returns the ID of the point with the given name.
+     *
+     * @param name the name of the point
+     * @return the ID of the point, or -1 if no road of the network starts or ends at it
+     */
+    public int getPointId(String name) {
+        Integer id = pointIds.get(name);
+        return id == null || id >= points.length ? -1 : id;
+    }
+
+    /**
+     * Returns the name of the point with the given ID.
+     *
+     * @param point the ID of the point
+     * @return the name of the point
+     */
+    public String getPointName(int point) {
+        return points[point];
+    }
+
+    /**
+     * Returns the number of roads of the network.
+     *
+     * @return the number of roads, whose indexes are 0 to this number minus one
+     */
+    public int getRoadCount() {
+        return roadIds.length;
+    }
+
+    /**
+     * Creates a road object for the road at the given index, in its original orientation.
+     *
+     * @param road the index of the road
+     * @return the road
+     */
+    public Road getRoad(int road) {
+        return new Road(points[roadPointB[road]], points[roadPointF[road]], roadDistances[road], roadIds[road]);
+    }
+
+    /**
+     * Returns the starting point of the road at the given index.
+     *
+     * @param road the index of the road
+     * @return the ID of the starting point
+     */
+    public int getRoadPointB(int road) {
+        return roadPointB[road];
+    }
+
+    /**
+     * Returns the ending point of the road at the given index.
+     *
+     * @param road the index of the road
+     * @return the ID of the ending point
+     */
+    public int getRoadPointF(int road) {
+        return roadPointF[road];
+    }
+
+    /**
+     * Returns the distance of the road at the given index.
+     *
+     * @param road the index of the road
+     * @return the distance of the road
+     */
+    public int getRoadDistance(int road) {
+        return roadDistances[road];
+    }
+
+    /**
+     * Returns the identifier of the road at the given index.
+     *
+     * @param road the index of the road
+     * @return the identifier of the road
+     */
+    public int getRoadId(int road) {
+        return roadIds[road];
+    }
+
+    /**
+     * Returns the start of the edges of every point. The arrays returned by this class are not copies and must not be changed.
+     *
+     * @return the index of the first edge of every point, followed by the number of edges
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the point every edge leads to.
+     *
+     * @return the IDs of the points the edges lead to
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Returns the distance of every edge.
+     *
+     * @return the distances of the edges
+     */
+    public int[] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Returns the road of every edge.
+     *
+     * @return the indexes of the roads the edges belong to
+     */
+    public int[] getRoads() {
+        return roads;
+    }
+
+    /**
+     * This class collects the roads of a network before it is frozen. Point names are interned as the roads are added,
+     * and the roads are appended to primitive columns, so adding a road does not create any objects for it.
+     */
+    public static class Builder {
+        private final Map<String, Integer> pointIds = new HashMap<>();
+        private final List<String> points = new ArrayList<>();
+        private int roadCount;
+        private int[] roadPointB = new int[16];
+        private int[] roadPointF = new int[16];
+        private int[] roadDistances = new int[16];
+        private int[] roadIds = new int[16];
+
+        /**
+         * Adds a road to the network.
+         *
+         * @param pointB   the starting point of the road
+         * @param pointF   the ending point of the road
+         * @param distance the distance of the road
+         * @param id       the identifier for the road
+         */
+        public void addRoad(String pointB, String pointF, int distance, int id) {
+            if (roadCount == roadIds.length) {
+                int capacity = roadCount * 2;
+                roadPointB = Arrays.copyOf(roadPointB, capacity);
+                roadPointF = Arrays.copyOf(roadPointF, capacity);
+                roadDistances = Arrays.copyOf(roadDistances, capacity);
+                roadIds = Arrays.copyOf(roadIds, capacity);
+            }
+            roadPointB[roadCount] = intern(pointB);
+            roadPointF[roadCount] = intern(pointF);
+            roadDistances[roadCount] = distance;
+            roadIds[roadCount] = id;
+            roadCount++;
+        }
+
+        /**
+         * Returns the ID of the point with the given name, assigning the next ID to a new point.
+         *
+         * @param name the name of the point
+         * @return the ID of the point
+         */
+        private int intern(String name) {
+            Integer id = pointIds.get(name);
+            if (id == null) {
+                id = points.size();
+                pointIds.put(name, id);
+                points.add(name);
+            }
+            return id;
+        }
+
+        /**
+         * Freezes the roads added so far into a network. More roads may be added to the builder afterwards,
+         * they are only part of the networks built after them.
+         *
+         * @return the frozen network
+         */
+        public RoadNetwork build() {
+            return new RoadNetwork(this);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+import java.util.*;
+
+/**
+ * This class answers many point-to-point fastest route queries on the same {@link RoadNetwork}.
+ * Instead of settling the whole network like {@link MapAnalyzerAlgorithm#ShortestPath(String, String, List)},
+ * a query can run in one of these modes:
+ * <ul>
+ *     <li>{@link Mode#DIJKSTRA} stops Dijkstra's algorithm as soon as the ending point is settled,</li>
+ *     <li>{@link Mode#BIDIRECTIONAL} searches from both points at once until the two searches can not find
+ *     a shorter route,</li>
+ *     <li>{@link Mode#ALT} runs A* from the starting point, guided by lower bounds from the distances to a few
+ *     landmark points and the triangle inequality. The landmarks are chosen and their distances computed once,
+ *     by {@link #prepareLandmarks()} or the first ALT query.</li>
+ *     <li>{@link Mode#CH} searches the {@link ContractionHierarchy} of the map, which is built by
+ *     {@link #prepareHierarchy()} or the first CH query unless one is given to {@link #setHierarchy}.</li>
+ * </ul>
+ * The routes are identical to those of {@code ShortestPath}, including which of several equally short routes is
+ * returned. The bidirectional and ALT modes keep searching until every point of every shortest route has been
+ * settled. The route is then picked by a Dijkstra search with the same tie-breaking as {@code ShortestPath} that
+ * only visits those points: the forward half of the bidirectional search goes on into them, and the ALT mode runs
+ * one more search over the points A* settled. The CH mode finds the length of the fastest route in the hierarchy
+ * and then runs the same tie-breaking search over the roads of the map that lie on a route of that length.
+ * <p>
+ * The search state is allocated once per engine and reused by every query, so an engine must not be used
+ * by several threads at the same time.
+ */
+public class RouteQueryEngine {
+
+    /**
+     * The ways a query can be answered.
+     */
+    public enum Mode {
+        DIJKSTRA, BIDIRECTIONAL, ALT, CH
+    }
+
+    /**
+     * Default number of landmarks of the ALT mode.
+     */
+    public static final int DEFAULT_LANDMARK_COUNT = 8;
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final RoadNetwork map;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] edgeDistances;
+    private final int[] edgeRoads;
+
+    private final Search forward;
+    private final Search backward;
+    private final Search exact;
+    private int stamp;
+    private int settledCount;
+
+    private final int landmarkCount;
+    private int[] landmarks;
+    private int[][] landmarkDistances;
+    private int[] usableLandmarks;
+    private int usableCount;
+    private int target;
+
+    private ContractionHierarchy hierarchy;
+
+    /**
+     * Constructs an engine with the default number of landmarks.
+     *
+     * @param map the network the queries are answered on
+     */
+    public RouteQueryEngine(RoadNetwork map) {
+        this(map, DEFAULT_LANDMARK_COUNT);
+    }
+
+    /**
+     * Constructs an engine.
+     *
+     * @param map           the network the queries are answered on
+     * @param landmarkCount the number of landmarks of the ALT mode; fewer are used if the map has fewer points
+     */
+    public RouteQueryEngine(RoadNetwork map, int landmarkCount) {
+        this.map = map;
+        this.offsets = map.getOffsets();
+        this.targets = map.getTargets();
+        this.edgeDistances = map.getDistances();
+        this.edgeRoads = map.getRoads();
+        int pointCount = map.getPointCount();
+        this.forward = new Search(pointCount);
+        this.backward = new Search(pointCount);
+        this.exact = new Search(pointCount);
+        this.landmarkCount = landmarkCount;
+    }
+
+    /**
+     * Chooses the landmarks of the ALT mode and computes their distances to every point, unless it has been done.
+     * The landmarks are chosen one by one as the point farthest from the landmarks chosen before, starting from
+     * the point farthest from point 0, so they lie around the edges of the map where their lower bounds are the tightest.
+     * Each landmark takes a full Dijkstra search and an array of distances.
+     */
+    public void prepareLandmarks() {
+        if (landmarks != null) {
+            return;
+        }
+        int pointCount = map.getPointCount();
+        int[] chosen = new int[Math.max(0, Math.min(landmarkCount, pointCount))];
+        int[][] distances = new int[chosen.length][];
+        int count = 0;
+        if (chosen.length > 0) {
+            int[] nearest = distancesFrom(0);
+            int next = farthest(nearest);
+            Arrays.fill(nearest, INFINITY);
+            while (count < chosen.length && next >= 0) {
+                chosen[count] = next;
+                distances[count] = distancesFrom(next);
+                for (int point = 0; point < pointCount; point++) {
+                    nearest[point] = Math.min(nearest[point], distances[count][point]);
+                }
+                count++;
+                next = farthest(nearest);
+            }
+        }
+        this.landmarks = Arrays.copyOf(chosen, count);
+        this.landmarkDistances = Arrays.copyOf(distances, count);
+        this.usableLandmarks = new int[count];
+    }
+
+    /**
+     * Returns the points chosen as landmarks, choosing them if it has not been done.
+     *
+     * @return the IDs of the landmarks
+     */
+    public int[] getLandmarks() {
+        prepareLandmarks();
+        return landmarks.clone();
+    }
+
+    /**
+     * Builds the contraction hierarchy of the CH mode, unless the engine has one.
+     */
+    public void prepareHierarchy() {
+        if (hierarchy == null) {
+            hierarchy = ContractionHierarchy.build(map);
+        }
+    }
+
+    /**
+     * Returns the contraction hierarchy of the CH mode, building it if the engine does not have one.
+     *
+     * @return the hierarchy of the map
+     */
+    public ContractionHierarchy getHierarchy() {
+        prepareHierarchy();
+        return hierarchy;
+    }
+
+    /**
+     * Sets the contraction hierarchy of the CH mode, e.g. one read from a file.
+     *
+     * @param hierarchy the hierarchy of the map
+     * @throws IllegalArgumentException if the hierarchy was built for another network
+     */
+    public void setHierarchy(ContractionHierarchy hierarchy) {
+        if (hierarchy.getNetwork() != map) {
+            throw new IllegalArgumentException("The hierarchy was built for another network");
+        }
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Returns the number of points settled by the last query, counting every search it ran.
+     *
+     * @return the number of settled points
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Finds the fastest route between two points.
+     *
+     * @param start starting point of the path
+     * @param end   ending point of the path
+     * @param mode  the way the query is answered
+     * @return a list of roads representing the shortest path from start to end, the same as {@code ShortestPath} returns
+     * @throws IllegalArgumentException if no road of the map starts or ends at the starting point
+     */
+    public List<Road> query(String start, String end, Mode mode) {
+        int source = map.getPointId(start);
+        if (source < 0) {
+            throw new IllegalArgumentException("There is no road at " + start);
+        }
+        return query(source, map.getPointId(end), mode);
+    }
+
+    /**
+     * Finds the fastest route between two points.
+     *
+     * @param source the ID of the starting point
+     * @param target the ID of the ending point, or -1 if it is not a point of the map
+     * @param mode   the way the query is answered
+     * @return a list of roads representing the shortest path from source to target, empty if there is none
+     */
+    public List<Road> query(int source, int target, Mode mode) {
+        nextStamp();
+        settledCount = 0;
+        if (target < 0 || target == source) {
+            return new ArrayList<>();
+        }
+        switch (mode) {
+            case BIDIRECTIONAL:
+                return bidirectional(source, target) ? MapAnalyzerAlgorithm.route(map, forward.edges, source, target) : new ArrayList<>();
+            case ALT:
+                return alt(source, target) && exactSearch(source, target)
+                        ? MapAnalyzerAlgorithm.route(map, exact.edges, source, target) : new ArrayList<>();
+            case CH:
+                prepareHierarchy();
+                List<Road> route = hierarchy.query(source, target);
+                settledCount = hierarchy.getSettledCount();
+                return route;
+            default:
+                return dijkstra(source, target) ? MapAnalyzerAlgorithm.route(map, forward.edges, source, target) : new ArrayList<>();
+        }
+    }
+
+    /**
+     * Searches from both points, always extending the search whose next point is closer. The searches continue
+     * until the sum of their next distances exceeds the shortest route found, so every point of every
+     * shortest route is settled by at least one of them.
+     * <p>
+     * The forward search uses the keys of {@code ShortestPath}, so the points it settles have the same predecessor
+     * edges. Once the searches are done, the forward search goes on into the points settled backward that lie on
+     * a shortest route, which are the only points whose distance plus their exact distance to the ending point
+     * is the shortest distance, until it settles the ending point. The rest of the map is not visited again.
+     *
+     * @param source the ID of the starting point
+     * @param target the ID of the ending point
+     * @return true if the points are connected, then the forward search holds the route
+     */
+    private boolean bidirectional(int source, int target) {
+        forward.start(source, PointHeap.key(0, -1));
+        backward.start(target, PointHeap.key(0, -1));
+        long best = Long.MAX_VALUE;
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+            int nextForward = forward.distances[forward.heap.peek()];
+            int nextBackward = backward.distances[backward.heap.peek()];
+            if ((long) nextForward + nextBackward > best) {
+                break;
+            }
+            boolean isForward = nextForward <= nextBackward;
+            Search search = isForward ? forward : backward;
+            Search other = isForward ? backward : forward;
+            int current = search.settleNext();
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = targets[edge];
+                if (search.isSettled(next)) continue;
+                int newDist = search.distances[current] + edgeDistances[edge];
+                if (!search.isReached(next) || newDist < search.distances[next]) {
+                    search.reach(next, newDist, edge, PointHeap.key(newDist, isForward ? map.getRoadId(edgeRoads[edge]) : -1));
+                }
+                if (other.isReached(next)) {
+                    best = Math.min(best, (long) newDist + other.distances[next]);
+                }
+            }
+        }
+        if (best == Long.MAX_VALUE) {
+            return false;
+        }
+
+        while (!forward.isSettled(target) && !forward.heap.isEmpty()) {
+            int current = forward.settleNext();
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = targets[edge];
+                if (forward.isSettled(next)) continue;
+                if (next != target && !backward.isSettled(next)) continue;
+                int newDist = forward.distances[current] + edgeDistances[edge];
+                if (next != target && (long) newDist + backward.distances[next] > best) continue;
+                if (!forward.isReached(next) || newDist < forward.distances[next]) {
+                    forward.reach(next, newDist, edge, PointHeap.key(newDist, map.getRoadId(edgeRoads[edge])));
+                }
+            }
+        }
+        return forward.isSettled(target);
+    }
+
+    /**
+     * Runs A* from the starting point with the landmark lower bounds as the potential. The potential is consistent,
+     * so points are settled with their exact distances. The search continues after the ending point is settled
+     * until the next point can not be on a shortest route, so every point of every shortest route is settled.
+     *
+     * @param source the ID of the starting point
+     * @param target the ID of the ending point
+     * @return true if the points are connected
+     */
+    private boolean alt(int source, int target) {
+        if (landmarks == null) {
+            prepareLandmarks();
+            nextStamp();
+            settledCount = 0;
+        }
+        this.target = target;
+        usableCount = 0;
+        for (int i = 0; i < landmarks.length; i++) {
+            if (landmarkDistances[i][target] != INFINITY) {
+                usableLandmarks[usableCount++] = i;
+            }
+        }
+        forward.start(source, PointHeap.key(potential(source), -1));
+        long best = Long.MAX_VALUE;
+        while (!forward.heap.isEmpty()) {
+            if (forward.heap.getKey(forward.heap.peek()) >> 32 > best) {
+                break;
+            }
+            int current = forward.settleNext();
+            if (current == target) {
+                best = forward.distances[target];
+            }
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = targets[edge];
+                if (forward.isSettled(next)) continue;
+                int newDist = forward.distances[current] + edgeDistances[edge];
+                if (!forward.isReached(next) || newDist < forward.distances[next]) {
+                    forward.reach(next, newDist, edge, PointHeap.key(newDist + potential(next), -1));
+                }
+            }
+        }
+        return best != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the lower bound of the distance from a point to the ending point of the current ALT query.
+     * By the triangle inequality, the distance between two points is at least the difference of their distances
+     * to any landmark that both of them are connected to.
+     *
+     * @param point the ID of the point
+     * @return the largest lower bound given by the landmarks
+     */
+    private int potential(int point) {
+        int bound = 0;
+        for (int i = 0; i < usableCount; i++) {
+            int[] distances = landmarkDistances[usableLandmarks[i]];
+            if (distances[point] != INFINITY) {
+                bound = Math.max(bound, Math.abs(distances[target] - distances[point]));
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from the starting point with the tie-breaking of {@code ShortestPath},
+     * until the ending point is settled.
+     *
+     * @param source the ID of the starting point
+     * @param target the ID of the ending point
+     * @return true if the ending point was reached, then the forward search holds the route
+     */
+    private boolean dijkstra(int source, int target) {
+        forward.start(source, PointHeap.key(0, -1));
+        while (!forward.heap.isEmpty()) {
+            int current = forward.settleNext();
+            if (current == target) {
+                return true;
+            }
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = targets[edge];
+                if (forward.isSettled(next)) continue;
+                int newDist = forward.distances[current] + edgeDistances[edge];
+                if (!forward.isReached(next) || newDist < forward.distances[next]) {
+                    forward.reach(next, newDist, edge, PointHeap.key(newDist, map.getRoadId(edgeRoads[edge])));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from the starting point with the tie-breaking of {@code ShortestPath} over the points
+     * settled by the preceding A* search, until the ending point is settled. The A* search settles its points in
+     * another order, so it does not pick the same route among equally short ones, but it settles every point of
+     * every shortest route, so this search does.
+     *
+     * @param source the ID of the starting point
+     * @param target the ID of the ending point
+     * @return true if the ending point was reached, then the exact search holds the route
+     */
+    private boolean exactSearch(int source, int target) {
+        exact.start(source, PointHeap.key(0, -1));
+        while (!exact.heap.isEmpty()) {
+            int current = exact.settleNext();
+            if (current == target) {
+                return true;
+            }
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = targets[edge];
+                if (exact.isSettled(next) || !forward.isSettled(next)) continue;
+                int newDist = exact.distances[current] + edgeDistances[edge];
+                if (!exact.isReached(next) || newDist < exact.distances[next]) {
+                    exact.reach(next, newDist, edge, PointHeap.key(newDist, map.getRoadId(edgeRoads[edge])));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the distance of every point from the given point with a full Dijkstra search.
+     *
+     * @param source the ID of the point
+     * @return the distances, {@link #INFINITY} for the points that are not connected to it
+     */
+    private int[] distancesFrom(int source) {
+        nextStamp();
+        forward.start(source, PointHeap.key(0, -1));
+        while (!forward.heap.isEmpty()) {
+            int current = forward.settleNext();
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int next = targets[edge];
+                if (forward.isSettled(next)) continue;
+                int newDist = forward.distances[current] + edgeDistances[edge];
+                if (!forward.isReached(next) || newDist < forward.distances[next]) {
+                    forward.reach(next, newDist, edge, PointHeap.key(newDist, -1));
+                }
+            }
+        }
+        int[] distances = new int[map.getPointCount()];
+        for (int point = 0; point < distances.length; point++) {
+            distances[point] = forward.isSettled(point) ? forward.distances[point] : INFINITY;
+        }
+        return distances;
+    }
+
+    /**
+     * Finds the point with the largest finite, non-zero distance.
+     *
+     * @param distances the distance of every point
+     * @return the ID of the farthest point with the lowest ID, or -1 if every point is at distance 0 or not connected
+     */
+    private static int farthest(int[] distances) {
+        int farthest = -1;
+        for (int point = 0; point < distances.length; point++) {
+            int distance = distances[point];
+            if (distance != INFINITY && distance > 0 && (farthest < 0 || distance > distances[farthest])) {
+                farthest = point;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Starts a new query. The search arrays are stamped with the query they were written by, so they do not have
+     * to be cleared between queries.
+     */
+    private void nextStamp() {
+        if (stamp == Integer.MAX_VALUE) {
+            forward.reset();
+            backward.reset();
+            exact.reset();
+            stamp = 0;
+        }
+        stamp++;
+    }
+
+    /**
+     * The state of a single search: the tentative distance of every point, the edge it was reached by,
+     * the queries it was reached and settled in, and the heap of the points waiting to be settled.
+     */
+    private final class Search {
+        private final int[] distances;
+        private final int[] edges;
+        private final int[] reached;
+        private final int[] settled;
+        private final PointHeap heap;
+
+        private Search(int pointCount) {
+            distances = new int[pointCount];
+            edges = new int[pointCount];
+            reached = new int[pointCount];
+            settled = new int[pointCount];
+            heap = new PointHeap(pointCount);
+        }
+
+        private boolean isReached(int point) {
+            return reached[point] == stamp;
+        }
+
+        private boolean isSettled(int point) {
+            return settled[point] == stamp;
+        }
+
+        private void start(int source, long key) {
+            heap.clear();
+            reach(source, 0, -1, key);
+        }
+
+        private void reach(int point, int distance, int edge, long key) {
+            distances[point] = distance;
+            edges[point] = edge;
+            reached[point] = stamp;
+            heap.push(point, key);
+        }
+
+        private int settleNext() {
+            int point = heap.poll();
+            settled[point] = stamp;
+            settledCount++;
+            return point;
+        }
+
+        private void reset() {
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+        }
+    }
+}
@@ -1,21 +1,22 @@
-import java.util.*;
-
 /**
- * This class implements the Union-Find data structure (also known as Disjoint Set Union, DSU).
+ * This class implements the Union-Find data structure (also known as Disjoint Set Union, DSU) over the dense point IDs of a {@link RoadNetwork}.
  * It supports union and find operations with path compression and union by rank.
  */
 public class Union {
-    private final Map <String, String> parent = new HashMap<>();
-    private final Map <String, Integer> rank = new HashMap<>();
+    private final int[] parent;
+    private final int[] rank;
 
     /**
-     * Initializes a new set for the given item. The item is its own parent initially, and its rank is set to 0.
+     * Initializes a separate set for every item from 0 to size minus one. Every item is its own parent initially, and its rank is 0.
      *
-     * @param item the item to create a new set for
+     * @param size the number of items
      */
-    public void makeSet(String item) {
-        parent.put(item, item);
-        rank.put(item, 0);
+    public Union(int size) {
+        parent = new int[size];
+        rank = new int[size];
+        for (int item = 0; item < size; item++) {
+            parent[item] = item;
+        }
     }
 
     /**
@@ -25,11 +26,17 @@ public class Union {
      * @param item the item whose set representative is to be found
      * @return the representative of the set containing the item
      */
-    public String find(String item) {
-        if (!parent.get(item).equals(item)) {
-            parent.put(item, find(parent.get(item)));
+    public int find(int item) {
+        int root = item;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[item] != root) {
+            int next = parent[item];
+            parent[item] = root;
+            item = next;
         }
-        return parent.get(item);
+        return root;
     }
 
     /**
@@ -38,22 +45,22 @@ public class Union {
      * @param set1 an item in the first set to be united
      * @param set2 an item in the second set to be united
      */
-    public void union(String set1, String set2) {
-        String root1 = find(set1);
-        String root2 = find(set2);
+    public void union(int set1, int set2) {
+        int root1 = find(set1);
+        int root2 = find(set2);
 
-        if (root1.equals(root2)) return;
+        if (root1 == root2) return;
 
-        int rank1 = rank.get(root1);
-        int rank2 = rank.get(root2);
+        int rank1 = rank[root1];
+        int rank2 = rank[root2];
 
         if (rank1 > rank2) {
-            parent.put(root2, root1);
+            parent[root2] = root1;
         } else if (rank1 < rank2) {
-            parent.put(root1, root2);
+            parent[root1] = root2;
         } else {
-            parent.put(root2, root1);
-            rank.put(root1, rank1 + 1);
+            parent[root2] = root1;
+            rank[root1] = rank1 + 1;
         }
     }
 }